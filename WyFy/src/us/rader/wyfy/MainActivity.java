@@ -16,9 +16,15 @@
 package us.rader.wyfy;
 
 import us.rader.wyfy.db.WiFiSettingsContract;
+import us.rader.wyfy.model.ConfiguredNetworkIndex;
+import us.rader.wyfy.model.ConnectionMonitor;
+import us.rader.wyfy.model.ConnectionOutcome;
+import us.rader.wyfy.model.QrCodeCache;
+import us.rader.wyfy.model.Security;
 import us.rader.wyfy.model.WifiSettings;
-import us.rader.wyfy.model.WifiSettings.ConnectionOutcome;
+import us.rader.wyfy.model.WifiSettingsSnapshot;
 import us.rader.wyfy.nfc.NdefReaderActivity;
+import android.annotation.TargetApi;
 import android.app.AlertDialog;
 import android.content.DialogInterface;
 import android.content.Intent;
@@ -28,6 +34,7 @@ import android.nfc.NdefMessage;
 import android.nfc.NdefRecord;
 import android.nfc.NfcAdapter;
 import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Parcelable;
 import android.support.v4.app.FragmentActivity;
@@ -51,10 +58,96 @@ public final class MainActivity extends FragmentActivity implements
     /**
      * Attempt to connect to wifi in a worker thread
      * 
+     * <p>
+     * The outcome reported to the user is that resolved by a
+     * {@link ConnectionMonitor} once the device has actually connected, failed
+     * to authenticate or timed out, rather than simply whether the network was
+     * enabled
+     * </p>
+     * 
      * @author Kirk
      */
     private class ConnectTask extends
-            AsyncTask<Void, Void, WifiSettings.ConnectionOutcome> {
+            AsyncTask<Void, Void, ConnectionOutcome> implements
+            ConnectionMonitor.Listener {
+
+        /**
+         * Tracks the connection attempt
+         */
+        private ConnectionMonitor          monitor;
+
+        /**
+         * The state to connect to, captured in the UI thread
+         */
+        private final WifiSettingsSnapshot snapshot;
+
+        /**
+         * Initialize {@link #snapshot}
+         * 
+         * @param snapshot
+         *            the state to connect to
+         */
+        public ConnectTask(WifiSettingsSnapshot snapshot) {
+
+            this.snapshot = snapshot;
+
+        }
+
+        /**
+         * Report the resolved outcome to the user
+         * 
+         * @param connectionMonitor
+         *            the {@link ConnectionMonitor}
+         * 
+         * @see us.rader.wyfy.model.ConnectionMonitor.Listener#onConnectionResolved(us.rader.wyfy.model.ConnectionMonitor)
+         */
+        @Override
+        public void onConnectionResolved(ConnectionMonitor connectionMonitor) {
+
+            if (isFinishing()) {
+
+                return;
+
+            }
+
+            String ssid = connectionMonitor.getSsid();
+
+            switch (connectionMonitor.getResult()) {
+
+                case CONNECTED:
+
+                    int messageId = R.string.successfully_enabled_wifi;
+
+                    if (connectionMonitor.getEnableOutcome() == ConnectionOutcome.ADDED) {
+
+                        messageId = R.string.successfully_added_wifi;
+
+                    }
+
+                    alert(getString(messageId, ssid,
+                            connectionMonitor.getTimeToIp(),
+                            connectionMonitor.getTimeToAssociate()));
+                    break;
+
+                case AUTHENTICATION_FAILED:
+
+                    alert(getString(R.string.authentication_failed, ssid));
+                    break;
+
+                case TIMED_OUT:
+
+                    alert(getString(R.string.connection_timed_out, ssid,
+                            connectionMonitor.getTimeoutMillis() / 1000));
+                    break;
+
+                case FAILED:
+                default:
+
+                    alert(getString(R.string.failed_to_enable_wifi, ssid));
+                    break;
+
+            }
+        }
 
         /**
          * Connect to wifi in a worker thread
@@ -63,11 +156,11 @@ public final class MainActivity extends FragmentActivity implements
          *            ignored
          */
         @Override
-        protected WifiSettings.ConnectionOutcome doInBackground(Void... params) {
+        protected ConnectionOutcome doInBackground(Void... params) {
 
             try {
 
-                return wifiSettings.connect(wifiManager);
+                return snapshot.connect(wifiManager);
 
             } catch (Exception e) {
 
@@ -78,44 +171,49 @@ public final class MainActivity extends FragmentActivity implements
         }
 
         /**
-         * Report outcome to user
+         * Pass the result of enabling the network to {@link #monitor}, which
+         * will report the outcome once it is resolved
          * 
          * @param result
          *            value returned by
-         *            {@link WifiSettings#connect(WifiManager)} in the worker
-         *            thread
+         *            {@link WifiSettingsSnapshot#connect(WifiManager)} in the
+         *            worker thread
          */
         @Override
-        protected void onPostExecute(WifiSettings.ConnectionOutcome result) {
+        protected void onPostExecute(ConnectionOutcome result) {
 
-            String ssid = wifiSettings.getSsid();
+            monitor.onEnabled(result);
 
-            switch (result) {
+            if (wifiSettingsFragment != null) {
 
-                case ADDED:
+                wifiSettingsFragment.onModelChanged(true);
 
-                    alert(getString(R.string.successfully_added_wifi, ssid));
-                    break;
+            }
+        }
 
-                case ENABLED:
+        /**
+         * Start monitoring the connection before the network is enabled so
+         * that no broadcasts are missed
+         */
+        @Override
+        protected void onPreExecute() {
 
-                    alert(getString(R.string.successfully_enabled_wifi, ssid));
-                    break;
+            long timeoutMillis = getResources().getInteger(
+                    R.integer.connection_timeout_seconds) * 1000L;
+            monitor = new ConnectionMonitor(MainActivity.this, wifiManager,
+                    snapshot.getSsid(), timeoutMillis, this);
 
-                case FAILED:
-                default:
+            if (connectionMonitor != null) {
 
-                    alert(getString(R.string.failed_to_enable_wifi, ssid));
-                    break;
+                connectionMonitor.cancel();
 
             }
 
-            if (wifiSettingsFragment != null) {
-
-                wifiSettingsFragment.onModelChanged(true);
+            connectionMonitor = monitor;
+            monitor.start();
 
-            }
         }
+
     }
 
     /**
@@ -207,9 +305,9 @@ public final class MainActivity extends FragmentActivity implements
     }
 
     /**
-     * {@link ConnectTask}
+     * {@link ConnectionMonitor} of the most recent {@link ConnectTask}, if any
      */
-    private ConnectTask             connectTask;
+    private ConnectionMonitor       connectionMonitor;
 
     /**
      * {@link GetActiveConnectionTask}
@@ -237,12 +335,11 @@ public final class MainActivity extends FragmentActivity implements
     private WifiSettingsFragment    wifiSettingsFragment;
 
     /**
-     * Initialize {@link #getActiveConnectionTask} and {@link #connectTask}
+     * Initialize {@link #getActiveConnectionTask}
      */
     public MainActivity() {
 
         getActiveConnectionTask = new GetActiveConnectionTask();
-        connectTask = new ConnectTask();
 
     }
 
@@ -299,6 +396,36 @@ public final class MainActivity extends FragmentActivity implements
         }
     }
 
+    /**
+     * Release cached QR code images when the system is low on memory
+     * 
+     * @see android.app.Activity#onLowMemory()
+     */
+    @Override
+    public void onLowMemory() {
+
+        super.onLowMemory();
+        QrCodeCache.getInstance().clear();
+
+    }
+
+    /**
+     * Release some or all cached QR code images depending on the trim level
+     * 
+     * @param level
+     *            trim level
+     * 
+     * @see android.app.Activity#onTrimMemory(int)
+     */
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    @Override
+    public void onTrimMemory(int level) {
+
+        super.onTrimMemory(level);
+        QrCodeCache.getInstance().trimMemory(level);
+
+    }
+
     /**
      * Handle notification that the {@link WifiSettings} model state has been
      * changed by the user
@@ -377,6 +504,7 @@ public final class MainActivity extends FragmentActivity implements
 
         super.onCreate(savedInstanceState);
         wifiManager = (WifiManager) getSystemService(WIFI_SERVICE);
+        ConfiguredNetworkIndex.getInstance().register(this);
         setContentView(R.layout.main);
         setFragments();
 
@@ -390,6 +518,26 @@ public final class MainActivity extends FragmentActivity implements
         }
     }
 
+    /**
+     * Stop monitoring any connection attempt, whose outcome could no longer
+     * be shown
+     * 
+     * @see android.support.v4.app.FragmentActivity#onDestroy()
+     */
+    @Override
+    protected void onDestroy() {
+
+        if (connectionMonitor != null) {
+
+            connectionMonitor.cancel();
+            connectionMonitor = null;
+
+        }
+
+        super.onDestroy();
+
+    }
+
     /**
      * Display <code>message</code> to the user
      * 
@@ -464,11 +612,9 @@ public final class MainActivity extends FragmentActivity implements
         String security = uri
                 .getQueryParameter(WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SECURITY);
 
-        wifiSettings.setSsid(ssid);
-        wifiSettings.setPassword(password);
-        wifiSettings.setSecurity(Enum.valueOf(WifiSettings.Security.class,
-                security));
-        wifiSettings.setHidden(Boolean.valueOf(hidden));
+        wifiSettings.set(ssid, password,
+                Enum.valueOf(Security.class, security),
+                Boolean.valueOf(hidden));
 
         if (wifiSettingsFragment != null) {
 
@@ -712,7 +858,7 @@ public final class MainActivity extends FragmentActivity implements
 
             if (wifiSettings.parse(uri)) {
 
-                connectTask.execute();
+                new ConnectTask(wifiSettings.getSnapshot()).execute();
                 return true;
 
             }
@@ -849,7 +995,7 @@ public final class MainActivity extends FragmentActivity implements
     private boolean writeTag() {
 
         Intent intent = new Intent(this, WriteTagActivity.class);
-        Uri uri = Uri.parse(wifiSettings.toString());
+        Uri uri = Uri.parse(wifiSettings.getSnapshot().getUri());
         intent.setData(uri);
         startActivityForResult(intent, REQUEST_WRITE_TAG);
         return true;
@@ -17,8 +17,15 @@ package us.rader.wyfy;
 
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 
+import us.rader.wyfy.model.QrCodeEncoder;
+import us.rader.wyfy.model.QrCodeRasterizer;
 import us.rader.wyfy.model.WifiSettings;
+import us.rader.wyfy.model.WifiSettingsSnapshot;
 import us.rader.wyfy.provider.FileProvider;
 import android.annotation.TargetApi;
 import android.content.Intent;
@@ -29,14 +36,16 @@ import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.support.v4.app.Fragment;
-import android.support.v4.app.FragmentActivity;
 import android.util.Log;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.view.ViewTreeObserver.OnGlobalLayoutListener;
-import android.widget.ImageView;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
 
 /**
  * <code>Fragment</code> to display the QR code representation of the current
@@ -47,36 +56,334 @@ import android.widget.ImageView;
 public final class QrCodeFragment extends Fragment {
 
     /**
-     * Create the QR image <code>Bitmap</code> in a worker thread and update
-     * {@link QrCodeFragment#qrCode} in the UI thread
+     * Write the QR code image file in a worker thread and start the sharing
+     * chooser in the UI thread
+     * 
+     * <p>
+     * The file name is derived from a digest of the image parameters, so a file
+     * that already exists for the same content is shared as-is without
+     * rendering or compressing the image again. Otherwise the image is
+     * rasterized from the QR code modules already shown on screen, so zxing
+     * only encodes the contents again if they have changed since. Files left
+     * over from sharing other content are deleted
+     * </p>
      * 
      * @author Kirk
      */
-    private class UpdateQrCodeTask extends AsyncTask<Void, Void, Bitmap> {
+    private class ShareQrCodeTask extends AsyncTask<Void, Void, Uri> {
+
+        /**
+         * Content authority for {@link FileProvider}
+         */
+        private final String    authority;
+
+        /**
+         * The WIFI: URI to encode, captured in the UI thread
+         */
+        private final String    contents;
 
         /**
-         * Return the <code>Bitmap</code> for the QR code image representing
-         * <code>wifiSettings[0]</code>
+         * Directory in which to write the file
+         */
+        private final File      directory;
+
+        /**
+         * The QR code modules for {@link #contents} shown on screen, captured
+         * in the UI thread, or <code>null</code> if they must be encoded
+         */
+        private final BitMatrix modules;
+
+        /**
+         * Size of the QR code image, captured in the UI thread
+         */
+        private final int       size;
+
+        /**
+         * Initialize the request parameters
+         * 
+         * @param directory
+         *            directory in which to write the file
+         * 
+         * @param authority
+         *            content authority for {@link FileProvider}
+         * 
+         * @param contents
+         *            the WIFI: URI to encode
+         * 
+         * @param modules
+         *            the QR code modules for <code>contents</code> or
+         *            <code>null</code> to encode them
+         * 
+         * @param size
+         *            size of the QR code image
+         */
+        public ShareQrCodeTask(File directory, String authority,
+                String contents, BitMatrix modules, int size) {
+
+            this.directory = directory;
+            this.authority = authority;
+            this.contents = contents;
+            this.modules = modules;
+            this.size = size;
+
+        }
+
+        /**
+         * Write the image file, if necessary, and return its content
+         * {@link Uri}
          * 
          * @param params
          *            ignored
          * 
-         * @return <code>Bitmap</code> for QR code image or <code>null</code>
+         * @return content {@link Uri} or <code>null</code> on error
          * 
-         * @see WifiSettings#getQrCode(int, int, int)
-         * @see #onPostExecute(Bitmap)
+         * @see #onPostExecute(Uri)
          */
         @Override
-        protected Bitmap doInBackground(Void... params) {
+        protected Uri doInBackground(Void... params) {
 
             try {
 
-                int size = getQrCodeSize();
+                String name = getFileName();
+                File file = new File(directory, name);
+
+                if (!file.exists()) {
+
+                    writeFile(file);
+
+                }
+
+                return FileProvider.getContentUri(authority, name);
+
+            } catch (Exception e) {
+
+                Log.e(getClass().getName(), "doInBackground", e); //$NON-NLS-1$
+                return null;
+
+            }
+        }
+
+        /**
+         * Start the sharing chooser for the given content {@link Uri}
+         * 
+         * @param uri
+         *            content {@link Uri} returned by
+         *            {@link #doInBackground(Void...)}
+         */
+        @Override
+        protected void onPostExecute(Uri uri) {
+
+            if ((uri == null) || !isAdded()) {
+
+                return;
+
+            }
+
+            String label = getString(R.string.share_label);
+            Intent intent = new Intent(Intent.ACTION_SEND);
+            intent.setData(uri);
+            intent.setType(FileProvider.getMimeType(uri));
+            intent.putExtra(Intent.EXTRA_STREAM, uri);
+            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
+            Intent chooser = Intent.createChooser(intent, label);
+            startActivity(chooser);
+
+        }
+
+        /**
+         * Delete any previously shared image files other than
+         * <code>keep</code>
+         * 
+         * @param keep
+         *            the file to keep
+         */
+        private void deleteStaleFiles(File keep) {
+
+            File[] files = directory.listFiles();
+
+            if (files == null) {
+
+                return;
+
+            }
+
+            for (File file : files) {
+
+                String name = file.getName();
+
+                if (name.startsWith(SHARE_FILE_PREFIX) && !file.equals(keep)) {
+
+                    if (!file.delete()) {
+
+                        Log.w(getClass().getName(), "failed to delete " //$NON-NLS-1$
+                                + name);
+
+                    }
+                }
+            }
+        }
+
+        /**
+         * Return the name of the image file for the current parameters
+         * 
+         * @return file name
+         * 
+         * @throws NoSuchAlgorithmException
+         *             if SHA-1 isn't supported
+         * 
+         * @throws UnsupportedEncodingException
+         *             if UTF-8 isn't supported
+         */
+        private String getFileName() throws NoSuchAlgorithmException,
+                UnsupportedEncodingException {
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            digest.update(contents.getBytes("UTF-8")); //$NON-NLS-1$
+            digest.update((byte) ((size >>> 24) & 0xff));
+            digest.update((byte) ((size >>> 16) & 0xff));
+            digest.update((byte) ((size >>> 8) & 0xff));
+            digest.update((byte) (size & 0xff));
+            StringBuilder name = new StringBuilder(SHARE_FILE_PREFIX);
+
+            for (byte b : digest.digest()) {
+
+                name.append(Character.forDigit((b >>> 4) & 0xf, 16));
+                name.append(Character.forDigit(b & 0xf, 16));
+
+            }
+
+            name.append(SHARE_FILE_SUFFIX);
+            return name.toString();
+
+        }
+
+        /**
+         * Render the image and write it to the given file
+         * 
+         * <p>
+         * The image is rasterized from {@link #modules}, encoding
+         * {@link #contents} only if they weren't available. It is written to a
+         * temporary file which is then renamed, so a partially written file is
+         * never shared
+         * </p>
+         * 
+         * @param file
+         *            the file to write
+         * 
+         * @throws IOException
+         *             if an I/O error occurs
+         * 
+         * @throws WriterException
+         *             if a zxing error occurs
+         */
+        private void writeFile(File file) throws IOException, WriterException {
+
+            BitMatrix matrix = modules;
+
+            if (matrix == null) {
+
+                matrix = QrCodeEncoder.encodeModules(contents);
+
+            }
+
+            Bitmap bitmap = QrCodeRasterizer.rasterize(matrix, Color.BLACK,
+                    Color.WHITE, size);
+            File temp = new File(directory, file.getName() + ".tmp"); //$NON-NLS-1$
+
+            try {
+
+                FileOutputStream stream = new FileOutputStream(temp);
+
+                try {
+
+                    bitmap.compress(CompressFormat.PNG, 100, stream);
+
+                } finally {
+
+                    stream.close();
+
+                }
+
+            } finally {
+
+                bitmap.recycle();
+
+            }
+
+            if (!temp.renameTo(file)) {
+
+                throw new IOException("failed to rename " + temp.getName()); //$NON-NLS-1$
+
+            }
+
+            deleteStaleFiles(file);
+
+        }
+
+    }
+
+    /**
+     * Create the QR code module matrix in a worker thread and update
+     * {@link QrCodeFragment#qrCode} in the UI thread
+     * 
+     * <p>
+     * The results of tasks that have been superseded by a later call to
+     * {@link QrCodeFragment#scheduleUpdate(long)} are discarded. If the model
+     * changed after the task's snapshot was captured, its result is discarded
+     * and an update for the new state is scheduled
+     * </p>
+     * 
+     * @author Kirk
+     */
+    private class UpdateQrCodeTask extends AsyncTask<Void, Void, BitMatrix> {
 
-                if (size > 0) {
+        /**
+         * Value of {@link QrCodeFragment#generation} when this task was
+         * created
+         */
+        private final int                  requestGeneration;
 
-                    return wifiSettings.getQrCode(Color.BLACK, Color.WHITE,
-                            size);
+        /**
+         * The model state to encode, captured in the UI thread
+         */
+        private final WifiSettingsSnapshot snapshot;
+
+        /**
+         * Initialize the request parameters
+         * 
+         * @param requestGeneration
+         *            value of {@link QrCodeFragment#generation}
+         * 
+         * @param snapshot
+         *            the model state to encode
+         */
+        public UpdateQrCodeTask(int requestGeneration,
+                WifiSettingsSnapshot snapshot) {
+
+            this.requestGeneration = requestGeneration;
+            this.snapshot = snapshot;
+
+        }
+
+        /**
+         * Return the QR code module matrix representing {@link #snapshot}
+         * 
+         * @param params
+         *            ignored
+         * 
+         * @return QR code module matrix or <code>null</code>
+         * 
+         * @see QrCodeEncoder#encodeModules(String)
+         * @see #onPostExecute(BitMatrix)
+         */
+        @Override
+        protected BitMatrix doInBackground(Void... params) {
+
+            try {
+
+                if (!isStale() && wifiSettings.isCurrent(snapshot)) {
+
+                    return QrCodeEncoder.encodeModules(snapshot.toString());
 
                 }
 
@@ -91,25 +398,68 @@ public final class QrCodeFragment extends Fragment {
         }
 
         /**
-         * Set the <code>Bitmap</code> for {@link QrCodeFragment#qrCode}
+         * Set the module matrix for {@link QrCodeFragment#qrCode} unless this
+         * task has been superseded
          * 
-         * @param bitmap
-         *            the <code>Bitmap</code>
+         * @param modules
+         *            the QR code module matrix
          * 
          * @see #doInBackground(Void...)
          */
         @Override
-        protected void onPostExecute(Bitmap bitmap) {
+        protected void onPostExecute(BitMatrix modules) {
+
+            if (isStale()) {
+
+                return;
 
-            if (bitmap != null) {
+            }
+
+            if (!wifiSettings.isCurrent(snapshot)) {
 
-                qrCode.setImageBitmap(bitmap);
+                scheduleUpdate(0);
+                return;
+
+            }
+
+            if ((modules != null) && (qrCode != null)) {
+
+                qrCode.setModules(modules);
+                qrCodeContents = snapshot.toString();
 
             }
         }
 
+        /**
+         * Test whether this task has been cancelled or superseded
+         * 
+         * @return <code>true</code> if and only if the result of this task
+         *         will never be displayed
+         */
+        private boolean isStale() {
+
+            return isCancelled() || (requestGeneration != generation);
+
+        }
+
     }
 
+    /**
+     * Prefix for the names of shared QR code image files
+     */
+    private static final String SHARE_FILE_PREFIX   = "wyfy_qr";  //$NON-NLS-1$
+
+    /**
+     * Suffix for the names of shared QR code image files
+     */
+    private static final String SHARE_FILE_SUFFIX   = ".png";     //$NON-NLS-1$
+
+    /**
+     * Number of milliseconds to wait for further changes before regenerating
+     * the QR code after the model state changes
+     */
+    private static final long   UPDATE_DELAY_MILLIS = 250;
+
     /**
      * Cache the singleton instance of {@link WifiSettings}
      */
@@ -122,9 +472,58 @@ public final class QrCodeFragment extends Fragment {
     }
 
     /**
-     * QR code image
+     * Incremented each time an update is requested, so that superseded
+     * {@link UpdateQrCodeTask} instances can discard their results
+     */
+    private volatile int        generation;
+
+    /**
+     * <code>Handler</code> used to debounce update requests
      */
-    private ImageView           qrCode;
+    private final Handler       handler;
+
+    /**
+     * QR code view
+     */
+    private QrCodeView          qrCode;
+
+    /**
+     * The WIFI: URI encoded by the modules shown in {@link #qrCode}, or
+     * <code>null</code>
+     */
+    private String              qrCodeContents;
+
+    /**
+     * Start an {@link UpdateQrCodeTask} for the most recently requested state
+     */
+    private final Runnable      startUpdate;
+
+    /**
+     * The most recently started {@link UpdateQrCodeTask}, if any
+     */
+    private UpdateQrCodeTask    updateTask;
+
+    /**
+     * Initialize the update scheduling state
+     */
+    public QrCodeFragment() {
+
+        generation = 0;
+        handler = new Handler();
+        updateTask = null;
+
+        startUpdate = new Runnable() {
+
+            @Override
+            public void run() {
+
+                startUpdateTask();
+
+            }
+
+        };
+
+    }
 
     /**
      * Inflate the <code>View</code>
@@ -144,10 +543,8 @@ public final class QrCodeFragment extends Fragment {
 
         View view = inflater.inflate(R.layout.qr_code_fragment, container,
                 false);
-        qrCode = (ImageView) view.findViewById(R.id.qr_code);
-        Bitmap bitmap = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
-        bitmap.eraseColor(Color.WHITE);
-        qrCode.setImageBitmap(bitmap);
+        qrCode = (QrCodeView) view.findViewById(R.id.qr_code);
+        qrCode.setColors(Color.BLACK, Color.WHITE);
 
         qrCode.setOnClickListener(new View.OnClickListener() {
 
@@ -180,7 +577,7 @@ public final class QrCodeFragment extends Fragment {
 
                         }
 
-                        updateQrCode();
+                        scheduleUpdate(0);
 
                     }
                 });
@@ -190,55 +587,78 @@ public final class QrCodeFragment extends Fragment {
     }
 
     /**
-     * Save QR code to a file and then send a sharing {@link Intent} wrapped in
-     * a chooser
+     * Cancel any pending or running update
+     * 
+     * @see android.support.v4.app.Fragment#onDestroyView()
      */
-    public void shareQrCode() {
+    @Override
+    public void onDestroyView() {
 
-        try {
+        handler.removeCallbacks(startUpdate);
+        ++generation;
 
-            FragmentActivity activity = getActivity();
-            Bitmap bitmap = wifiSettings.getQrCode(Color.BLACK, Color.WHITE,
-                    getQrCodeSize());
-            File file = activity.getFileStreamPath("wyfy_qr.png"); //$NON-NLS-1$
-            FileOutputStream stream = activity
-                    .openFileOutput(file.getName(), 0);
+        if (updateTask != null) {
 
-            try {
+            updateTask.cancel(false);
+            updateTask = null;
+
+        }
 
-                bitmap.compress(CompressFormat.PNG, 100, stream);
+        qrCode = null;
+        qrCodeContents = null;
+        super.onDestroyView();
 
-            } finally {
+    }
+
+    /**
+     * Save QR code to a file in a worker thread and then send a sharing
+     * {@link Intent} wrapped in a chooser
+     * 
+     * <p>
+     * The modules shown on screen are passed to the task if they encode the
+     * current state, so that it needn't encode them again
+     * </p>
+     * 
+     * @see ShareQrCodeTask
+     */
+    public void shareQrCode() {
 
-                stream.close();
+        try {
+
+            File directory = getActivity().getFilesDir();
+            String authority = getString(R.string.provider_authority_file);
+            String contents = wifiSettings.toString();
+            BitMatrix modules = null;
+
+            if ((qrCode != null) && contents.equals(qrCodeContents)) {
+
+                modules = qrCode.getModules();
 
             }
 
-            String label = getString(R.string.share_label);
-            Uri uri = FileProvider
-                    .getContentUri(getString(R.string.provider_authority_file),
-                            file.getName());
-            Intent intent = new Intent(Intent.ACTION_SEND);
-            intent.setData(uri);
-            intent.setType(FileProvider.getMimeType(uri));
-            intent.putExtra(Intent.EXTRA_STREAM, uri);
-            intent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-            Intent chooser = Intent.createChooser(intent, label);
-            startActivity(chooser);
+            new ShareQrCodeTask(directory, authority, contents, modules,
+                    getQrCodeSize()).execute();
 
         } catch (Exception e) {
 
-            // ignore errors here
+            Log.e(getClass().getName(), "shareQrCode", e); //$NON-NLS-1$
 
         }
     }
 
     /**
-     * Update the QR code to match the specified state
+     * Update the QR code to match the current state
+     * 
+     * <p>
+     * Rapid successive calls, e.g. one per keystroke, are coalesced so that
+     * only the state in effect once the changes stop is rendered
+     * </p>
+     * 
+     * @see #scheduleUpdate(long)
      */
     public void updateQrCode() {
 
-        new UpdateQrCodeTask().execute();
+        scheduleUpdate(UPDATE_DELAY_MILLIS);
 
     }
 
@@ -263,4 +683,41 @@ public final class QrCodeFragment extends Fragment {
 
     }
 
+    /**
+     * Supersede any pending or running update and schedule a new one
+     * 
+     * @param delayMillis
+     *            number of milliseconds to wait for further requests before
+     *            starting the update
+     * 
+     * @see #startUpdateTask()
+     */
+    private void scheduleUpdate(long delayMillis) {
+
+        ++generation;
+        handler.removeCallbacks(startUpdate);
+        handler.postDelayed(startUpdate, delayMillis);
+
+    }
+
+    /**
+     * Cancel the running {@link UpdateQrCodeTask}, if any, and start a new
+     * one for the current model state
+     * 
+     * @see #scheduleUpdate(long)
+     */
+    private void startUpdateTask() {
+
+        if (updateTask != null) {
+
+            updateTask.cancel(false);
+
+        }
+
+        updateTask = new UpdateQrCodeTask(generation,
+                wifiSettings.getSnapshot());
+        updateTask.execute();
+
+    }
+
 }
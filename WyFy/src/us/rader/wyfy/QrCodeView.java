@@ -0,0 +1,232 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.google.zxing.common.BitMatrix;
+
+/**
+ * <code>View</code> that draws a QR code directly from its module matrix
+ * 
+ * <p>
+ * This only retains the packed {@link BitMatrix} (one bit per QR module)
+ * rather than a full-resolution <code>Bitmap</code>, and scales the modules to
+ * the size of the <code>View</code> each time it is drawn
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class QrCodeView extends View {
+
+    /**
+     * Background color
+     */
+    private int         backgroundColor;
+
+    /**
+     * {@link Paint} used to draw the dark modules
+     */
+    private final Paint foregroundPaint;
+
+    /**
+     * The QR code modules or <code>null</code>
+     */
+    private BitMatrix   modules;
+
+    /**
+     * Initialize the default colors
+     * 
+     * @param context
+     *            <code>Context</code>
+     */
+    public QrCodeView(Context context) {
+
+        super(context);
+        foregroundPaint = new Paint();
+        initialize();
+
+    }
+
+    /**
+     * Initialize the default colors
+     * 
+     * @param context
+     *            <code>Context</code>
+     * 
+     * @param attrs
+     *            <code>AttributeSet</code>
+     */
+    public QrCodeView(Context context, AttributeSet attrs) {
+
+        super(context, attrs);
+        foregroundPaint = new Paint();
+        initialize();
+
+    }
+
+    /**
+     * Initialize the default colors
+     * 
+     * @param context
+     *            <code>Context</code>
+     * 
+     * @param attrs
+     *            <code>AttributeSet</code>
+     * 
+     * @param defStyle
+     *            default style
+     */
+    public QrCodeView(Context context, AttributeSet attrs, int defStyle) {
+
+        super(context, attrs, defStyle);
+        foregroundPaint = new Paint();
+        initialize();
+
+    }
+
+    /**
+     * @return the current QR code modules or <code>null</code>
+     */
+    public BitMatrix getModules() {
+
+        return modules;
+
+    }
+
+    /**
+     * Set the colors used to draw the QR code
+     * 
+     * @param foregroundColor
+     *            foreground color
+     * 
+     * @param backgroundColor
+     *            background color
+     */
+    public void setColors(int foregroundColor, int backgroundColor) {
+
+        foregroundPaint.setColor(foregroundColor);
+        this.backgroundColor = backgroundColor;
+        invalidate();
+
+    }
+
+    /**
+     * Set the QR code modules to display
+     * 
+     * @param modules
+     *            the QR code modules, including the quiet zone, or
+     *            <code>null</code> to display only the background
+     */
+    public void setModules(BitMatrix modules) {
+
+        this.modules = modules;
+        invalidate();
+
+    }
+
+    /**
+     * Draw {@link #modules} scaled to fit within the padded bounds of this
+     * <code>View</code>
+     * 
+     * <p>
+     * Modules are scaled by the largest whole number that fits, so that every
+     * module covers the same number of pixels, unless the <code>View</code> is
+     * too small for that
+     * </p>
+     * 
+     * @param canvas
+     *            <code>Canvas</code>
+     * 
+     * @see android.view.View#onDraw(android.graphics.Canvas)
+     */
+    @Override
+    protected void onDraw(Canvas canvas) {
+
+        canvas.drawColor(backgroundColor);
+
+        if (modules == null) {
+
+            return;
+
+        }
+
+        int left = getPaddingLeft();
+        int top = getPaddingTop();
+        int width = getWidth() - left - getPaddingRight();
+        int height = getHeight() - top - getPaddingBottom();
+        int moduleCount = Math.max(modules.getWidth(), modules.getHeight());
+        float scale = (float) Math.min(width, height) / moduleCount;
+
+        if (scale >= 1.0f) {
+
+            scale = (float) Math.floor(scale);
+
+        }
+
+        float x0 = left + ((width - (scale * modules.getWidth())) / 2.0f);
+        float y0 = top + ((height - (scale * modules.getHeight())) / 2.0f);
+
+        for (int y = 0; y < modules.getHeight(); ++y) {
+
+            float rowTop = y0 + (y * scale);
+            int x = 0;
+
+            while (x < modules.getWidth()) {
+
+                if (!modules.get(x, y)) {
+
+                    ++x;
+                    continue;
+
+                }
+
+                // draw each horizontal run of dark modules as a single
+                // rectangle
+                int start = x;
+
+                while ((x < modules.getWidth()) && modules.get(x, y)) {
+
+                    ++x;
+
+                }
+
+                canvas.drawRect(x0 + (start * scale), rowTop, x0
+                        + (x * scale), rowTop + scale, foregroundPaint);
+
+            }
+        }
+    }
+
+    /**
+     * Set the default colors
+     */
+    private void initialize() {
+
+        foregroundPaint.setColor(Color.BLACK);
+        foregroundPaint.setStyle(Paint.Style.FILL);
+        foregroundPaint.setAntiAlias(false);
+        backgroundColor = Color.WHITE;
+        modules = null;
+
+    }
+
+}
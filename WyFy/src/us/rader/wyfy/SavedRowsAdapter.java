@@ -0,0 +1,513 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import us.rader.wyfy.db.QueryHandler;
+import us.rader.wyfy.db.WiFiSettingsContract.WifiSettingsEntry;
+import android.content.Context;
+import android.database.Cursor;
+import android.provider.BaseColumns;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.TextView;
+
+/**
+ * <code>ListAdapter</code> that loads the saved SSID's, or those matching a
+ * search, a page at a time as the user scrolls
+ * 
+ * <p>
+ * Only the first page is requested when the adapter is created, so the list
+ * appears in the same time however many networks have been saved. Each further
+ * page is requested, using
+ * {@link QueryHandler#queryPage(QueryHandler.QueryListener, long, int)} or
+ * {@link QueryHandler#search(QueryHandler.QueryListener, String, long, int)},
+ * when a row within {@link #PREFETCH_DISTANCE} of the end of the loaded rows
+ * is displayed. Only the <code>_id</code> and SSID of each row are held in
+ * memory
+ * </p>
+ * 
+ * <p>
+ * The adapter also holds the set of rows the user has selected, e.g. for a
+ * batch delete, and highlights them. Rows deleted by
+ * {@link QueryHandler#deleteById(QueryHandler.DeleteListener, long...)} are
+ * removed in place by {@link #removeById(long[])}, without reloading the list.
+ * Rows inserted after the last page was received are loaded by
+ * {@link #rowsInserted()}
+ * </p>
+ * 
+ * <p>
+ * This must only be used in the UI thread. To show other changes to the
+ * database or to the search text, replace the adapter with a new instance
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class SavedRowsAdapter extends BaseAdapter implements
+        QueryHandler.QueryListener {
+
+    /**
+     * Number of rows to request at a time
+     */
+    private static final int     PAGE_SIZE         = 100;
+
+    /**
+     * Request the next page once a row this close to the end of the loaded
+     * rows is displayed
+     */
+    private static final int     PREFETCH_DISTANCE = PAGE_SIZE / 2;
+
+    /**
+     * Set once a page shorter than {@link #PAGE_SIZE} has been received
+     */
+    private boolean              complete;
+
+    /**
+     * {@link Context} used to access the {@link QueryHandler}
+     */
+    private final Context        context;
+
+    /**
+     * <code>_id</code> of each loaded row
+     */
+    private long[]               ids;
+
+    /**
+     * {@link LayoutInflater} used to create row views
+     */
+    private final LayoutInflater inflater;
+
+    /**
+     * Set when {@link #rowsInserted()} is called while a page is being loaded
+     */
+    private boolean              insertPending;
+
+    /**
+     * Set while a page has been requested but not yet received
+     */
+    private boolean              loading;
+
+    /**
+     * Search text or <code>null</code> to list all rows
+     */
+    private final String         search;
+
+    /**
+     * <code>_id</code> of each selected row
+     */
+    private final Set<Long>      selected;
+
+    /**
+     * SSID of each loaded row
+     */
+    private final List<String>   ssids;
+
+    /**
+     * Request the first page
+     * 
+     * @param context
+     *            any {@link Context} of this application
+     * 
+     * @param search
+     *            search text or <code>null</code> to list all rows
+     */
+    public SavedRowsAdapter(Context context, String search) {
+
+        this.context = context.getApplicationContext();
+        this.search = search;
+        inflater = LayoutInflater.from(context);
+        ids = new long[PAGE_SIZE];
+        ssids = new ArrayList<String>(PAGE_SIZE);
+        selected = new HashSet<Long>();
+        loadNextPage();
+
+    }
+
+    /**
+     * Deselect all rows
+     */
+    public void clearSelection() {
+
+        if (!selected.isEmpty()) {
+
+            selected.clear();
+            notifyDataSetChanged();
+
+        }
+    }
+
+    /**
+     * @return the number of rows loaded so far
+     * 
+     * @see android.widget.Adapter#getCount()
+     */
+    @Override
+    public int getCount() {
+
+        return ssids.size();
+
+    }
+
+    /**
+     * Return the SSID at the given position
+     * 
+     * @param position
+     *            the position
+     * 
+     * @return the SSID
+     * 
+     * @see android.widget.Adapter#getItem(int)
+     */
+    @Override
+    public String getItem(int position) {
+
+        return ssids.get(position);
+
+    }
+
+    /**
+     * Return the <code>_id</code> of the row at the given position
+     * 
+     * @param position
+     *            the position
+     * 
+     * @return the <code>_id</code>
+     * 
+     * @see android.widget.Adapter#getItemId(int)
+     */
+    @Override
+    public long getItemId(int position) {
+
+        return ids[position];
+
+    }
+
+    /**
+     * @return the number of selected rows
+     */
+    public int getSelectedCount() {
+
+        return selected.size();
+
+    }
+
+    /**
+     * @return the <code>_id</code> of each selected row
+     */
+    public long[] getSelectedIds() {
+
+        long[] result = new long[selected.size()];
+        int index = 0;
+
+        for (Long id : selected) {
+
+            result[index++] = id.longValue();
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Return the view for the given position, requesting the next page if the
+     * position is near the end of the loaded rows
+     * 
+     * @param position
+     *            the position
+     * 
+     * @param convertView
+     *            view to re-use or <code>null</code>
+     * 
+     * @param parent
+     *            the parent {@link ViewGroup}
+     * 
+     * @return the row {@link View}
+     * 
+     * @see android.widget.Adapter#getView(int, android.view.View,
+     *      android.view.ViewGroup)
+     */
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+
+        View view = convertView;
+
+        if (view == null) {
+
+            view = inflater.inflate(R.layout.row_layout, parent, false);
+
+        }
+
+        TextView text = (TextView) view.findViewById(R.id.ssid_row_text);
+        text.setText(getItem(position));
+        view.setBackgroundResource(isSelected(position) ? R.color.selected_row
+                : 0);
+
+        if (position >= (ssids.size() - PREFETCH_DISTANCE)) {
+
+            loadNextPage();
+
+        }
+
+        return view;
+
+    }
+
+    /**
+     * <code>_id</code> values are primary keys
+     * 
+     * @return <code>true</code>
+     * 
+     * @see android.widget.BaseAdapter#hasStableIds()
+     */
+    @Override
+    public boolean hasStableIds() {
+
+        return true;
+
+    }
+
+    /**
+     * Test whether the row at the given position is selected
+     * 
+     * @param position
+     *            the position
+     * 
+     * @return <code>true</code> if and only if the row is selected
+     */
+    public boolean isSelected(int position) {
+
+        return selected.contains(Long.valueOf(ids[position]));
+
+    }
+
+    /**
+     * Ignored in this class
+     * 
+     * @param ssid
+     *            ignored
+     * 
+     * @param password
+     *            ignored
+     * 
+     * @see us.rader.wyfy.db.QueryHandler.QueryListener#onPasswordResult(java.lang.String,
+     *      java.lang.String)
+     */
+    @Override
+    public void onPasswordResult(String ssid, String password) {
+
+        // nothing to do for this class
+
+    }
+
+    /**
+     * Append a page of rows
+     * 
+     * @param cursor
+     *            the page
+     * 
+     * @see us.rader.wyfy.db.QueryHandler.QueryListener#onQueryPerformed(android.database.Cursor)
+     */
+    @Override
+    public void onQueryPerformed(Cursor cursor) {
+
+        loading = false;
+
+        try {
+
+            int count = cursor.getCount();
+            int size = ssids.size();
+
+            if (ids.length < (size + count)) {
+
+                ids = Arrays.copyOf(ids,
+                        Math.max(ids.length * 2, size + count));
+
+            }
+
+            int idIndex = cursor.getColumnIndex(BaseColumns._ID);
+            int ssidIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_SSID);
+
+            while (cursor.moveToNext()) {
+
+                ids[ssids.size()] = cursor.getLong(idIndex);
+                ssids.add(cursor.getString(ssidIndex));
+
+            }
+
+            complete = count < PAGE_SIZE;
+
+        } catch (Exception e) {
+
+            Log.e(getClass().getName(), "onQueryPerformed", e); //$NON-NLS-1$
+            complete = true;
+
+        } finally {
+
+            cursor.close();
+
+        }
+
+        boolean reload = complete && insertPending;
+        insertPending = false;
+        notifyDataSetChanged();
+
+        if (reload) {
+
+            complete = false;
+            loadNextPage();
+
+        }
+    }
+
+    /**
+     * Remove the rows with the given <code>_id</code> values, e.g. once they
+     * have been deleted from the database
+     * 
+     * @param removedIds
+     *            the <code>_id</code> values
+     */
+    public void removeById(long[] removedIds) {
+
+        Set<Long> removed = new HashSet<Long>(removedIds.length * 2);
+
+        for (long id : removedIds) {
+
+            removed.add(Long.valueOf(id));
+
+        }
+
+        int size = ssids.size();
+        int kept = 0;
+
+        for (int index = 0; index < size; ++index) {
+
+            Long id = Long.valueOf(ids[index]);
+
+            if (removed.contains(id)) {
+
+                selected.remove(id);
+
+            } else {
+
+                ids[kept] = ids[index];
+                ssids.set(kept, ssids.get(index));
+                ++kept;
+
+            }
+        }
+
+        if (kept == size) {
+
+            return;
+
+        }
+
+        ssids.subList(kept, size).clear();
+        notifyDataSetChanged();
+
+        // getView() won't request the next page if too few rows are left
+        if (kept < PREFETCH_DISTANCE) {
+
+            loadNextPage();
+
+        }
+    }
+
+    /**
+     * Load any rows inserted since the last page was received
+     * 
+     * <p>
+     * New rows are given larger <code>_id</code> values than any existing
+     * row, so they follow the loaded rows. If the list was already complete
+     * the page following the last loaded row is requested again, otherwise
+     * the new rows are loaded along with the remaining pages as the user
+     * scrolls
+     * </p>
+     */
+    public void rowsInserted() {
+
+        if (complete) {
+
+            complete = false;
+            loadNextPage();
+
+        } else if (loading) {
+
+            // the page being loaded may have been read before the insert
+            insertPending = true;
+
+        }
+    }
+
+    /**
+     * Select or deselect the row at the given position
+     * 
+     * @param position
+     *            the position
+     */
+    public void toggleSelected(int position) {
+
+        Long id = Long.valueOf(ids[position]);
+
+        if (!selected.remove(id)) {
+
+            selected.add(id);
+
+        }
+
+        notifyDataSetChanged();
+
+    }
+
+    /**
+     * Request the page following the last loaded row, unless one has already
+     * been requested or there are no more rows
+     */
+    private void loadNextPage() {
+
+        if (loading || complete) {
+
+            return;
+
+        }
+
+        int size = ssids.size();
+        long afterId = (size == 0) ? 0 : ids[size - 1];
+        QueryHandler handler = QueryHandler.getInstance(context);
+
+        if (search == null) {
+
+            loading = handler.queryPage(this, afterId, PAGE_SIZE);
+
+        } else {
+
+            loading = handler.search(this, search, afterId, PAGE_SIZE);
+
+        }
+
+    }
+
+}
@@ -22,34 +22,224 @@ import java.util.Map;
 
 import android.app.Activity;
 import android.app.AlertDialog;
+import android.content.ActivityNotFoundException;
+import android.content.Context;
 import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
+import android.net.wifi.WifiManager;
+import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.SystemClock;
 import android.support.v4.app.Fragment;
 import android.support.v4.app.FragmentActivity;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.AdapterView;
-import android.widget.ArrayAdapter;
+import android.widget.EditText;
 import android.widget.ListView;
 import android.widget.TextView;
 
 import us.rader.wyfy.db.QueryHandler;
+import us.rader.wyfy.db.SavedNetworks;
 import us.rader.wyfy.db.WiFiSettingsContract;
 import us.rader.wyfy.db.WifiSettingsDatabaseHelper;
+import us.rader.wyfy.db.WifiSettingsImporter;
+import us.rader.wyfy.model.AndroidWifiService;
+import us.rader.wyfy.model.ConfiguredNetworkIndex;
+import us.rader.wyfy.model.WifiNetwork;
+import us.rader.wyfy.model.WifiSettingsProvisioner;
+import us.rader.wyfy.model.WifiSettingsSnapshot;
 
 /**
- * UI to delete rows from the database
+ * UI to browse and manage the saved rows in the database
+ * 
+ * <p>
+ * The list of saved SSID's is loaded a page at a time and can be narrowed by
+ * typing in the search field. Choosing a row returns its settings to the
+ * <code>Activity</code> that started this one. A long press selects or
+ * deselects a row, and the selected rows can be deleted together. The options
+ * menu also imports the device's configured networks or a file of WIFI: URI's
+ * into the database and provisions the selected rows, or all rows if none are
+ * selected, into the device's wi fi configuration
+ * </p>
  * 
  * @author Kirk
  */
 public class SavedRowsFragment extends Fragment {
 
+    /**
+     * Import all of the device's configured networks into the database in a
+     * worker thread
+     * 
+     * @author Kirk
+     */
+    private final class ImportConfiguredNetworksTask extends
+            AsyncTask<Void, Void, Integer> {
+
+        /**
+         * {@link WifiSettingsDatabaseHelper}, obtained in the UI thread
+         */
+        private WifiSettingsDatabaseHelper helper;
+
+        /**
+         * {@link WifiManager}, obtained in the UI thread
+         */
+        private WifiManager                wifiManager;
+
+        /**
+         * Read the configured networks once and store them all in a single
+         * transaction
+         * 
+         * @param params
+         *            ignored
+         * 
+         * @return number of rows stored or -1 if an error occurred
+         */
+        @Override
+        protected Integer doInBackground(Void... params) {
+
+            try {
+
+                long start = SystemClock.elapsedRealtime();
+                List<WifiNetwork> networks = new AndroidWifiService(
+                        wifiManager).getConfiguredNetworks();
+
+                if (networks == null) {
+
+                    return -1;
+
+                }
+
+                List<WifiSettingsSnapshot> snapshots = new ArrayList<WifiSettingsSnapshot>(
+                        networks.size());
+
+                for (WifiNetwork network : networks) {
+
+                    snapshots.add(WifiSettingsSnapshot.fromNetwork(network));
+
+                }
+
+                int count = helper.storeAll(snapshots);
+                Log.i(getClass().getName(), String.format(
+                        "imported %d configured networks in %d ms", count, //$NON-NLS-1$
+                        SystemClock.elapsedRealtime() - start));
+                return count;
+
+            } catch (Exception e) {
+
+                Log.e(getClass().getName(), "doInBackground", e); //$NON-NLS-1$
+                return -1;
+
+            }
+        }
+
+        /**
+         * Report the result to the user, if this fragment is still attached
+         * 
+         * <p>
+         * The list is updated by {@link RowChangeListener}
+         * </p>
+         * 
+         * @param result
+         *            number of rows stored or -1 if an error occurred
+         */
+        @Override
+        protected void onPostExecute(Integer result) {
+
+            if (!isAdded()) {
+
+                return;
+
+            }
+
+            if (result < 0) {
+
+                alert(getString(R.string.failed_to_import_configured_networks));
+
+            } else {
+
+                alert(getString(R.string.imported_configured_networks, result));
+
+            }
+        }
+
+        /**
+         * Initialize {@link #helper} and {@link #wifiManager}
+         */
+        @Override
+        protected void onPreExecute() {
+
+            FragmentActivity activity = getActivity();
+            helper = QueryHandler.getInstance(activity).getHelper();
+            wifiManager = (WifiManager) activity
+                    .getSystemService(Context.WIFI_SERVICE);
+
+        }
+
+    }
+
+    /**
+     * Report the result of importing a file of WIFI: URI's to the user
+     * 
+     * @author Kirk
+     */
+    private final class ImportFileListener implements
+            QueryHandler.ImportListener {
+
+        /**
+         * Show the counts and per-line errors, if this fragment is still
+         * attached
+         * 
+         * <p>
+         * The list is updated by {@link RowChangeListener}
+         * </p>
+         * 
+         * @param importer
+         *            the {@link WifiSettingsImporter} or <code>null</code> if
+         *            the file couldn't be read
+         * 
+         * @see us.rader.wyfy.db.QueryHandler.ImportListener#onImportPerformed(us.rader.wyfy.db.WifiSettingsImporter)
+         */
+        @Override
+        public void onImportPerformed(WifiSettingsImporter importer) {
+
+            if (!isAdded()) {
+
+                return;
+
+            }
+
+            if (importer == null) {
+
+                alert(getString(R.string.failed_to_import_file));
+                return;
+
+            }
+
+            StringBuilder message = new StringBuilder(importer.toString());
+
+            for (String error : importer.getErrors()) {
+
+                message.append('\n');
+                message.append(error);
+
+            }
+
+            alert(message);
+
+        }
+
+    }
+
     /**
      * Execute a database query in a worker thread
      */
@@ -89,18 +279,7 @@ public class SavedRowsFragment extends Fragment {
 
             try {
 
-                final List<Map<String, String>> result = processRows(cursor);
-
-                getActivity().runOnUiThread(new Runnable() {
-
-                    @Override
-                    public void run() {
-
-                        handleResult(result);
-
-                    }
-
-                });
+                handleResult(processRows(cursor));
 
             } catch (Exception e) {
 
@@ -111,7 +290,7 @@ public class SavedRowsFragment extends Fragment {
 
         /**
          * Enqueue a command to invoke
-         * {@link QueryHandler#query(SQLiteDatabase, QueryHandler.QueryListener, String, String...)}
+         * {@link QueryHandler#query(QueryHandler.QueryListener, String, String...)}
          * asynchronously
          * 
          * @param selection
@@ -125,10 +304,8 @@ public class SavedRowsFragment extends Fragment {
         public final boolean query(final String selection,
                 final String... selectionArgs) {
 
-            QueryHandler handler = QueryHandler.getInstance(getActivity());
-            WifiSettingsDatabaseHelper helper = handler.getHelper();
-            SQLiteDatabase db = helper.getWritableDatabase();
-            return handler.query(db, this, selection, selectionArgs);
+            return QueryHandler.getInstance(getActivity()).query(this,
+                    selection, selectionArgs);
 
         }
 
@@ -226,31 +403,268 @@ public class SavedRowsFragment extends Fragment {
     }
 
     /**
-     * {@link ListQueryListener} used to populate the list
+     * Provision the selected saved networks, or all of them if none are
+     * selected, into the system wi fi configuration in a worker thread
      * 
+     * @author Kirk
      */
-    private final class PopulateListListener extends ListQueryListener {
+    private final class ProvisionTask extends
+            AsyncTask<Void, Void, WifiSettingsProvisioner> {
+
+        /**
+         * {@link WifiSettingsDatabaseHelper}, obtained in the UI thread
+         */
+        private WifiSettingsDatabaseHelper helper;
+
+        /**
+         * <code>_id</code> values of the selected rows, obtained in the UI
+         * thread, or none to provision all rows
+         */
+        private long[]                     ids;
+
+        /**
+         * {@link WifiManager}, obtained in the UI thread
+         */
+        private WifiManager                wifiManager;
+
+        /**
+         * Provision the saved rows, reading them one at a time
+         * 
+         * @param params
+         *            ignored
+         * 
+         * @return the {@link WifiSettingsProvisioner} or <code>null</code> if
+         *         an error occurred
+         */
+        @Override
+        protected WifiSettingsProvisioner doInBackground(Void... params) {
+
+            try {
+
+                WifiSettingsProvisioner provisioner = new WifiSettingsProvisioner(
+                        new AndroidWifiService(wifiManager),
+                        ConfiguredNetworkIndex.getInstance().getIndex());
+                SavedNetworks networks = helper.openNetworks(ids);
+
+                try {
+
+                    provisioner.provision(networks);
+
+                } finally {
+
+                    networks.close();
+
+                }
+
+                Log.i(getClass().getName(), provisioner.toString());
+                return provisioner;
+
+            } catch (Exception e) {
+
+                Log.e(getClass().getName(), "doInBackground", e); //$NON-NLS-1$
+                return null;
+
+            }
+        }
 
         /**
-         * Call {@link SavedRowsFragment#populateList(List)}
+         * Report the per-network results to the user, if this fragment is
+         * still attached
          * 
          * @param result
-         *            database query result
+         *            the {@link WifiSettingsProvisioner} or <code>null</code>
+         */
+        @Override
+        protected void onPostExecute(WifiSettingsProvisioner result) {
+
+            if ((result != null) && isAdded()) {
+
+                showProvisioningResults(result);
+
+            }
+        }
+
+        /**
+         * Initialize {@link #helper}, {@link #ids} and {@link #wifiManager}
+         */
+        @Override
+        protected void onPreExecute() {
+
+            FragmentActivity activity = getActivity();
+            helper = QueryHandler.getInstance(activity).getHelper();
+            SavedRowsAdapter adapter = getAdapter();
+            ids = (adapter == null) ? new long[0] : adapter.getSelectedIds();
+            wifiManager = (WifiManager) activity
+                    .getSystemService(Context.WIFI_SERVICE);
+
+        }
+
+    }
+
+    /**
+     * Apply changes to the saved rows to the list in place
+     * 
+     * @author Kirk
+     */
+    private final class RowChangeListener implements
+            WifiSettingsDatabaseHelper.ChangeListener {
+
+        /**
+         * Remove deleted rows from the list and load inserted ones
+         * 
+         * <p>
+         * An update can't change which rows are listed, so updated rows are
+         * left as they are. Rows deleted by
+         * {@link SavedRowsFragment#deleteSelected()} may already have been
+         * removed, which is harmless
+         * </p>
+         * 
+         * @param inserted
+         *            <code>_id</code> values of the inserted rows
+         * 
+         * @param updated
+         *            ignored
          * 
-         * @see us.rader.wyfy.SavedRowsFragment.ListQueryListener#handleResult(java.util.List)
+         * @param deleted
+         *            <code>_id</code> values of the deleted rows
+         * 
+         * @see us.rader.wyfy.db.WifiSettingsDatabaseHelper.ChangeListener#onRowsChanged(long[],
+         *      long[], long[])
          */
         @Override
-        protected void handleResult(List<Map<String, String>> result) {
+        public void onRowsChanged(long[] inserted, long[] updated,
+                long[] deleted) {
+
+            SavedRowsAdapter adapter = getAdapter();
 
-            populateList(result);
+            if (adapter == null) {
+
+                return;
+
+            }
 
+            if (deleted.length > 0) {
+
+                adapter.removeById(deleted);
+                getActivity().supportInvalidateOptionsMenu();
+
+            }
+
+            if (inserted.length > 0) {
+
+                adapter.rowsInserted();
+
+            }
         }
+
+        /**
+         * Reload the list
+         * 
+         * @see us.rader.wyfy.db.WifiSettingsDatabaseHelper.ChangeListener#onTableChanged()
+         */
+        @Override
+        public void onTableChanged() {
+
+            populateList();
+
+        }
+
     }
 
+    /**
+     * <code>Fragment.startActivityForResult(Intent, int)</code> request code
+     * for choosing a file to import
+     */
+    private static final int  REQUEST_IMPORT_FILE = 1;
+
     /**
      * {@link ListView} to populate with data from all rows in the database
      */
-    private ListView allRowsList;
+    private ListView          allRowsList;
+
+    /**
+     * Applies changes to the saved rows to {@link #allRowsList}, while the
+     * view exists
+     */
+    private RowChangeListener changeListener;
+
+    /**
+     * Text of the search of the saved SSID's
+     */
+    private EditText          searchText;
+
+    /**
+     * Import the file chosen by {@link #chooseImportFile()}
+     * 
+     * @param requestCode
+     *            the request code
+     * 
+     * @param resultCode
+     *            the result code
+     * 
+     * @param resultData
+     *            the result data, whose <code>Uri</code> names the chosen file
+     * 
+     * @see android.support.v4.app.Fragment#onActivityResult(int, int,
+     *      android.content.Intent)
+     */
+    @Override
+    public void onActivityResult(int requestCode, int resultCode,
+            Intent resultData) {
+
+        if (requestCode != REQUEST_IMPORT_FILE) {
+
+            super.onActivityResult(requestCode, resultCode, resultData);
+            return;
+
+        }
+
+        if ((resultCode != Activity.RESULT_OK) || (resultData == null)
+                || (resultData.getData() == null)) {
+
+            return;
+
+        }
+
+        QueryHandler.getInstance(getActivity()).importWifiSettings(
+                new ImportFileListener(), resultData.getData());
+
+    }
+
+    /**
+     * Enable the options menu
+     * 
+     * @param savedInstanceState
+     *            saved state or <code>null</code>
+     * 
+     * @see android.support.v4.app.Fragment#onCreate(android.os.Bundle)
+     */
+    @Override
+    public void onCreate(Bundle savedInstanceState) {
+
+        super.onCreate(savedInstanceState);
+        setHasOptionsMenu(true);
+
+    }
+
+    /**
+     * Add this fragment's items to the options menu
+     * 
+     * @param menu
+     *            {@link Menu}
+     * 
+     * @param inflater
+     *            {@link MenuInflater}
+     * 
+     * @see android.support.v4.app.Fragment#onCreateOptionsMenu(android.view.Menu,
+     *      android.view.MenuInflater)
+     */
+    @Override
+    public void onCreateOptionsMenu(Menu menu, MenuInflater inflater) {
+
+        inflater.inflate(R.menu.saved_rows, menu);
+
+    }
 
     /**
      * Inflate the {@link View}
@@ -276,6 +690,34 @@ public class SavedRowsFragment extends Fragment {
         View view = inflater.inflate(R.layout.saved_rows_fragment, container,
                 false);
         allRowsList = (ListView) view.findViewById(R.id.rows_list);
+        searchText = (EditText) view.findViewById(R.id.search_text);
+
+        searchText.addTextChangedListener(new TextWatcher() {
+
+            @Override
+            public void afterTextChanged(Editable s) {
+
+                populateList();
+
+            }
+
+            @Override
+            public void beforeTextChanged(CharSequence s, int start,
+                    int count, int after) {
+
+                // nothing to do here
+
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before,
+                    int count) {
+
+                // nothing to do here
+
+            }
+
+        });
 
         allRowsList
                 .setOnItemClickListener(new AdapterView.OnItemClickListener() {
@@ -284,6 +726,13 @@ public class SavedRowsFragment extends Fragment {
                     public void onItemClick(AdapterView<?> parent, View view,
                             int position, long id) {
 
+                        if (getAdapter().getSelectedCount() > 0) {
+
+                            toggleSelected(position);
+                            return;
+
+                        }
+
                         TextView text = (TextView) view
                                 .findViewById(R.id.ssid_row_text);
                         loadRow(text.getText().toString());
@@ -299,30 +748,186 @@ public class SavedRowsFragment extends Fragment {
                     public boolean onItemLongClick(AdapterView<?> parent,
                             View view, int postion, long id) {
 
-                        TextView text = (TextView) view
-                                .findViewById(R.id.ssid_row_text);
-                        deleteRow(text.getText().toString());
+                        toggleSelected(postion);
                         return true;
 
                     }
                 });
 
-        new PopulateListListener().query(null);
+        populateList();
+        changeListener = new RowChangeListener();
+        QueryHandler.getInstance(getActivity()).getHelper()
+                .addChangeListener(changeListener);
         return view;
 
     }
 
     /**
-     * Offer the user the opportunity to delete the specified row from the
+     * Cancel any search that is still running and stop listening for changes
+     * to the saved rows
+     * 
+     * @see android.support.v4.app.Fragment#onDestroyView()
+     */
+    @Override
+    public void onDestroyView() {
+
+        QueryHandler handler = QueryHandler.getInstance(getActivity());
+        handler.cancelSearch();
+        handler.getHelper().removeChangeListener(changeListener);
+        changeListener = null;
+        super.onDestroyView();
+
+    }
+
+    /**
+     * Handle an options {@link MenuItem}
+     * 
+     * @param item
+     *            {@link MenuItem} to handle
+     * 
+     * @return <code>true</code> if and only if event was consumed
+     * 
+     * @see android.support.v4.app.Fragment#onOptionsItemSelected(android.view.MenuItem)
+     */
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+
+        switch (item.getItemId()) {
+
+            case R.id.import_configured_item:
+
+                new ImportConfiguredNetworksTask().execute();
+                return true;
+
+            case R.id.import_file_item:
+
+                chooseImportFile();
+                return true;
+
+            case R.id.provision_all_item:
+
+                new ProvisionTask().execute();
+                return true;
+
+            case R.id.delete_selected_item:
+
+                deleteSelected();
+                return true;
+
+            default:
+
+                return super.onOptionsItemSelected(item);
+
+        }
+    }
+
+    /**
+     * Show {@link R.id#delete_selected_item} only while rows are selected, and
+     * title {@link R.id#provision_all_item} according to whether any are
+     * 
+     * @param menu
+     *            {@link Menu}
+     * 
+     * @see android.support.v4.app.Fragment#onPrepareOptionsMenu(android.view.Menu)
+     */
+    @Override
+    public void onPrepareOptionsMenu(Menu menu) {
+
+        SavedRowsAdapter adapter = getAdapter();
+        boolean selected = (adapter != null)
+                && (adapter.getSelectedCount() > 0);
+        MenuItem item = menu.findItem(R.id.delete_selected_item);
+
+        if (item != null) {
+
+            item.setVisible(selected);
+
+        }
+
+        item = menu.findItem(R.id.provision_all_item);
+
+        if (item != null) {
+
+            item.setTitle(selected ? R.string.provision_selected_label
+                    : R.string.provision_all_label);
+
+        }
+    }
+
+    /**
+     * Display <code>message</code> to the user
+     * 
+     * @param message
+     *            the message text
+     */
+    private void alert(CharSequence message) {
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
+        builder.setMessage(message);
+
+        builder.setPositiveButton(android.R.string.ok,
+                new DialogInterface.OnClickListener() {
+
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+
+                        dialog.dismiss();
+
+                    }
+                });
+
+        builder.show();
+
+    }
+
+    /**
+     * Ask the user to choose a file of WIFI: URI's, one per line, to import
+     * 
+     * @see #onActivityResult(int, int, Intent)
+     */
+    private void chooseImportFile() {
+
+        Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
+        intent.setType("text/*"); //$NON-NLS-1$
+        intent.addCategory(Intent.CATEGORY_OPENABLE);
+
+        try {
+
+            startActivityForResult(Intent.createChooser(intent,
+                    getString(R.string.import_file_label)),
+                    REQUEST_IMPORT_FILE);
+
+        } catch (ActivityNotFoundException e) {
+
+            Log.e(getClass().getName(), "chooseImportFile", e); //$NON-NLS-1$
+            alert(getString(R.string.failed_to_import_file));
+
+        }
+    }
+
+    /**
+     * Offer the user the opportunity to delete the selected rows from the
      * database
      * 
-     * @param ssid
-     *            the SSID of the entry to delete
+     * <p>
+     * All of them are deleted in a single transaction in the database thread.
+     * Once that has committed, they are removed from the list in place rather
+     * than by re-querying it
+     * </p>
      */
-    private void deleteRow(final String ssid) {
+    private void deleteSelected() {
+
+        final long[] ids = getAdapter().getSelectedIds();
+
+        if (ids.length == 0) {
+
+            return;
+
+        }
 
         AlertDialog.Builder builder = new AlertDialog.Builder(getActivity());
-        builder.setMessage(getString(R.string.delete_ssid_prompt, ssid));
+        builder.setMessage(getString(R.string.delete_selected_prompt,
+                ids.length));
 
         builder.setPositiveButton(android.R.string.yes,
                 new DialogInterface.OnClickListener() {
@@ -330,11 +935,30 @@ public class SavedRowsFragment extends Fragment {
                     @Override
                     public void onClick(DialogInterface dialog, int which) {
 
-                        QueryHandler handler = QueryHandler
-                                .getInstance(getActivity());
-                        WifiSettingsDatabaseHelper helper = handler.getHelper();
-                        SQLiteDatabase db = helper.getWritableDatabase();
-                        helper.delete(db, ssid);
+                        QueryHandler.getInstance(getActivity()).deleteById(
+                                new QueryHandler.DeleteListener() {
+
+                                    @Override
+                                    public void onDeletePerformed(
+                                            long[] deletedIds) {
+
+                                        SavedRowsAdapter adapter = getAdapter();
+
+                                        if (adapter != null) {
+
+                                            adapter.removeById(deletedIds);
+
+                                        }
+
+                                        if (isAdded()) {
+
+                                            getActivity()
+                                                    .supportInvalidateOptionsMenu();
+
+                                        }
+                                    }
+
+                                }, ids);
                         dialog.dismiss();
 
                     }
@@ -355,6 +979,16 @@ public class SavedRowsFragment extends Fragment {
 
     }
 
+    /**
+     * @return the {@link SavedRowsAdapter} of {@link #allRowsList} or
+     *         <code>null</code> if the list hasn't been populated
+     */
+    private SavedRowsAdapter getAdapter() {
+
+        return (SavedRowsAdapter) allRowsList.getAdapter();
+
+    }
+
     /**
      * Return the data for the chosen SSID to the <code>Activity</code> that started
      * this one
@@ -370,26 +1004,22 @@ public class SavedRowsFragment extends Fragment {
     }
 
     /**
-     * Populate the list in the UI from the given database query results
-     * 
-     * @param rows
-     *            database query results
+     * Populate the list in the UI with a new {@link SavedRowsAdapter}, which
+     * loads the saved SSID's matching {@link #searchText} a page at a time
      */
-    private void populateList(List<Map<String, String>> rows) {
+    private void populateList() {
 
-        ArrayList<String> ssidList = new ArrayList<String>();
+        String search = searchText.getText().toString().trim();
 
-        for (Map<String, String> row : rows) {
+        if (search.length() == 0) {
 
-            String ssid = row
-                    .get(WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SSID);
-            ssidList.add(ssid);
+            QueryHandler.getInstance(getActivity()).cancelSearch();
+            search = null;
 
         }
 
-        ArrayAdapter<String> adapter = new ArrayAdapter<String>(getActivity(),
-                R.layout.row_layout, R.id.ssid_row_text, ssidList);
-        allRowsList.setAdapter(adapter);
+        allRowsList.setAdapter(new SavedRowsAdapter(getActivity(), search));
+        getActivity().supportInvalidateOptionsMenu();
 
     }
 
@@ -449,4 +1079,52 @@ public class SavedRowsFragment extends Fragment {
 
     }
 
+    /**
+     * Display the per-network results of provisioning
+     * 
+     * @param provisioner
+     *            the {@link WifiSettingsProvisioner}
+     */
+    private void showProvisioningResults(WifiSettingsProvisioner provisioner) {
+
+        List<WifiSettingsProvisioner.Result> results = provisioner
+                .getResults();
+        StringBuilder message = new StringBuilder(getString(
+                R.string.provisioned_networks, results.size()
+                        - provisioner.getFailedCount(), results.size()));
+
+        if (!provisioner.isSaved()) {
+
+            message.append('\n');
+            message.append(getString(R.string.failed_to_save_configuration));
+
+        }
+
+        message.append('\n');
+
+        for (WifiSettingsProvisioner.Result result : results) {
+
+            message.append('\n');
+            message.append(result);
+
+        }
+
+        alert(message);
+
+    }
+
+    /**
+     * Select or deselect the row at the given position and show or hide
+     * {@link R.id#delete_selected_item} to match
+     * 
+     * @param position
+     *            the position
+     */
+    private void toggleSelected(int position) {
+
+        getAdapter().toggleSelected(position);
+        getActivity().supportInvalidateOptionsMenu();
+
+    }
+
 }
@@ -18,11 +18,10 @@ package us.rader.wyfy;
 
 import us.rader.wyfy.db.QueryHandler;
 import us.rader.wyfy.db.WifiSettingsDatabaseHelper;
+import us.rader.wyfy.model.Security;
 import us.rader.wyfy.model.WifiSettings;
-import us.rader.wyfy.model.WifiSettings.Security;
 import android.app.Activity;
 import android.database.Cursor;
-import android.database.sqlite.SQLiteDatabase;
 import android.os.Bundle;
 import android.support.v4.app.Fragment;
 import android.text.Editable;
@@ -97,7 +96,7 @@ public final class WifiSettingsFragment extends Fragment {
 
     /**
      * Invoke
-     * {@link WifiSettingsDatabaseHelper#lookupPassword(android.database.sqlite.SQLiteDatabase, String)}
+     * {@link WifiSettingsDatabaseHelper#lookupPassword(String)}
      * in a worker thread, update the UI in the main thread
      */
     private final class LookupPasswordListener implements
@@ -106,6 +105,10 @@ public final class WifiSettingsFragment extends Fragment {
         /**
          * Update the UI to reflect the result of a database query
          * 
+         * <p>
+         * This is called in the UI thread
+         * </p>
+         * 
          * @param ssid
          *            the SSID
          * 
@@ -116,24 +119,15 @@ public final class WifiSettingsFragment extends Fragment {
          *      String)
          */
         @Override
-        public void onPasswordResult(final String ssid, final String password) {
-
-            getActivity().runOnUiThread(new Runnable() {
-
-                @Override
-                public void run() {
-
-                    if (password != null) {
-
-                        wifiSettings.setPassword(password);
+        public void onPasswordResult(String ssid, String password) {
 
-                    }
+            if (password != null) {
 
-                    onModelChanged(false);
+                wifiSettings.setPassword(password);
 
-                }
+            }
 
-            });
+            onModelChanged(false);
 
         }
 
@@ -396,13 +390,11 @@ public final class WifiSettingsFragment extends Fragment {
 
         if (savedInstanceState != null) {
 
-            wifiSettings.setSsid(savedInstanceState.getString(SSID_PARAMETER));
-            wifiSettings.setPassword(savedInstanceState
-                    .getString(PASSWORD_PARAMETER));
-            wifiSettings.setHidden(savedInstanceState
-                    .getBoolean(HIDDEN_PARAMETER));
-            wifiSettings.setSecurity((Security) savedInstanceState
-                    .getSerializable(SECURITY_PARAMETER));
+            wifiSettings.set(savedInstanceState.getString(SSID_PARAMETER),
+                    savedInstanceState.getString(PASSWORD_PARAMETER),
+                    (Security) savedInstanceState
+                            .getSerializable(SECURITY_PARAMETER),
+                    savedInstanceState.getBoolean(HIDDEN_PARAMETER));
 
         }
     }
@@ -460,11 +452,8 @@ public final class WifiSettingsFragment extends Fragment {
      */
     public void onInitializedFromActiveConnection() {
 
-        QueryHandler handler = QueryHandler.getInstance(getActivity());
-        WifiSettingsDatabaseHelper helper = handler.getHelper();
-        SQLiteDatabase db = helper.getWritableDatabase();
-        handler.lookupPassword(db, new LookupPasswordListener(),
-                wifiSettings.getSsid());
+        QueryHandler.getInstance(getActivity()).lookupPassword(
+                new LookupPasswordListener(), wifiSettings.getSsid());
 
     }
 
@@ -507,6 +496,20 @@ public final class WifiSettingsFragment extends Fragment {
         }
     }
 
+    /**
+     * Write any saves of the model that are still waiting for the user to stop
+     * typing
+     * 
+     * @see QueryHandler#flushPendingSaves()
+     */
+    @Override
+    public void onPause() {
+
+        super.onPause();
+        QueryHandler.getInstance(getActivity()).flushPendingSaves();
+
+    }
+
     /**
      * Save the app-specific state of this instance
      * 
@@ -572,15 +575,20 @@ public final class WifiSettingsFragment extends Fragment {
 
     /**
      * Invoke
-     * {@link WifiSettingsDatabaseHelper#storeWifiSettings(SQLiteDatabase)}
-     * asynchronousy
+     * {@link WifiSettingsDatabaseHelper#storeWifiSettings(us.rader.wyfy.model.WifiSettingsSnapshot)}
+     * asynchronousy for a snapshot of the current state
+     * 
+     * <p>
+     * The write is deferred until the user stops typing, so a burst of edits
+     * results in a single write
+     * </p>
+     * 
+     * @see QueryHandler#storeWifiSettings(us.rader.wyfy.model.WifiSettingsSnapshot)
      */
     private void storeWifiSettings() {
 
-        QueryHandler handler = QueryHandler.getInstance(getActivity());
-        WifiSettingsDatabaseHelper helper = handler.getHelper();
-        SQLiteDatabase db = helper.getWritableDatabase();
-        handler.storeWifiSettings(db);
+        QueryHandler.getInstance(getActivity()).storeWifiSettings(
+                wifiSettings.getSnapshot());
 
     }
 
@@ -15,6 +15,9 @@
  */
 package us.rader.wyfy;
 
+import us.rader.wyfy.model.WifiSettings;
+import us.rader.wyfy.model.WifiSettingsSnapshot;
+import us.rader.wyfy.nfc.NdefUriPayload;
 import us.rader.wyfy.nfc.NdefWriterActivity;
 import android.annotation.TargetApi;
 import android.content.Intent;
@@ -110,7 +113,7 @@ public final class WriteTagActivity extends NdefWriterActivity {
     @Override
     protected NdefMessage createNdefMessage(NdefMessage currentMessage) {
 
-        NdefRecord record = createUri(uri);
+        NdefRecord record = createUriRecord(getUriPayload());
         NdefRecord aar = createAar(getClass().getPackage());
         NdefMessage ndefMessage = new NdefMessage(new NdefRecord[] { record,
                 aar });
@@ -157,6 +160,33 @@ public final class WriteTagActivity extends NdefWriterActivity {
         transaction.commit();
     }
 
+    /**
+     * Get the "U" record payload for {@link #uri}
+     * 
+     * <p>
+     * This re-uses the payload cached by the current
+     * {@link WifiSettingsSnapshot} when {@link #uri} is its WIFI: URI, which
+     * is the case when launched by {@link MainActivity}
+     * </p>
+     * 
+     * @return the payload
+     */
+    private byte[] getUriPayload() {
+
+        String string = uri.toString();
+        WifiSettingsSnapshot snapshot = WifiSettings.getInstance()
+                .getSnapshot();
+
+        if (string.equals(snapshot.getUri())) {
+
+            return snapshot.getNdefUriPayload();
+
+        }
+
+        return NdefUriPayload.encode(string);
+
+    }
+
     /**
      * Set up the {@link android.app.ActionBar}, if the API is available.
      */
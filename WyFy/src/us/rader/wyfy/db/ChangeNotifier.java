@@ -0,0 +1,268 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.db;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import us.rader.wyfy.db.WifiSettingsDatabaseHelper.ChangeListener;
+import android.os.Handler;
+
+/**
+ * Registry of the {@link ChangeListener}s of a
+ * {@link WifiSettingsDatabaseHelper}
+ * 
+ * <p>
+ * Each listener is notified using a {@link Handler} for the thread that
+ * registered it, if that thread has a <code>Looper</code>, otherwise in the
+ * thread that made the change. A notification that is still queued when its
+ * listener is removed is discarded. All methods are thread-safe
+ * </p>
+ * 
+ * @author Kirk
+ */
+final class ChangeNotifier {
+
+    /**
+     * Empty array of <code>_id</code> values
+     */
+    private static final long[] NO_IDS = new long[0];
+
+    /**
+     * Copy the given <code>_id</code> values to an array
+     * 
+     * @param ids
+     *            the <code>_id</code> values
+     * 
+     * @return the array
+     */
+    private static long[] toArray(Set<Long> ids) {
+
+        if (ids.isEmpty()) {
+
+            return NO_IDS;
+
+        }
+
+        long[] result = new long[ids.size()];
+        int index = 0;
+
+        for (Long id : ids) {
+
+            result[index++] = id.longValue();
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Each listener and the {@link Handler} with which to notify it or
+     * <code>null</code>
+     */
+    private final Map<ChangeListener, Handler> listeners;
+
+    /**
+     * Initialize to having no listeners
+     */
+    ChangeNotifier() {
+
+        listeners = new LinkedHashMap<ChangeListener, Handler>();
+
+    }
+
+    /**
+     * Register a listener, to be notified in the current thread
+     * 
+     * @param listener
+     *            the {@link ChangeListener}
+     */
+    synchronized void add(ChangeListener listener) {
+
+        listeners.put(listener, QueryHandler.getCallerHandler());
+
+    }
+
+    /**
+     * Notify the listeners that the given rows have been deleted
+     * 
+     * @param ids
+     *            <code>_id</code> values of the deleted rows
+     */
+    void deleted(long[] ids) {
+
+        if (ids.length > 0) {
+
+            rowsChanged(NO_IDS, NO_IDS, ids);
+
+        }
+    }
+
+    /**
+     * @return <code>true</code> if and only if any listeners are registered
+     */
+    synchronized boolean hasListeners() {
+
+        return !listeners.isEmpty();
+
+    }
+
+    /**
+     * Unregister a listener
+     * 
+     * @param listener
+     *            the {@link ChangeListener}
+     */
+    synchronized void remove(ChangeListener listener) {
+
+        listeners.remove(listener);
+
+    }
+
+    /**
+     * Notify the listeners that the given rows have been stored
+     * 
+     * <p>
+     * A new row is given an <code>_id</code> greater than any in the table,
+     * so rows whose <code>_id</code> is greater than the largest one before
+     * the rows were stored were inserted and the others were updated. A row
+     * stored more than once is reported once
+     * </p>
+     * 
+     * @param maxId
+     *            largest <code>_id</code> in the table before the rows were
+     *            stored, or 0 if it was empty
+     * 
+     * @param ids
+     *            <code>_id</code> values of the stored rows
+     */
+    void stored(long maxId, long... ids) {
+
+        Set<Long> inserted = new LinkedHashSet<Long>();
+        Set<Long> updated = new LinkedHashSet<Long>();
+
+        for (long id : ids) {
+
+            if (id > maxId) {
+
+                inserted.add(Long.valueOf(id));
+
+            } else if (id > 0) {
+
+                updated.add(Long.valueOf(id));
+
+            }
+        }
+
+        if (!inserted.isEmpty() || !updated.isEmpty()) {
+
+            rowsChanged(toArray(inserted), toArray(updated), NO_IDS);
+
+        }
+    }
+
+    /**
+     * Notify the listeners that any row may have been inserted, updated or
+     * deleted
+     */
+    void tableChanged() {
+
+        for (Map.Entry<ChangeListener, Handler> entry : getListeners()) {
+
+            final ChangeListener listener = entry.getKey();
+            QueryHandler.deliver(entry.getValue(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    if (isRegistered(listener)) {
+
+                        listener.onTableChanged();
+
+                    }
+                }
+
+            });
+
+        }
+    }
+
+    /**
+     * @return a copy of {@link #listeners}, to iterate without holding the
+     *         lock
+     */
+    private synchronized List<Map.Entry<ChangeListener, Handler>> getListeners() {
+
+        return new ArrayList<Map.Entry<ChangeListener, Handler>>(
+                listeners.entrySet());
+
+    }
+
+    /**
+     * Test whether the given listener is still registered
+     * 
+     * @param listener
+     *            the {@link ChangeListener}
+     * 
+     * @return <code>true</code> if and only if it is registered
+     */
+    private synchronized boolean isRegistered(ChangeListener listener) {
+
+        return listeners.containsKey(listener);
+
+    }
+
+    /**
+     * Notify the listeners of changes to the given rows
+     * 
+     * @param inserted
+     *            <code>_id</code> values of the inserted rows
+     * 
+     * @param updated
+     *            <code>_id</code> values of the updated rows
+     * 
+     * @param deleted
+     *            <code>_id</code> values of the deleted rows
+     */
+    private void rowsChanged(final long[] inserted, final long[] updated,
+            final long[] deleted) {
+
+        for (Map.Entry<ChangeListener, Handler> entry : getListeners()) {
+
+            final ChangeListener listener = entry.getKey();
+            QueryHandler.deliver(entry.getValue(), new Runnable() {
+
+                @Override
+                public void run() {
+
+                    if (isRegistered(listener)) {
+
+                        listener.onRowsChanged(inserted, updated, deleted);
+
+                    }
+                }
+
+            });
+
+        }
+    }
+
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.db;
+
+/**
+ * Queue depth and latency statistics for one type of {@link QueryHandler}
+ * operation
+ * 
+ * <p>
+ * The wait time of an operation is the time from when it was enqueued until it
+ * started to run. Its latency is the time from when it was enqueued until it
+ * finished, i.e. the time the caller waited for the result. All methods are
+ * thread-safe
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class OperationMetrics {
+
+    /**
+     * Nanoseconds per millisecond
+     */
+    private static final double          NANOS_PER_MILLI = 1000000.0;
+
+    /**
+     * Number of completed operations
+     */
+    private long                         completedCount;
+
+    /**
+     * Number of operations that threw an exception
+     */
+    private long                         failedCount;
+
+    /**
+     * Longest latency of any completed operation, in nanoseconds
+     */
+    private long                         maxLatencyNanos;
+
+    /**
+     * Greatest value reached by {@link #queueDepth}
+     */
+    private int                          maxQueueDepth;
+
+    /**
+     * The operation type
+     */
+    private final QueryHandler.Operation operation;
+
+    /**
+     * Number of operations enqueued but not yet completed
+     */
+    private int                          queueDepth;
+
+    /**
+     * Sum of the latencies of all completed operations, in nanoseconds
+     */
+    private long                         totalLatencyNanos;
+
+    /**
+     * Sum of the wait times of all completed operations, in nanoseconds
+     */
+    private long                         totalWaitNanos;
+
+    /**
+     * Initialize to zero counts
+     * 
+     * @param operation
+     *            the operation type
+     */
+    OperationMetrics(QueryHandler.Operation operation) {
+
+        this.operation = operation;
+
+    }
+
+    /**
+     * @return average latency of the completed operations, in milliseconds
+     */
+    public synchronized double getAverageLatencyMillis() {
+
+        if (completedCount == 0) {
+
+            return 0.0;
+
+        }
+
+        return totalLatencyNanos / (completedCount * NANOS_PER_MILLI);
+
+    }
+
+    /**
+     * @return average wait time of the completed operations, in milliseconds
+     */
+    public synchronized double getAverageWaitMillis() {
+
+        if (completedCount == 0) {
+
+            return 0.0;
+
+        }
+
+        return totalWaitNanos / (completedCount * NANOS_PER_MILLI);
+
+    }
+
+    /**
+     * @return number of completed operations, including failed ones
+     */
+    public synchronized long getCompletedCount() {
+
+        return completedCount;
+
+    }
+
+    /**
+     * @return number of operations that threw an exception
+     */
+    public synchronized long getFailedCount() {
+
+        return failedCount;
+
+    }
+
+    /**
+     * @return longest latency of any completed operation, in milliseconds
+     */
+    public synchronized double getMaxLatencyMillis() {
+
+        return maxLatencyNanos / NANOS_PER_MILLI;
+
+    }
+
+    /**
+     * @return greatest number of operations waiting at any one time
+     */
+    public synchronized int getMaxQueueDepth() {
+
+        return maxQueueDepth;
+
+    }
+
+    /**
+     * @return the operation type
+     */
+    public QueryHandler.Operation getOperation() {
+
+        return operation;
+
+    }
+
+    /**
+     * @return number of operations enqueued but not yet completed
+     */
+    public synchronized int getQueueDepth() {
+
+        return queueDepth;
+
+    }
+
+    /**
+     * Return a summary of the statistics
+     * 
+     * @return summary string
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public synchronized String toString() {
+
+        return String.format(
+                "%s: %d completed, %d failed, queue %d (max %d), wait %.1f ms, latency %.1f ms (max %.1f ms)", //$NON-NLS-1$
+                operation, completedCount, failedCount, queueDepth,
+                maxQueueDepth, getAverageWaitMillis(),
+                getAverageLatencyMillis(), getMaxLatencyMillis());
+
+    }
+
+    /**
+     * Record the completion of operations
+     * 
+     * @param count
+     *            number of operations completed together
+     * 
+     * @param waitNanos
+     *            nanoseconds from when the operations were enqueued until they
+     *            started to run
+     * 
+     * @param latencyNanos
+     *            nanoseconds from when the operations were enqueued until they
+     *            finished
+     * 
+     * @param failed
+     *            <code>true</code> if and only if the operations threw an
+     *            exception
+     */
+    synchronized void completed(int count, long waitNanos, long latencyNanos,
+            boolean failed) {
+
+        queueDepth = Math.max(0, queueDepth - count);
+        completedCount += count;
+        totalWaitNanos += count * waitNanos;
+        totalLatencyNanos += count * latencyNanos;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+
+        if (failed) {
+
+            failedCount += count;
+
+        }
+    }
+
+    /**
+     * Record that an operation was enqueued
+     */
+    synchronized void enqueued() {
+
+        maxQueueDepth = Math.max(maxQueueDepth, ++queueDepth);
+
+    }
+
+}
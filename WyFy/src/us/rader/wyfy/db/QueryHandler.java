@@ -16,21 +16,243 @@
 
 package us.rader.wyfy.db;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import us.rader.wyfy.model.WifiSettingsSnapshot;
+import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
- * Command queue {@link Handler} for making serialized, asynchronous calls to
- * {@link WifiSettingsDatabaseHelper}
+ * Command queue for making asynchronous calls to
+ * {@link WifiSettingsDatabaseHelper} off the UI thread
+ * 
+ * <p>
+ * This {@link Handler} runs on a dedicated background thread which performs
+ * every write, one at a time and in the order requested. Reads run
+ * concurrently in a small pool of reader threads; with write-ahead logging
+ * they don't wait for writes to commit. Results are delivered to listeners in
+ * the thread that enqueued the command
+ * </p>
+ * 
+ * <p>
+ * Saves of the model are written behind.
+ * {@link #storeWifiSettings(WifiSettingsSnapshot)} only records the latest
+ * snapshot for each SSID. The pending snapshots are written in a single
+ * transaction once no further save has been requested for
+ * {@link #SAVE_DELAY_MILLIS}, when {@link #flushPendingSaves()} is called or
+ * before any other command runs, so that reads always see earlier saves
+ * </p>
+ * 
+ * <p>
+ * Reads see every write requested before them. A read requested while any
+ * save is pending or any write command, e.g. a delete or an import, is queued
+ * or running is itself queued on the writer thread and handed to the reader
+ * threads only once the writes ahead of it have committed. Otherwise it goes
+ * straight to the reader threads
+ * </p>
+ * 
+ * <p>
+ * Queue depth and latency are recorded for each {@link Operation}, see
+ * {@link #getMetrics(Operation)}
+ * </p>
  */
 public final class QueryHandler extends Handler {
 
+    /**
+     * A database operation, with its metrics
+     */
+    private abstract class Command implements Runnable {
+
+        /**
+         * Time at which this command was enqueued, in nanoseconds
+         */
+        private final long      enqueueTime;
+
+        /**
+         * The operation type
+         */
+        private final Operation operation;
+
+        /**
+         * Record that the operation has been enqueued
+         * 
+         * @param operation
+         *            the operation type
+         */
+        protected Command(Operation operation) {
+
+            this.operation = operation;
+            enqueueTime = System.nanoTime();
+            getMetrics(operation).enqueued();
+
+        }
+
+        /**
+         * Invoke {@link #execute()} and record its metrics
+         * 
+         * @see java.lang.Runnable#run()
+         */
+        @Override
+        public final void run() {
+
+            long startTime = System.nanoTime();
+            boolean failed = true;
+
+            try {
+
+                execute();
+                failed = false;
+
+            } catch (Exception e) {
+
+                Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+
+            } finally {
+
+                getMetrics(operation).completed(1, startTime - enqueueTime,
+                        System.nanoTime() - enqueueTime, failed);
+
+            }
+        }
+
+        /**
+         * Perform the operation
+         * 
+         * @throws Exception
+         *             if an error occurs
+         */
+        protected abstract void execute() throws Exception;
+
+    }
+
+    /**
+     * Interface implemented by objects that are notified when an asynchronous
+     * batch delete has committed
+     * 
+     * <p>
+     * The callback is made in the thread that enqueued the delete if that
+     * thread has a <code>Looper</code>, otherwise in a worker thread
+     * </p>
+     */
+    public interface DeleteListener {
+
+        /**
+         * The rows with the given <code>_id</code> values have been deleted
+         * 
+         * @param ids
+         *            the <code>_id</code> values passed to
+         *            {@link QueryHandler#deleteById(DeleteListener, long...)}
+         * 
+         * @see WifiSettingsDatabaseHelper#deleteById(long...)
+         */
+        void onDeletePerformed(long[] ids);
+
+    }
+
+    /**
+     * Interface implemented by objects that receive the results of
+     * asynchronous bulk imports
+     * 
+     * <p>
+     * The callback is made in the thread that enqueued the import if that
+     * thread has a <code>Looper</code>, otherwise in a worker thread
+     * </p>
+     */
+    public interface ImportListener {
+
+        /**
+         * Handle the results of
+         * {@link WifiSettingsImporter#importUris(SQLiteDatabase, Reader)}
+         * 
+         * @param importer
+         *            the {@link WifiSettingsImporter}, from which the counts,
+         *            throughput and per-line errors may be retrieved, or
+         *            <code>null</code> if the input couldn't be read
+         * 
+         * @see QueryHandler#importWifiSettings(ImportListener, Uri)
+         */
+        void onImportPerformed(WifiSettingsImporter importer);
+
+    }
+
+    /**
+     * Types of operation for which metrics are recorded
+     * 
+     * @author Kirk
+     */
+    public enum Operation {
+
+        /**
+         * {@link QueryHandler#delete(String, String...)} and
+         * {@link QueryHandler#deleteById(DeleteListener, long...)}
+         */
+        DELETE,
+
+        /**
+         * {@link QueryHandler#importWifiSettings(ImportListener, File)}
+         */
+        IMPORT,
+
+        /**
+         * {@link QueryHandler#lookupPassword(QueryListener, String)}
+         */
+        LOOKUP_PASSWORD,
+
+        /**
+         * {@link QueryHandler#query(QueryListener, String, String...)}
+         */
+        QUERY,
+
+        /**
+         * {@link QueryHandler#queryPage(QueryListener, long, int)}
+         */
+        QUERY_PAGE,
+
+        /**
+         * {@link QueryHandler#search(QueryListener, String, long, int)}
+         */
+        SEARCH,
+
+        /**
+         * Each row written by
+         * {@link QueryHandler#storeWifiSettings(WifiSettingsSnapshot)},
+         * timed from the oldest save in the batch
+         */
+        STORE;
+
+    }
+
     /**
      * Interface implemented by objects that receive the results of asyncrhonous
      * database queries
+     * 
+     * <p>
+     * Callbacks are made in the thread that enqueued the query if that thread
+     * has a <code>Looper</code>, e.g. the UI thread, otherwise in a worker
+     * thread
+     * </p>
      */
     public interface QueryListener {
 
@@ -44,106 +266,709 @@ public final class QueryHandler extends Handler {
          * @param password
          *            the password for the given SSID
          * 
-         * @see QueryHandler#lookupPassword(SQLiteDatabase, QueryListener,
-         *      String)
-         * @see WifiSettingsDatabaseHelper#lookupPassword(SQLiteDatabase,
-         *      String)
+         * @see QueryHandler#lookupPassword(QueryListener, String)
+         * @see WifiSettingsDatabaseHelper#lookupPassword(String)
          */
         void onPasswordResult(String ssid, String password);
 
         /**
          * Handle the response returned by
-         * {@link WifiSettingsDatabaseHelper#query(SQLiteDatabase, String, String...)}
+         * {@link WifiSettingsDatabaseHelper#query(String, String...)}
          * 
          * @param cursor
          *            {@link Cursor} returned by
-         *            {@link WifiSettingsDatabaseHelper#query(SQLiteDatabase, String, String...)}
+         *            {@link WifiSettingsDatabaseHelper#query(String, String...)},
+         *            whose rows have already been read in a worker thread;
+         *            the listener must close it
          * 
-         * @see QueryHandler#query(SQLiteDatabase, QueryListener, String,
-         *      String...)
-         * @see WifiSettingsDatabaseHelper#query(SQLiteDatabase, String,
-         *      String...)
+         * @see QueryHandler#query(QueryListener, String, String...)
+         * @see WifiSettingsDatabaseHelper#query(String, String...)
          */
         void onQueryPerformed(Cursor cursor);
 
     }
 
     /**
-     * The singleton instance
+     * Run one page of a search, discarding the results if the search is
+     * cancelled before they are delivered
+     */
+    private final class SearchCommand extends Command {
+
+        /**
+         * <code>_id</code> of the last row of the previous page
+         */
+        private final long          afterId;
+
+        /**
+         * {@link Handler} used to deliver the results
+         */
+        private final Handler       caller;
+
+        /**
+         * Value of {@link QueryHandler#searchGeneration} for the search
+         */
+        private final int           generation;
+
+        /**
+         * Maximum number of rows
+         */
+        private final int           limit;
+
+        /**
+         * {@link QueryListener}
+         */
+        private final QueryListener listener;
+
+        /**
+         * Search text
+         */
+        private final String        text;
+
+        /**
+         * Initialize all fields
+         * 
+         * @param listener
+         *            {@link QueryListener}
+         * 
+         * @param caller
+         *            {@link Handler} used to deliver the results
+         * 
+         * @param text
+         *            search text
+         * 
+         * @param afterId
+         *            <code>_id</code> of the last row of the previous page
+         * 
+         * @param limit
+         *            maximum number of rows
+         * 
+         * @param generation
+         *            value of {@link QueryHandler#searchGeneration} for the
+         *            search
+         */
+        SearchCommand(QueryListener listener, Handler caller, String text,
+                long afterId, int limit, int generation) {
+
+            super(Operation.SEARCH);
+            this.listener = listener;
+            this.caller = caller;
+            this.text = text;
+            this.afterId = afterId;
+            this.limit = limit;
+            this.generation = generation;
+
+        }
+
+        /**
+         * Run the search, unless it has already been cancelled
+         * 
+         * @see us.rader.wyfy.db.QueryHandler.Command#execute()
+         */
+        @Override
+        protected void execute() {
+
+            if (isCancelled(generation)) {
+
+                return;
+
+            }
+
+            final Cursor cursor = helper.search(text, afterId, limit);
+            cursor.getCount();
+
+            if (isCancelled(generation)) {
+
+                cursor.close();
+                return;
+
+            }
+
+            deliver(caller, new Runnable() {
+
+                @Override
+                public void run() {
+
+                    if (isCancelled(generation)) {
+
+                        cursor.close();
+                        return;
+
+                    }
+
+                    listener.onQueryPerformed(cursor);
+
+                }
+
+            });
+
+        }
+
+    }
+
+    /**
+     * Number of reader threads
+     */
+    private static final int    READER_THREADS      = 2;
+
+    /**
+     * Quiet period, in milliseconds, after the most recent save before the
+     * pending saves are written
+     */
+    private static final long   SAVE_DELAY_MILLIS   = 500;
+
+    /**
+     * Quiet period, in milliseconds, after the most recent change to the
+     * search text before a new search is run
+     */
+    private static final long   SEARCH_DELAY_MILLIS = 150;
+
+    /**
+     * The singleton instance
+     */
+    private static QueryHandler singleton;
+
+    static {
+
+        singleton = null;
+
+    }
+
+    /**
+     * Run a listener callback using the given {@link Handler}
+     * 
+     * @param caller
+     *            {@link Handler} of the thread that enqueued the command or
+     *            <code>null</code> to run it in the current thread
+     * 
+     * @param callback
+     *            the callback
+     */
+    static void deliver(Handler caller, Runnable callback) {
+
+        if (caller == null) {
+
+            callback.run();
+
+        } else {
+
+            caller.post(callback);
+
+        }
+    }
+
+    /**
+     * Return a {@link Handler} for delivering callbacks to the current thread
+     * 
+     * @return the {@link Handler} or <code>null</code> if the current thread
+     *         has no <code>Looper</code>
+     */
+    static Handler getCallerHandler() {
+
+        Looper looper = Looper.myLooper();
+
+        if (looper == null) {
+
+            return null;
+
+        }
+
+        return new Handler(looper);
+
+    }
+
+    /**
+     * Lazy creation of {@link #singleton}
+     * 
+     * <p>
+     * The singleton, its threads and the database connection owned by its
+     * {@link WifiSettingsDatabaseHelper} live as long as the process
+     * </p>
+     * 
+     * @param context
+     *            any {@link Context} of this application
+     * 
+     * @return {@link #singleton}
+     */
+    public static synchronized QueryHandler getInstance(Context context) {
+
+        if (singleton == null) {
+
+            singleton = new QueryHandler(context);
+
+        }
+
+        return singleton;
+
+    }
+
+    /**
+     * Start the writer thread
+     * 
+     * @return the writer thread's <code>Looper</code>
+     */
+    private static Looper startWriterThread() {
+
+        HandlerThread thread = new HandlerThread(
+                QueryHandler.class.getSimpleName(),
+                Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        return thread.getLooper();
+
+    }
+
+    /**
+     * Time at which the oldest of {@link #pendingSaves} was requested, in
+     * nanoseconds
+     */
+    private long                                    firstPendingSaveTime;
+
+    /**
+     * Write the pending saves
+     */
+    private final Runnable                          flushTask;
+
+    /**
+     * {@link WifiSettingsDatabaseHelper}
+     */
+    private final WifiSettingsDatabaseHelper        helper;
+
+    /**
+     * Metrics for each {@link Operation}
+     */
+    private final Map<Operation, OperationMetrics>  metrics;
+
+    /**
+     * Snapshots waiting to be written, keyed by SSID
+     */
+    private final Map<String, WifiSettingsSnapshot> pendingSaves;
+
+    /**
+     * Number of write commands queued or running on the writer thread,
+     * including a write of {@link #pendingSaves} in progress. Guarded by
+     * {@link #pendingSaves}
+     */
+    private int                                     pendingWrites;
+
+    /**
+     * Threads on which reads are performed
+     */
+    private final ExecutorService                   readers;
+
+    /**
+     * Used to open the content imported by
+     * {@link #importWifiSettings(ImportListener, Uri)}
+     */
+    private final ContentResolver                   resolver;
+
+    /**
+     * Incremented by each new search, so that the results of earlier ones can
+     * be discarded
+     */
+    private final AtomicInteger                     searchGeneration;
+
+    /**
+     * Token identifying the debounced search, if any, waiting to run
+     */
+    private final Object                            searchToken;
+
+    /**
+     * Initialize {@link #helper} and start the worker threads
+     * 
+     * @param context
+     *            {@link Context} for
+     *            {@link WifiSettingsDatabaseHelper#WifiSettingsDatabaseHelper(Context)}
+     */
+    private QueryHandler(Context context) {
+
+        super(startWriterThread());
+        helper = new WifiSettingsDatabaseHelper(context);
+        resolver = context.getApplicationContext().getContentResolver();
+        pendingSaves = new LinkedHashMap<String, WifiSettingsSnapshot>();
+        metrics = new EnumMap<Operation, OperationMetrics>(Operation.class);
+        searchGeneration = new AtomicInteger();
+        searchToken = new Object();
+
+        for (Operation operation : Operation.values()) {
+
+            metrics.put(operation, new OperationMetrics(operation));
+
+        }
+
+        readers = Executors.newFixedThreadPool(READER_THREADS,
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+
+                        return new Thread(new Runnable() {
+
+                            @Override
+                            public void run() {
+
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+
+                            }
+
+                        }, QueryHandler.class.getSimpleName());
+
+                    }
+
+                });
+
+        flushTask = new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    writePendingSaves();
+
+                } catch (Exception e) {
+
+                    Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+
+                }
+            }
+
+        };
+
+    }
+
+    /**
+     * Cancel the current search, if any
+     * 
+     * <p>
+     * A search that is waiting out its quiet period is dropped and the results
+     * of one that is already running are discarded
+     * </p>
+     */
+    public void cancelSearch() {
+
+        searchGeneration.incrementAndGet();
+        removeCallbacksAndMessages(searchToken);
+
+    }
+
+    /**
+     * Write any pending saves, log the metrics, close {@link #helper} and stop
+     * the worker threads
+     * 
+     * <p>
+     * The next call to {@link #getInstance(Context)} creates a new instance
+     * </p>
+     */
+    public void close() {
+
+        synchronized (QueryHandler.class) {
+
+            if (singleton == this) {
+
+                singleton = null;
+
+            }
+        }
+
+        readers.shutdown();
+        removeCallbacks(flushTask);
+        post(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    writePendingSaves();
+                    logMetrics();
+                    helper.close();
+
+                } catch (Exception e) {
+
+                    Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+
+                } finally {
+
+                    getLooper().quit();
+
+                }
+            }
+
+        });
+
+    }
+
+    /**
+     * Enqueue an asynchronous invocation of
+     * {@link WifiSettingsDatabaseHelper#delete(String, String...)}
+     * 
+     * @param selection
+     *            selection string
+     * 
+     * @param selectionArgs
+     *            selection arguments
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     * 
+     * @see WifiSettingsDatabaseHelper#delete(String, String...)
+     */
+    public boolean delete(final String selection,
+            final String... selectionArgs) {
+
+        return write(new Command(Operation.DELETE) {
+
+            @Override
+            protected void execute() {
+
+                writePendingSaves();
+                helper.delete(selection, selectionArgs);
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Enqueue an asynchronous invocation of
+     * {@link WifiSettingsDatabaseHelper#deleteById(long...)}, which deletes all
+     * of the given rows in a single transaction
+     * 
+     * @param listener
+     *            {@link DeleteListener}
+     * 
+     * @param ids
+     *            <code>_id</code> values of the rows to delete
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     * 
+     * @see WifiSettingsDatabaseHelper#deleteById(long...)
+     */
+    public boolean deleteById(final DeleteListener listener,
+            final long... ids) {
+
+        final Handler caller = getCallerHandler();
+        return write(new Command(Operation.DELETE) {
+
+            @Override
+            protected void execute() {
+
+                writePendingSaves();
+                helper.deleteById(ids);
+                deliver(caller, new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        listener.onDeletePerformed(ids);
+
+                    }
+
+                });
+
+            }
+
+        });
+
+    }
+
+    /**
+     * Write any pending saves now, without waiting for the quiet period to
+     * expire
+     * 
+     * <p>
+     * Call this when the user leaves the screen on which the model is edited
+     * </p>
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     */
+    public boolean flushPendingSaves() {
+
+        removeCallbacks(flushTask);
+        return post(flushTask);
+
+    }
+
+    /**
+     * Get {@link #helper}
+     * 
+     * @return {@link #helper}
      */
-    private static QueryHandler singleton;
-
-    static {
+    public WifiSettingsDatabaseHelper getHelper() {
 
-        singleton = null;
+        return helper;
 
     }
 
     /**
-     * Lazy creation of {@link #singleton}
+     * Get the metrics for the given type of operation
      * 
-     * @param context
-     *            {@link Context}
+     * @param operation
+     *            the {@link Operation}
      * 
-     * @return {@link #singleton}
+     * @return the {@link OperationMetrics}
      */
-    public static QueryHandler getInstance(Context context) {
+    public OperationMetrics getMetrics(Operation operation) {
 
-        if (singleton == null) {
+        return metrics.get(operation);
 
-            singleton = new QueryHandler(context);
+    }
 
-        }
+    /**
+     * Enqueue a command to import the WIFI: URI's in the given file, one per
+     * line
+     * 
+     * @param listener
+     *            {@link ImportListener}
+     * 
+     * @param file
+     *            the file to import
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     * 
+     * @see #importWifiSettings(ImportListener, Uri)
+     */
+    public boolean importWifiSettings(ImportListener listener, File file) {
 
-        return singleton;
+        return importWifiSettings(listener, Uri.fromFile(file));
 
     }
 
     /**
-     * {@link WifiSettingsDatabaseHelper}
+     * Enqueue a command to import the WIFI: URI's in the given content, one
+     * per line
+     * 
+     * <p>
+     * The content is opened using a <code>ContentResolver</code>, so
+     * <code>uri</code> may be a <code>file:</code> or <code>content:</code>
+     * URI, e.g. one returned by <code>Intent.ACTION_GET_CONTENT</code>
+     * </p>
+     * 
+     * @param listener
+     *            {@link ImportListener}
+     * 
+     * @param uri
+     *            the content to import
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     * 
+     * @see WifiSettingsImporter#importUris(SQLiteDatabase, Reader)
      */
-    private WifiSettingsDatabaseHelper helper;
+    public boolean importWifiSettings(final ImportListener listener,
+            final Uri uri) {
+
+        final Handler caller = getCallerHandler();
+        return write(new Command(Operation.IMPORT) {
+
+            @Override
+            protected void execute() throws Exception {
+
+                writePendingSaves();
+                WifiSettingsImporter importer = null;
+
+                try {
+
+                    Reader reader = new InputStreamReader(
+                            resolver.openInputStream(uri), "UTF-8"); //$NON-NLS-1$
+
+                    try {
+
+                        importer = new WifiSettingsImporter();
+                        importer.importUris(helper.getDatabase(), reader);
+                        Log.i(getClass().getName(), importer.toString());
+
+                    } finally {
+
+                        reader.close();
+                        helper.tableChanged();
+
+                    }
+
+                } catch (IOException e) {
+
+                    Log.e(getClass().getName(), "error importing " + uri, e); //$NON-NLS-1$
+                    importer = null;
+
+                }
+
+                final WifiSettingsImporter result = importer;
+                deliver(caller, new Runnable() {
+
+                    @Override
+                    public void run() {
+
+                        listener.onImportPerformed(result);
+
+                    }
+
+                });
+
+            }
+
+        });
 
+    }
     /**
-     * Initialize {@link #helper}
-     * 
-     * @param context
-     *            {@link Context} for
-     *            {@link WifiSettingsDatabaseHelper#WifiSettingsDatabaseHelper(Context)}
+     * Log the metrics for every type of operation
      */
-    private QueryHandler(Context context) {
+    public void logMetrics() {
 
-        helper = new WifiSettingsDatabaseHelper(context);
+        for (OperationMetrics operationMetrics : metrics.values()) {
+
+            Log.i(getClass().getName(), operationMetrics.toString());
 
+        }
     }
 
     /**
-     * Close {@link #helper}
+     * Enqueue a command to invoke
+     * {@link WifiSettingsDatabaseHelper#lookupPassword(String)}
+     * asynchronously
+     * 
+     * @param listener
+     *            {@link QueryListener}
+     * 
+     * @param ssid
+     *            SSID
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     * 
+     * @see WifiSettingsDatabaseHelper#lookupPassword(String)
      */
-    public void close() {
+    public boolean lookupPassword(final QueryListener listener,
+            final String ssid) {
 
-        try {
+        final Handler caller = getCallerHandler();
+        return read(new Command(Operation.LOOKUP_PASSWORD) {
 
-            if (helper != null) {
+            @Override
+            protected void execute() {
 
-                helper.close();
-                helper = null;
+                final String password = helper.lookupPassword(ssid);
+                deliver(caller, new Runnable() {
 
-            }
+                    @Override
+                    public void run() {
 
-        } catch (Exception e) {
+                        listener.onPasswordResult(ssid, password);
 
-            Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+                    }
+
+                });
+
+            }
+
+        });
 
-        }
     }
 
     /**
-     * Enqueue an asynchronous invocation of
-     * {@link WifiSettingsDatabaseHelper#delete(SQLiteDatabase, String, String...)}
+     * Enqueue a command to invoke
+     * {@link WifiSettingsDatabaseHelper#query(String, String...)}
+     * asynchronously
      * 
-     * @param db
-     *            {@link SQLiteDatabase}
+     * @param listener
+     *            {@link QueryListener}
      * 
      * @param selection
      *            selection string
@@ -153,78 +978,78 @@ public final class QueryHandler extends Handler {
      * 
      * @return <code>true</code> if and only if the command was enqueued
      * 
-     * @see WifiSettingsDatabaseHelper#delete(SQLiteDatabase, String, String...)
+     * @see WifiSettingsDatabaseHelper#query(String, String...)
      */
-    public boolean delete(final SQLiteDatabase db, final String selection,
+    public boolean query(final QueryListener listener, final String selection,
             final String... selectionArgs) {
 
-        return post(new Runnable() {
+        final Handler caller = getCallerHandler();
+        return read(new Command(Operation.QUERY) {
 
             @Override
-            public void run() {
+            protected void execute() {
 
-                try {
+                final Cursor cursor = helper.query(selection, selectionArgs);
+                // cursors are filled lazily, so force the rows to be read here
+                // rather than in the caller's thread
+                cursor.getCount();
+                deliver(caller, new Runnable() {
 
-                    helper.delete(db, selection, selectionArgs);
+                    @Override
+                    public void run() {
 
-                } catch (Exception e) {
+                        listener.onQueryPerformed(cursor);
 
-                    Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+                    }
+
+                });
 
-                }
             }
 
         });
 
     }
 
-    /**
-     * Get {@link #helper}
-     * 
-     * @return {@link #helper}
-     */
-    public WifiSettingsDatabaseHelper getHelper() {
-
-        return helper;
-
-    }
-
     /**
      * Enqueue a command to invoke
-     * {@link WifiSettingsDatabaseHelper#lookupPassword(SQLiteDatabase, String)}
-     * asynchronously
-     * 
-     * @param db
-     *            {@link SQLiteDatabase}
+     * {@link WifiSettingsDatabaseHelper#queryPage(long, int)} asynchronously
      * 
      * @param listener
      *            {@link QueryListener}
      * 
-     * @param ssid
-     *            SSID
+     * @param afterId
+     *            <code>_id</code> of the last row of the previous page, or 0
+     *            for the first page
+     * 
+     * @param limit
+     *            maximum number of rows
      * 
      * @return <code>true</code> if and only if the command was enqueued
      * 
-     * @see WifiSettingsDatabaseHelper#lookupPassword(SQLiteDatabase, String)
+     * @see WifiSettingsDatabaseHelper#queryPage(long, int)
      */
-    public boolean lookupPassword(final SQLiteDatabase db,
-            final QueryListener listener, final String ssid) {
+    public boolean queryPage(final QueryListener listener, final long afterId,
+            final int limit) {
 
-        return post(new Runnable() {
+        final Handler caller = getCallerHandler();
+        return read(new Command(Operation.QUERY_PAGE) {
 
             @Override
-            public void run() {
+            protected void execute() {
 
-                try {
+                final Cursor cursor = helper.queryPage(afterId, limit);
+                cursor.getCount();
+                deliver(caller, new Runnable() {
 
-                    String password = helper.lookupPassword(db, ssid);
-                    listener.onPasswordResult(ssid, password);
+                    @Override
+                    public void run() {
 
-                } catch (Exception e) {
+                        listener.onQueryPerformed(cursor);
 
-                    Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+                    }
+
+                });
 
-                }
             }
 
         });
@@ -233,79 +1058,105 @@ public final class QueryHandler extends Handler {
 
     /**
      * Enqueue a command to invoke
-     * {@link WifiSettingsDatabaseHelper#query(SQLiteDatabase, String, String...)}
+     * {@link WifiSettingsDatabaseHelper#search(String, long, int)}
      * asynchronously
      * 
-     * @param db
-     *            {@link SQLiteDatabase}
+     * <p>
+     * A request for the first page starts a new search, which cancels any
+     * earlier one and only runs once no further search has been started for
+     * {@link #SEARCH_DELAY_MILLIS}, so that typing a word costs one query
+     * rather than one per keystroke. A request for a later page continues the
+     * current search and runs at once. Results of a search that has been
+     * cancelled by the time they are ready are closed rather than delivered
+     * </p>
      * 
      * @param listener
      *            {@link QueryListener}
      * 
-     * @param selection
-     *            selection string
+     * @param text
+     *            search text
      * 
-     * @param selectionArgs
-     *            selection arguments
+     * @param afterId
+     *            <code>_id</code> of the last row of the previous page, or 0
+     *            to start a new search
+     * 
+     * @param limit
+     *            maximum number of rows
      * 
      * @return <code>true</code> if and only if the command was enqueued
      * 
-     * @see WifiSettingsDatabaseHelper#query(SQLiteDatabase, String, String...)
+     * @see #cancelSearch()
+     * @see WifiSettingsDatabaseHelper#search(String, long, int)
      */
-    public boolean query(final SQLiteDatabase db, final QueryListener listener,
-            final String selection, final String... selectionArgs) {
+    public boolean search(final QueryListener listener, final String text,
+            final long afterId, final int limit) {
 
-        return post(new Runnable() {
+        final Handler caller = getCallerHandler();
 
-            @Override
-            public void run() {
+        if (afterId > 0) {
 
-                try {
+            return read(new SearchCommand(listener, caller, text, afterId,
+                    limit, searchGeneration.get()));
+
+        }
 
-                    listener.onQueryPerformed(helper.query(db, selection,
-                            selectionArgs));
+        final int generation = searchGeneration.incrementAndGet();
+        removeCallbacksAndMessages(searchToken);
+        return postAtTime(new Runnable() {
 
-                } catch (Exception e) {
+            @Override
+            public void run() {
 
-                    Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+                if (!isCancelled(generation)) {
+
+                    read(new SearchCommand(listener, caller, text, 0, limit,
+                            generation));
 
                 }
             }
 
-        });
+        }, searchToken, SystemClock.uptimeMillis() + SEARCH_DELAY_MILLIS);
 
     }
 
     /**
-     * Enqueue an asynchronous invocation of
-     * {@link WifiSettingsDatabaseHelper#storeWifiSettings(SQLiteDatabase)}
+     * Schedule an asynchronous invocation of
+     * {@link WifiSettingsDatabaseHelper#storeWifiSettings(WifiSettingsSnapshot)}
      * 
-     * @param db
-     *            {@link SQLiteDatabase}
+     * <p>
+     * The snapshot replaces any save of the same SSID that hasn't been written
+     * yet, and the write is deferred until no further save has been requested
+     * for {@link #SAVE_DELAY_MILLIS}
+     * </p>
+     * 
+     * @param snapshot
+     *            the {@link WifiSettingsSnapshot} to store, which should be
+     *            captured by the caller so that the stored row reflects the
+     *            state at the time of the request
      * 
      * @return <code>true</code> if and only if command was enqueued
      * 
-     * @see WifiSettingsDatabaseHelper#storeWifiSettings(SQLiteDatabase)
+     * @see WifiSettingsDatabaseHelper#storeAll(List)
      */
-    public boolean storeWifiSettings(final SQLiteDatabase db) {
+    public boolean storeWifiSettings(WifiSettingsSnapshot snapshot) {
 
-        return post(new Runnable() {
+        synchronized (pendingSaves) {
 
-            @Override
-            public void run() {
+            if (pendingSaves.isEmpty()) {
 
-                try {
+                firstPendingSaveTime = System.nanoTime();
 
-                    helper.storeWifiSettings(db);
+            }
 
-                } catch (Exception e) {
+            if (pendingSaves.put(snapshot.getSsid(), snapshot) == null) {
 
-                    Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+                getMetrics(Operation.STORE).enqueued();
 
-                }
             }
+        }
 
-        });
+        removeCallbacks(flushTask);
+        return postDelayed(flushTask, SAVE_DELAY_MILLIS);
 
     }
 
@@ -322,4 +1173,185 @@ public final class QueryHandler extends Handler {
 
     }
 
-}
\ No newline at end of file
+    /**
+     * Test whether the search with the given generation has been cancelled
+     * 
+     * @param generation
+     *            value of {@link #searchGeneration} for the search
+     * 
+     * @return <code>true</code> if and only if a later search has started or
+     *         {@link #cancelSearch()} has been called
+     */
+    private boolean isCancelled(int generation) {
+
+        return searchGeneration.get() != generation;
+
+    }
+
+    /**
+     * Run the given read command in a reader thread
+     * 
+     * <p>
+     * If there are pending saves or write commands, the read is queued behind
+     * them on the writer thread, and the saves are written first, so that the
+     * read sees them
+     * </p>
+     * 
+     * @param command
+     *            the read command
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     */
+    private boolean read(final Command command) {
+
+        boolean pending;
+
+        synchronized (pendingSaves) {
+
+            pending = !pendingSaves.isEmpty() || (pendingWrites > 0);
+
+        }
+
+        if (pending) {
+
+            removeCallbacks(flushTask);
+            return post(new Runnable() {
+
+                @Override
+                public void run() {
+
+                    flushTask.run();
+
+                    try {
+
+                        readers.execute(command);
+
+                    } catch (RejectedExecutionException e) {
+
+                        Log.e(getClass().getName(), "run", e); //$NON-NLS-1$
+
+                    }
+                }
+
+            });
+
+        }
+
+        try {
+
+            readers.execute(command);
+            return true;
+
+        } catch (RejectedExecutionException e) {
+
+            Log.e(getClass().getName(), "read", e); //$NON-NLS-1$
+            return false;
+
+        }
+    }
+
+    /**
+     * Run the given write command in the writer thread, counting it in
+     * {@link #pendingWrites} until it has completed
+     * 
+     * @param command
+     *            the write command
+     * 
+     * @return <code>true</code> if and only if the command was enqueued
+     */
+    private boolean write(final Command command) {
+
+        synchronized (pendingSaves) {
+
+            ++pendingWrites;
+
+        }
+
+        boolean posted = post(new Runnable() {
+
+            @Override
+            public void run() {
+
+                try {
+
+                    command.run();
+
+                } finally {
+
+                    writeCompleted();
+
+                }
+            }
+
+        });
+
+        if (!posted) {
+
+            writeCompleted();
+
+        }
+
+        return posted;
+
+    }
+
+    /**
+     * Record that a write counted in {@link #pendingWrites} has completed
+     */
+    private void writeCompleted() {
+
+        synchronized (pendingSaves) {
+
+            --pendingWrites;
+
+        }
+    }
+
+    /**
+     * Write all of {@link #pendingSaves} in a single transaction
+     * 
+     * <p>
+     * This must only be called in the writer thread
+     * </p>
+     */
+    private void writePendingSaves() {
+
+        List<WifiSettingsSnapshot> snapshots;
+        long enqueueTime;
+
+        synchronized (pendingSaves) {
+
+            if (pendingSaves.isEmpty()) {
+
+                return;
+
+            }
+
+            snapshots = new ArrayList<WifiSettingsSnapshot>(
+                    pendingSaves.values());
+            enqueueTime = firstPendingSaveTime;
+            pendingSaves.clear();
+            // reads must still wait until the snapshots have been committed
+            ++pendingWrites;
+
+        }
+
+        long startTime = System.nanoTime();
+        boolean failed = true;
+
+        try {
+
+            helper.storeAll(snapshots);
+            failed = false;
+
+        } finally {
+
+            writeCompleted();
+            getMetrics(Operation.STORE).completed(snapshots.size(),
+                    startTime - enqueueTime, System.nanoTime() - enqueueTime,
+                    failed);
+
+        }
+    }
+
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.db;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import us.rader.wyfy.db.WiFiSettingsContract.WifiSettingsEntry;
+import us.rader.wyfy.model.Security;
+import us.rader.wyfy.model.WifiNetwork;
+import us.rader.wyfy.model.WifiSettingsSnapshot;
+import android.database.Cursor;
+
+/**
+ * Saved rows as {@link WifiNetwork}s, read from a <code>Cursor</code> one row
+ * at a time
+ * 
+ * <p>
+ * Only the row being visited is held in memory, so iterating costs the same
+ * however many rows there are. Selected rows are queried by
+ * <code>_id</code> in chunks of at most {@link #MAX_IDS_PER_QUERY}, one after
+ * another, so only the selected rows are read. This can only be iterated once
+ * and must be closed when no longer needed
+ * </p>
+ * 
+ * @author Kirk
+ * 
+ * @see WifiSettingsDatabaseHelper#openNetworks(long...)
+ */
+public final class SavedNetworks implements Iterable<WifiNetwork> {
+
+    /**
+     * Iterator over the rows of each chunk in turn
+     */
+    private final class RowIterator implements Iterator<WifiNetwork> {
+
+        /**
+         * Set when {@link SavedNetworks#cursor} is positioned on a row that
+         * hasn't been returned yet
+         */
+        private boolean pending;
+
+        /**
+         * Test whether another row remains
+         * 
+         * @return <code>true</code> if and only if {@link #next()} will
+         *         return a value
+         * 
+         * @see java.util.Iterator#hasNext()
+         */
+        @Override
+        public boolean hasNext() {
+
+            while (!pending) {
+
+                if ((cursor == null) && !openNextChunk()) {
+
+                    return false;
+
+                }
+
+                pending = cursor.moveToNext();
+
+                if (!pending) {
+
+                    closeChunk();
+
+                }
+            }
+
+            return true;
+
+        }
+
+        /**
+         * Return the next row
+         * 
+         * @return the {@link WifiNetwork}
+         * 
+         * @see java.util.Iterator#next()
+         */
+        @Override
+        public WifiNetwork next() {
+
+            if (!hasNext()) {
+
+                throw new NoSuchElementException();
+
+            }
+
+            pending = false;
+            return WifiSettingsSnapshot.create(cursor.getString(ssidIndex),
+                    cursor.getString(passwordIndex),
+                    Security.valueOf(cursor.getString(securityIndex)),
+                    cursor.getInt(hiddenIndex) != 0).toNetwork();
+
+        }
+
+        /**
+         * Not supported
+         * 
+         * @see java.util.Iterator#remove()
+         */
+        @Override
+        public void remove() {
+
+            throw new UnsupportedOperationException();
+
+        }
+
+    }
+
+    /**
+     * Most <code>_id</code> values bound in one query, SQLite's default limit
+     * on bound parameters
+     */
+    static final int                         MAX_IDS_PER_QUERY = 999;
+
+    /**
+     * Return the given <code>_id</code> values sorted and without duplicates
+     * 
+     * @param ids
+     *            the <code>_id</code> values
+     * 
+     * @return the sorted, distinct values
+     */
+    private static long[] toSortedSet(long[] ids) {
+
+        long[] sorted = ids.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+
+        for (int index = 0; index < sorted.length; ++index) {
+
+            if ((count == 0) || (sorted[index] != sorted[count - 1])) {
+
+                sorted[count++] = sorted[index];
+
+            }
+        }
+
+        return Arrays.copyOf(sorted, count);
+
+    }
+
+    /**
+     * The current chunk, or <code>null</code> between chunks
+     */
+    private Cursor                           cursor;
+
+    /**
+     * Set once the rows of every chunk have been queried, or
+     * {@link #close()} has been called
+     */
+    private boolean                          exhausted;
+
+    /**
+     * The database helper used to query each chunk
+     */
+    private final WifiSettingsDatabaseHelper helper;
+
+    /**
+     * Index of the hidden column
+     */
+    private int                              hiddenIndex;
+
+    /**
+     * Sorted, distinct <code>_id</code> values of the rows to return, or
+     * <code>null</code> to return all rows
+     */
+    private final long[]                     ids;
+
+    /**
+     * Set once {@link #iterator()} has been called
+     */
+    private boolean                          iterated;
+
+    /**
+     * Index in {@link #ids} of the first value of the next chunk
+     */
+    private int                              nextId;
+
+    /**
+     * Index of the password column
+     */
+    private int                              passwordIndex;
+
+    /**
+     * Index of the security column
+     */
+    private int                              securityIndex;
+
+    /**
+     * Index of the SSID column
+     */
+    private int                              ssidIndex;
+
+    /**
+     * Initialize the rows to return
+     * 
+     * @param helper
+     *            the database helper used to query each chunk
+     * 
+     * @param ids
+     *            <code>_id</code> values of the rows to return, or none to
+     *            return all rows
+     */
+    SavedNetworks(WifiSettingsDatabaseHelper helper, long... ids) {
+
+        this.helper = helper;
+        this.ids = (ids.length == 0) ? null : toSortedSet(ids);
+
+    }
+
+    /**
+     * Close the current chunk's <code>Cursor</code>, if any, and stop
+     * querying chunks
+     */
+    public void close() {
+
+        exhausted = true;
+        closeChunk();
+
+    }
+
+    /**
+     * Return the iterator over the rows
+     * 
+     * @return the <code>Iterator</code>
+     * 
+     * @throws IllegalStateException
+     *             if this has already been iterated
+     * 
+     * @see java.lang.Iterable#iterator()
+     */
+    @Override
+    public Iterator<WifiNetwork> iterator() {
+
+        if (iterated) {
+
+            throw new IllegalStateException("already iterated"); //$NON-NLS-1$
+
+        }
+
+        iterated = true;
+        return new RowIterator();
+
+    }
+
+    /**
+     * Close the current chunk's <code>Cursor</code>, if any
+     */
+    private void closeChunk() {
+
+        if (cursor != null) {
+
+            cursor.close();
+            cursor = null;
+
+        }
+    }
+
+    /**
+     * Query the next chunk of rows
+     * 
+     * @return <code>true</code> if and only if {@link #cursor} was opened
+     */
+    private boolean openNextChunk() {
+
+        if (exhausted) {
+
+            return false;
+
+        }
+
+        if (ids == null) {
+
+            cursor = helper.queryNetworks(null, 0, 0);
+            exhausted = true;
+
+        } else {
+
+            int end = Math.min(ids.length, nextId + MAX_IDS_PER_QUERY);
+            cursor = helper.queryNetworks(ids, nextId, end);
+            nextId = end;
+            exhausted = (end == ids.length);
+
+        }
+
+        ssidIndex = cursor.getColumnIndex(WifiSettingsEntry.COLUMN_NAME_SSID);
+        passwordIndex = cursor
+                .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_PASSWORD);
+        securityIndex = cursor
+                .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_SECURITY);
+        hiddenIndex = cursor.getColumnIndex(WifiSettingsEntry.COLUMN_NAME_HIDDEN);
+        return true;
+
+    }
+
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.db;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import us.rader.wyfy.db.WiFiSettingsContract.WifiSettingsEntry;
+import us.rader.wyfy.model.Security;
+import us.rader.wyfy.model.WifiSettingsSnapshot;
+import android.database.Cursor;
+import android.provider.BaseColumns;
+
+/**
+ * In-memory copy of the {@link WifiSettingsEntry} table, keyed by
+ * {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY}
+ * 
+ * <p>
+ * The table is small and only ever changed through
+ * {@link WifiSettingsDatabaseHelper}, which fills this lazily and applies each
+ * of its writes here after they commit, so reads can be answered without any
+ * disk I/O. Rows are kept in <code>_id</code> order, i.e. the order in which
+ * the database returns them. All methods are thread-safe; callers that need a
+ * load and a read to be atomic synchronize on the instance
+ * </p>
+ * 
+ * @author Kirk
+ */
+final class SavedRowCache {
+
+    /**
+     * A cached row
+     */
+    static final class Row {
+
+        /**
+         * Row id
+         */
+        private final long                 id;
+
+        /**
+         * The row's values
+         */
+        private final WifiSettingsSnapshot snapshot;
+
+        /**
+         * Initialize all fields
+         * 
+         * @param id
+         *            row id
+         * 
+         * @param snapshot
+         *            the row's values
+         */
+        Row(long id, WifiSettingsSnapshot snapshot) {
+
+            this.id = id;
+            this.snapshot = snapshot;
+
+        }
+
+        /**
+         * @return the row id
+         */
+        long getId() {
+
+            return id;
+
+        }
+
+        /**
+         * @return the row's values
+         */
+        WifiSettingsSnapshot getSnapshot() {
+
+            return snapshot;
+
+        }
+
+    }
+
+    /**
+     * Compute the {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY} value for the
+     * given SSID
+     * 
+     * <p>
+     * This matches SQLite's <code>lower()</code>, which only folds the case of
+     * ASCII letters
+     * </p>
+     * 
+     * @param ssid
+     *            SSID or <code>null</code>
+     * 
+     * @return the key
+     */
+    static String toKey(String ssid) {
+
+        if (ssid == null) {
+
+            return ""; //$NON-NLS-1$
+
+        }
+
+        char[] chars = ssid.toCharArray();
+
+        for (int index = 0; index < chars.length; ++index) {
+
+            char c = chars[index];
+
+            if ((c >= 'A') && (c <= 'Z')) {
+
+                chars[index] = (char) (c + ('a' - 'A'));
+
+            }
+        }
+
+        return new String(chars);
+
+    }
+
+    /**
+     * <code>true</code> once {@link #load(Cursor)} has been called, until
+     * {@link #invalidate()}
+     */
+    private boolean                loaded;
+
+    /**
+     * The rows, keyed by {@link #toKey(String)}
+     */
+    private final Map<String, Row> rows;
+
+    /**
+     * Initialize to the unloaded state
+     */
+    SavedRowCache() {
+
+        rows = new LinkedHashMap<String, Row>();
+
+    }
+
+    /**
+     * Get the row for the given SSID
+     * 
+     * @param ssid
+     *            the SSID, matched ignoring case
+     * 
+     * @return the {@link Row} or <code>null</code> if there isn't one
+     */
+    synchronized Row get(String ssid) {
+
+        return rows.get(toKey(ssid));
+
+    }
+
+    /**
+     * @return a copy of all the rows, in <code>_id</code> order
+     */
+    synchronized List<Row> getAll() {
+
+        return new ArrayList<Row>(rows.values());
+
+    }
+
+    /**
+     * Discard the cached rows, so that they will be reloaded the next time
+     * they are needed
+     */
+    synchronized void invalidate() {
+
+        rows.clear();
+        loaded = false;
+
+    }
+
+    /**
+     * @return <code>true</code> if and only if the rows are cached
+     */
+    synchronized boolean isLoaded() {
+
+        return loaded;
+
+    }
+
+    /**
+     * Replace the cached rows with those of the given cursor, which must
+     * include all of the table's columns and be sorted by <code>_id</code>
+     * 
+     * @param cursor
+     *            the query result, which is closed by this method
+     */
+    synchronized void load(Cursor cursor) {
+
+        rows.clear();
+
+        try {
+
+            int idIndex = cursor.getColumnIndex(BaseColumns._ID);
+            int ssidIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_SSID);
+            int passwordIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_PASSWORD);
+            int securityIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_SECURITY);
+            int hiddenIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_HIDDEN);
+
+            while (cursor.moveToNext()) {
+
+                String ssid = cursor.getString(ssidIndex);
+                rows.put(toKey(ssid), new Row(cursor.getLong(idIndex),
+                        WifiSettingsSnapshot.create(ssid,
+                                cursor.getString(passwordIndex),
+                                Security.valueOf(cursor
+                                        .getString(securityIndex)),
+                                cursor.getInt(hiddenIndex) != 0)));
+
+            }
+
+        } finally {
+
+            cursor.close();
+
+        }
+
+        loaded = true;
+
+    }
+
+    /**
+     * Remove the row for the given SSID
+     * 
+     * @param ssid
+     *            the SSID, matched ignoring case
+     */
+    synchronized void remove(String ssid) {
+
+        rows.remove(toKey(ssid));
+
+    }
+
+    /**
+     * Remove the rows with the given <code>_id</code> values
+     * 
+     * @param ids
+     *            the <code>_id</code> values
+     */
+    synchronized void removeById(long... ids) {
+
+        if (!loaded || (ids.length == 0)) {
+
+            return;
+
+        }
+
+        Set<Long> removed = new HashSet<Long>(ids.length * 2);
+
+        for (long id : ids) {
+
+            removed.add(Long.valueOf(id));
+
+        }
+
+        Iterator<Row> iterator = rows.values().iterator();
+
+        while (iterator.hasNext()) {
+
+            if (removed.contains(Long.valueOf(iterator.next().getId()))) {
+
+                iterator.remove();
+
+            }
+        }
+    }
+
+    /**
+     * Apply a committed {@link WifiSettingsDatabaseHelper#SQL_UPSERT}, if the
+     * rows are cached
+     * 
+     * @param id
+     *            row id returned by the statement
+     * 
+     * @param snapshot
+     *            the values that were bound to the statement
+     * 
+     * @see WifiSettingsDatabaseHelper#bindUpsert(android.database.sqlite.SQLiteStatement,
+     *      String, String, Security, boolean)
+     */
+    synchronized void stored(long id, WifiSettingsSnapshot snapshot) {
+
+        if (!loaded) {
+
+            return;
+
+        }
+
+        String ssid = snapshot.getSsid();
+        String key = toKey(ssid);
+        String password = snapshot.getPassword();
+        Security security = snapshot.getSecurity();
+
+        if (password == null) {
+
+            password = ""; //$NON-NLS-1$
+
+        }
+
+        Row existing = rows.get(key);
+
+        if ((password.length() == 0) && (security != Security.NONE)
+                && (existing != null)
+                && (existing.getSnapshot().getPassword() != null)) {
+
+            password = existing.getSnapshot().getPassword();
+
+        }
+
+        rows.put(key, new Row(id, WifiSettingsSnapshot.create(
+                (ssid == null) ? "" : ssid, password, security, //$NON-NLS-1$
+                snapshot.isHidden())));
+
+    }
+
+}
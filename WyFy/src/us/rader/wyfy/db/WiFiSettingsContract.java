@@ -33,27 +33,60 @@ public final class WiFiSettingsContract {
         /**
          * "Hidden" state column name
          */
-        public static final String COLUMN_NAME_HIDDEN   = "hidden";       //$NON-NLS-1$
+        public static final String COLUMN_NAME_HIDDEN   = "hidden";                 //$NON-NLS-1$
 
         /**
          * Password column name
          */
-        public static final String COLUMN_NAME_PASSWORD = "password";     //$NON-NLS-1$
+        public static final String COLUMN_NAME_PASSWORD = "password";               //$NON-NLS-1$
 
         /**
          * Security column name
          */
-        public static final String COLUMN_NAME_SECURITY = "security";     //$NON-NLS-1$
+        public static final String COLUMN_NAME_SECURITY = "security";               //$NON-NLS-1$
 
         /**
          * SSID column name
          */
-        public static final String COLUMN_NAME_SSID     = "ssid";         //$NON-NLS-1$
+        public static final String COLUMN_NAME_SSID     = "ssid";                   //$NON-NLS-1$
+
+        /**
+         * Normalized SSID column name
+         * 
+         * <p>
+         * Holds <code>lower(ssid)</code>, which is unique across the table and
+         * is what rows are matched by
+         * </p>
+         */
+        public static final String COLUMN_NAME_SSID_KEY = "ssid_key";               //$NON-NLS-1$
+
+        /**
+         * Name of the index on {@link #_ID} and {@link #COLUMN_NAME_SSID},
+         * which covers pages of the saved network list
+         */
+        public static final String INDEX_NAME_LIST      = "wifi_settings_list";     //$NON-NLS-1$
+
+        /**
+         * Name of the index on {@link #COLUMN_NAME_SSID_KEY} and
+         * {@link #COLUMN_NAME_PASSWORD}, which covers password lookups
+         */
+        public static final String INDEX_NAME_LOOKUP    = "wifi_settings_lookup";   //$NON-NLS-1$
+
+        /**
+         * Name of the unique index on {@link #COLUMN_NAME_SSID_KEY}
+         */
+        public static final String INDEX_NAME_SSID_KEY  = "wifi_settings_ssid_key"; //$NON-NLS-1$
+
+        /**
+         * Name of the full text search table on {@link #COLUMN_NAME_SSID},
+         * whose <code>docid</code> is the <code>_id</code> of the row
+         */
+        public static final String SEARCH_TABLE_NAME    = "wifi_settings_search";   //$NON-NLS-1$
 
         /**
          * {@link WifiSettings} table name
          */
-        public static final String TABLE_NAME           = "wifi_settings"; //$NON-NLS-1$
+        public static final String TABLE_NAME           = "wifi_settings";          //$NON-NLS-1$
 
         /**
          * Prevent casual instantiation of contract member class
@@ -15,13 +15,23 @@
  */
 package us.rader.wyfy.db;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 import us.rader.wyfy.db.WiFiSettingsContract.WifiSettingsEntry;
+import us.rader.wyfy.model.Security;
 import us.rader.wyfy.model.WifiSettings;
-import android.content.ContentValues;
+import us.rader.wyfy.model.WifiSettingsSnapshot;
+import android.annotation.TargetApi;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.MatrixCursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
 import android.provider.BaseColumns;
 
 /**
@@ -30,294 +40,1571 @@ import android.provider.BaseColumns;
  * Note that the methods of this class should generally be called in worker
  * threads separate from the main UI!
  * 
+ * <p>
+ * Rows are identified by {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY}, the
+ * lower-cased SSID, which has a unique index. Saving a row is a single
+ * precompiled {@link #SQL_UPSERT} statement that is compiled once and re-used
+ * </p>
+ * 
+ * <p>
+ * A single connection, returned by {@link #getDatabase()}, is opened the first
+ * time it is needed and kept open for the life of the process, so callers no
+ * longer pass a <code>SQLiteDatabase</code> to each method. Where the platform
+ * supports it the connection uses write-ahead logging, so queries run in
+ * other threads don't wait for writes to commit
+ * </p>
+ * 
+ * <p>
+ * The saved rows are also kept in memory, in <code>_id</code> order, once they
+ * have been read. Listing all rows and looking up a single SSID are answered
+ * from memory, and every write made through this class updates the cached
+ * rows after it commits
+ * </p>
+ * 
+ * <p>
+ * Screens showing saved rows can register a {@link ChangeListener} to be told
+ * which rows each write inserted, updated or deleted, and apply those changes
+ * instead of querying the table again
+ * </p>
+ * 
  * @author Kirk
  */
 public final class WifiSettingsDatabaseHelper extends SQLiteOpenHelper {
 
     /**
-     * Database selection string to match by SSID
+     * Interface implemented by objects that are notified of changes to the
+     * saved rows once they have committed
+     * 
+     * <p>
+     * Callbacks are made in the thread that registered the listener if that
+     * thread has a <code>Looper</code>, e.g. the UI thread, otherwise in the
+     * thread that made the change. The arrays passed to the listener are
+     * shared and must not be modified
+     * </p>
+     * 
+     * @author Kirk
+     * 
+     * @see WifiSettingsDatabaseHelper#addChangeListener(ChangeListener)
+     */
+    public interface ChangeListener {
+
+        /**
+         * The given rows have been changed
+         * 
+         * @param inserted
+         *            <code>_id</code> values of the inserted rows
+         * 
+         * @param updated
+         *            <code>_id</code> values of the updated rows
+         * 
+         * @param deleted
+         *            <code>_id</code> values of the deleted rows
+         */
+        void onRowsChanged(long[] inserted, long[] updated, long[] deleted);
+
+        /**
+         * Any row may have been inserted, updated or deleted, e.g. by a bulk
+         * import, so anything read from the table must be read again
+         */
+        void onTableChanged();
+
+    }
+
+    /**
+     * Database selection string to match by SSID, ignoring case
+     */
+    public static final String    SELECT_BY_SSID            = WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + " = lower(?)";                                    //$NON-NLS-1$
+
+    /**
+     * SQL command to insert or replace the row for an SSID
+     * 
+     * <p>
+     * The parameters are 1: password, 2: security, 3: hidden and 4: SSID. The
+     * existing row's <code>_id</code> is kept. An empty password doesn't
+     * replace the stored one unless the security protocol is
+     * {@link Security#NONE}, since the platform doesn't reveal the keys of
+     * configured networks and a secured network can't have an empty password
+     * anyway
+     * </p>
+     * 
+     * @see #bindUpsert(SQLiteStatement, String, String, Security, boolean)
+     */
+    static final String           SQL_UPSERT                = "INSERT OR REPLACE INTO " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " (" //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_PASSWORD
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SECURITY
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_HIDDEN
+                                                                    + ") VALUES ((SELECT " //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + " FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " WHERE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + " = lower(?4)), lower(?4), ?4, CASE WHEN ?1 = '' AND ?2 <> 'NONE' THEN ifnull((SELECT " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_PASSWORD
+                                                                    + " FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " WHERE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + " = lower(?4)), ?1) ELSE ?1 END, ?2, ?3)";        //$NON-NLS-1$
+
+    /**
+     * Columns returned by {@link #query(String, String...)} and held in the
+     * cache of saved rows
      */
-    public static final String  SELECT_BY_SSID     = WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SSID
-                                                           + " LIKE ?";                                        //$NON-NLS-1$
+    private static final String[] COLUMNS                   = {
+            BaseColumns._ID, WifiSettingsEntry.COLUMN_NAME_SSID,
+            WifiSettingsEntry.COLUMN_NAME_PASSWORD,
+            WifiSettingsEntry.COLUMN_NAME_SECURITY,
+            WifiSettingsEntry.COLUMN_NAME_HIDDEN                  };
 
     /**
      * Database name
      */
-    private static final String DATABASE_NAME      = "WyFy.db";                                                //$NON-NLS-1$
+    private static final String   DATABASE_NAME             = "WyFy.db";                                                //$NON-NLS-1$
 
     /**
      * Schema version number
      * 
-     * Must be incremented if the schema ever changes
+     * Must be incremented if the schema ever changes. Version 2 added
+     * {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY} and its unique index.
+     * Version 3 added {@link WifiSettingsEntry#INDEX_NAME_LIST} and
+     * {@link WifiSettingsEntry#INDEX_NAME_LOOKUP}. Version 4 added
+     * {@link WifiSettingsEntry#SEARCH_TABLE_NAME} and its triggers
+     */
+    private static final int      DATABASE_VERSION          = 4;
+
+    /**
+     * SQL command to add {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY} to a
+     * version 1 table
      */
-    private static final int    DATABASE_VERSION   = 1;
+    private static final String   SQL_ADD_SSID_KEY          = "ALTER TABLE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " ADD COLUMN " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + " TEXT NOT NULL DEFAULT ''";                      //$NON-NLS-1$
 
     /**
      * SQL command to create the {@link WifiSettingsEntry} table
      */
-    private static final String SQL_CREATE_ENTRIES = "CREATE TABLE " //$NON-NLS-1$
-                                                           + WiFiSettingsContract.WifiSettingsEntry.TABLE_NAME
-                                                           + " (" //$NON-NLS-1$
-                                                           + BaseColumns._ID
-                                                           + " INTEGER PRIMARY KEY," //$NON-NLS-1$
-                                                           + WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SSID
-                                                           + " TEXT," //$NON-NLS-1$
-                                                           + WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_PASSWORD
-                                                           + " TEXT," //$NON-NLS-1$
-                                                           + WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SECURITY
-                                                           + " TEXT," //$NON-NLS-1$
-                                                           + WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_HIDDEN
-                                                           + " INTEGER)";                                      //$NON-NLS-1$
+    private static final String   SQL_CREATE_ENTRIES        = "CREATE TABLE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " (" //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + " INTEGER PRIMARY KEY," //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + " TEXT," //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_PASSWORD
+                                                                    + " TEXT," //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SECURITY
+                                                                    + " TEXT," //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_HIDDEN
+                                                                    + " INTEGER," //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + " TEXT NOT NULL)";                                //$NON-NLS-1$
 
     /**
-     * SQL command to delete the {@link WifiSettingsEntry} table
+     * SQL command to create the index covering pages of the saved network
+     * list
      */
-    private static final String SQL_DELETE_ENTRIES = "DROP TABLE IF EXISTS " //$NON-NLS-1$
-                                                           + WiFiSettingsContract.WifiSettingsEntry.TABLE_NAME;
+    private static final String   SQL_CREATE_LIST_INDEX     = "CREATE INDEX " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.INDEX_NAME_LIST
+                                                                    + " ON " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " (" //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + ")";                                              //$NON-NLS-1$
 
     /**
-     * Initialize this instance on behalf of the given {@link Context}
+     * SQL command to create the index covering password lookups
+     */
+    private static final String   SQL_CREATE_LOOKUP_INDEX   = "CREATE INDEX " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.INDEX_NAME_LOOKUP
+                                                                    + " ON " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " (" //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_PASSWORD
+                                                                    + ")";                                              //$NON-NLS-1$
+
+    /**
+     * SQL command to create the full text search table
+     */
+    private static final String   SQL_CREATE_SEARCH         = "CREATE VIRTUAL TABLE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " USING fts3(" //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + ")";                                              //$NON-NLS-1$
+
+    /**
+     * SQL command to create the unique index on
+     * {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY}
+     */
+    private static final String   SQL_CREATE_SSID_KEY_INDEX = "CREATE UNIQUE INDEX " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.INDEX_NAME_SSID_KEY
+                                                                    + " ON " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " (" //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + ")";                                              //$NON-NLS-1$
+
+    /**
+     * SQL command to delete the row with a given <code>_id</code>
+     */
+    private static final String   SQL_DELETE_BY_ID          = "DELETE FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " WHERE " //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + " = ?";                                           //$NON-NLS-1$
+
+    /**
+     * SQL command to delete all but the most recently inserted row for each
+     * {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY}
      * 
-     * @param context
-     *            {@link Context}
+     * <p>
+     * Version 1 didn't prevent duplicates, e.g. when two saves of a new SSID
+     * raced, and matched rows with <code>LIKE</code>, i.e. ignoring case
+     * </p>
      */
-    public WifiSettingsDatabaseHelper(Context context) {
+    private static final String   SQL_DELETE_DUPLICATES     = "DELETE FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " WHERE " //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + " NOT IN (SELECT max(" //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + ") FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " GROUP BY " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + ")";                                              //$NON-NLS-1$
 
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    /**
+     * SQL command to delete the {@link WifiSettingsEntry} table
+     */
+    private static final String   SQL_DELETE_ENTRIES        = "DROP TABLE IF EXISTS " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME;
 
-    }
+    /**
+     * SQL command to delete the full text search table
+     */
+    private static final String   SQL_DELETE_SEARCH         = "DROP TABLE IF EXISTS " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME;
 
     /**
-     * Delete any row(s) matching the given criteria
+     * SQL command to add every row to the full text search table
+     */
+    private static final String   SQL_FILL_SEARCH           = "INSERT INTO " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " (docid, " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + ") SELECT " //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + " FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME;
+
+    /**
+     * SQL query for the password stored for an SSID, answered from
+     * {@link WifiSettingsEntry#INDEX_NAME_LOOKUP} without reading the table
      * 
-     * @param db
-     *            <code>SQLiteDatabase</code>
+     * <p>
+     * The index is named explicitly since SQLite otherwise prefers the unique
+     * index on {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY}, which doesn't
+     * hold the password
+     * </p>
+     */
+    private static final String   SQL_LOOKUP_PASSWORD       = "SELECT " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_PASSWORD
+                                                                    + " FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " INDEXED BY " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.INDEX_NAME_LOOKUP
+                                                                    + " WHERE " //$NON-NLS-1$
+                                                                    + SELECT_BY_SSID;
+
+    /**
+     * SQL query for the largest <code>_id</code> or 0 if the table is empty
+     */
+    private static final String   SQL_MAX_ID                = "SELECT ifnull(max(" //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + "), 0) FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME;
+
+    /**
+     * SQL query for a page of the saved network list, answered from
+     * {@link WifiSettingsEntry#INDEX_NAME_LIST} without reading the table
      * 
-     * @param selection
-     *            the selection string
+     * <p>
+     * The parameters are 1: <code>_id</code> of the last row of the previous
+     * page and 2: the maximum number of rows
+     * </p>
+     */
+    private static final String   SQL_QUERY_PAGE            = "SELECT " //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + " FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " INDEXED BY " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.INDEX_NAME_LIST
+                                                                    + " WHERE " //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + " > ? ORDER BY " //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + " LIMIT ?";                                       //$NON-NLS-1$
+
+    /**
+     * SQL query for a page of the saved SSID's matching a full text search
      * 
-     * @param selectionArgs
-     *            string with which to replace '?' variables in
-     *            <code>selection</code>
+     * <p>
+     * The parameters are 1: the FTS3 match expression, 2: <code>_id</code> of
+     * the last row of the previous page and 3: the maximum number of rows.
+     * Joining back to {@link WifiSettingsEntry#TABLE_NAME} means a stale entry in
+     * the search table can never be returned
+     * </p>
      */
-    public void delete(SQLiteDatabase db, String selection,
-            String... selectionArgs) {
+    private static final String   SQL_SEARCH                = "SELECT " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + "." //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + ", " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + "." //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + " FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " JOIN " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " ON " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + "." //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + " = " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + ".docid WHERE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " MATCH ?1 AND " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + ".docid > ?2 ORDER BY " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + ".docid LIMIT ?3";                                //$NON-NLS-1$
 
-        db.delete(WiFiSettingsContract.WifiSettingsEntry.TABLE_NAME, selection,
-                selectionArgs);
+    /**
+     * SQL command to create the trigger that removes a deleted row from the
+     * full text search table
+     */
+    private static final String   SQL_SEARCH_DELETE_TRIGGER = "CREATE TRIGGER " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + "_delete AFTER DELETE ON " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " BEGIN DELETE FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " WHERE docid = old." //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + "; END";                                          //$NON-NLS-1$
 
-    }
+    /**
+     * SQL command to create the trigger that adds an inserted row to the full
+     * text search table
+     * 
+     * <p>
+     * Any existing entry with the same <code>docid</code> is removed first.
+     * {@link #SQL_UPSERT} replaces a row without firing delete triggers, since
+     * <code>recursive_triggers</code> is off, while keeping its <code>_id</code>
+     * </p>
+     */
+    private static final String   SQL_SEARCH_INSERT_TRIGGER = "CREATE TRIGGER " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + "_insert AFTER INSERT ON " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " BEGIN DELETE FROM " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " WHERE docid = new." //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + "; INSERT INTO " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " (docid, " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + ") VALUES (new." //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + ", new." //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + "); END";                                         //$NON-NLS-1$
 
     /**
-     * Return the password stored in the database for the given SSID
+     * SQL command to create the trigger that updates the full text search
+     * table when an SSID is changed in place
+     */
+    private static final String   SQL_SEARCH_UPDATE_TRIGGER = "CREATE TRIGGER " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + "_update AFTER UPDATE OF " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + " ON " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " BEGIN UPDATE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.SEARCH_TABLE_NAME
+                                                                    + " SET " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + " = new." //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + " WHERE docid = new." //$NON-NLS-1$
+                                                                    + BaseColumns._ID
+                                                                    + "; END";                                          //$NON-NLS-1$
+
+    /**
+     * SQL command to populate {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY}
+     * in the rows of a version 1 table
+     */
+    private static final String   SQL_SET_SSID_KEY          = "UPDATE " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.TABLE_NAME
+                                                                    + " SET " //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID_KEY
+                                                                    + " = lower(ifnull(" //$NON-NLS-1$
+                                                                    + WifiSettingsEntry.COLUMN_NAME_SSID
+                                                                    + ", ''))";                                         //$NON-NLS-1$
+
+    /**
+     * Bind the parameters of {@link #SQL_UPSERT}
      * 
-     * @param db
-     *            <code>SQLiteDatabase</code>
+     * @param statement
+     *            the compiled statement
      * 
      * @param ssid
      *            SSID
      * 
-     * @return password or <code>null</code> to indicate that no entry has yet
-     *         been created for the given SSID
+     * @param password
+     *            password
+     * 
+     * @param security
+     *            security protocol
+     * 
+     * @param hidden
+     *            hidden SSID
      */
-    public String lookupPassword(SQLiteDatabase db, String ssid) {
+    static void bindUpsert(SQLiteStatement statement, String ssid,
+            String password, Security security, boolean hidden) {
 
-        Cursor cursor = query(db, SELECT_BY_SSID, ssid);
+        statement.bindString(1, (password == null) ? "" : password); //$NON-NLS-1$
+        statement.bindString(2, security.toString());
+        statement.bindLong(3, (hidden ? 1 : 0));
+        statement.bindString(4, (ssid == null) ? "" : ssid); //$NON-NLS-1$
 
-        try {
+    }
 
-            if (!cursor.moveToNext()) {
+    /**
+     * Return the value of the named column of the given cached row
+     * 
+     * @param row
+     *            the cached row
+     * 
+     * @param column
+     *            column name
+     * 
+     * @return the column value
+     * 
+     * @throws IllegalArgumentException
+     *             if there is no such column
+     */
+    private static Object getColumn(SavedRowCache.Row row, String column) {
 
-                return null;
+        WifiSettingsSnapshot snapshot = row.getSnapshot();
 
-            }
+        if (BaseColumns._ID.equals(column)) {
 
-            int index = cursor
-                    .getColumnIndex(WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_PASSWORD);
-            String password = cursor.getString(index);
-            return password;
+            return Long.valueOf(row.getId());
 
-        } finally {
+        }
 
-            cursor.close();
+        if (WifiSettingsEntry.COLUMN_NAME_SSID.equals(column)) {
+
+            return snapshot.getSsid();
+
+        }
+
+        if (WifiSettingsEntry.COLUMN_NAME_PASSWORD.equals(column)) {
+
+            return snapshot.getPassword();
+
+        }
+
+        if (WifiSettingsEntry.COLUMN_NAME_SECURITY.equals(column)) {
+
+            return snapshot.getSecurity().toString();
+
+        }
+
+        if (WifiSettingsEntry.COLUMN_NAME_HIDDEN.equals(column)) {
+
+            return Integer.valueOf(snapshot.isHidden() ? 1 : 0);
+
+        }
+
+        if (WifiSettingsEntry.COLUMN_NAME_SSID_KEY.equals(column)) {
+
+            return SavedRowCache.toKey(snapshot.getSsid());
 
         }
+
+        throw new IllegalArgumentException("no such column: " + column); //$NON-NLS-1$
+
     }
 
     /**
-     * Create the database from scratch
+     * Copy the given columns of the given cached rows into a
+     * <code>Cursor</code>
      * 
-     * @param db
-     *            <code>SQLiteDatabase</code>
+     * @param projection
+     *            column names
+     * 
+     * @param rows
+     *            the rows
+     * 
+     * @return <code>Cursor</code>
      */
-    @Override
-    public void onCreate(SQLiteDatabase db) {
+    private static Cursor toCursor(String[] projection,
+            List<SavedRowCache.Row> rows) {
 
-        db.execSQL(SQL_CREATE_ENTRIES);
+        MatrixCursor cursor = new MatrixCursor(projection, rows.size());
+
+        for (SavedRowCache.Row row : rows) {
+
+            Object[] values = new Object[projection.length];
+
+            for (int index = 0; index < projection.length; ++index) {
+
+                values[index] = getColumn(row, projection[index]);
+
+            }
+
+            cursor.addRow(values);
+
+        }
+
+        return cursor;
 
     }
 
     /**
-     * Downgrade the database to the specified version
-     * 
-     * Since this is the first and only version of the schema, downgrading and
-     * upgrading shouldn't ever actually happen and should be treated the same
-     * if they ever do (i.e. due to some bug)
-     * 
-     * @param db
-     *            <code>SQLiteDatabase</code>
+     * Return the FTS3 match expression for the given search text
      * 
-     * @param oldVersion
-     *            version number of the existing database
+     * <p>
+     * Each word in the text becomes a prefix query, so that
+     * <code>"joe caf"</code> matches <code>"Joe's Cafe"</code>. Words are split
+     * as the FTS3 "simple" tokenizer splits them, i.e. at every ASCII character
+     * that isn't a letter or digit, and are lower-cased so that they can't be
+     * mistaken for the <code>AND</code>, <code>OR</code> and <code>NOT</code>
+     * operators
+     * </p>
      * 
-     * @param newVersion
-     *            requested version of the new database
+     * @param text
+     *            search text or <code>null</code>
      * 
-     * @see #onUpgrade(SQLiteDatabase, int, int)
+     * @return match expression or <code>null</code> if the text contains no
+     *         words
      */
-    @Override
-    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    private static String toMatchExpression(String text) {
+
+        if (text == null) {
+
+            return null;
+
+        }
+
+        StringBuilder expression = new StringBuilder();
+        boolean inWord = false;
+
+        for (int index = 0; index < text.length(); ++index) {
+
+            char c = text.charAt(index);
+
+            if ((c >= 0x80) || Character.isLetterOrDigit(c)) {
 
-        onUpgrade(db, oldVersion, newVersion);
+                if (!inWord && (expression.length() > 0)) {
+
+                    expression.append(' ');
+
+                }
+
+                expression.append(((c >= 'A') && (c <= 'Z')) ? (char) (c
+                        + ('a' - 'A')) : c);
+                inWord = true;
+
+            } else if (inWord) {
+
+                expression.append('*');
+                inWord = false;
+
+            }
+        }
+
+        if (inWord) {
+
+            expression.append('*');
+
+        }
+
+        return (expression.length() == 0) ? null : expression.toString();
 
     }
 
     /**
-     * Upgrade the database to the specified version
+     * Cache of saved rows
      * 
-     * Since this is the first and only version of the schema, downgrading and
-     * upgrading shouldn't ever actually happen and should be treated as an
-     * error requiring that the existing database be deleted and recreated from
-     * scratch
-     * 
-     * @param db
-     *            <code>SQLiteDatabase</code>
+     * @see #getCache()
+     */
+    private final SavedRowCache  cache;
+
+    /**
+     * The shared connection, once opened
      * 
-     * @param oldVersion
-     *            version number of the existing database
+     * @see #getDatabase()
+     */
+    private SQLiteDatabase       database;
+
+    /**
+     * Registry of {@link ChangeListener}s
+     */
+    private final ChangeNotifier notifier;
+
+    /**
+     * {@link #SQL_UPSERT} compiled for {@link #database}
+     */
+    private SQLiteStatement      upsert;
+
+    /**
+     * Lock serializing use of {@link #upsert}
      * 
-     * @param newVersion
-     *            requested version of the new database
+     * <p>
+     * This is separate from the lock on this instance so that
+     * {@link #getDatabase()} never waits for a write to finish
+     * </p>
+     */
+    private final Object         writeLock;
+
+    /**
+     * Initialize this instance on behalf of the given {@link Context}
      * 
-     * @see #onDowngrade(SQLiteDatabase, int, int)
+     * @param context
+     *            any {@link Context} of this application
      */
-    @Override
-    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public WifiSettingsDatabaseHelper(Context context) {
 
-        db.execSQL(SQL_DELETE_ENTRIES);
-        onCreate(db);
+        super(context.getApplicationContext(), DATABASE_NAME, null,
+                DATABASE_VERSION);
+        writeLock = new Object();
+        cache = new SavedRowCache();
+        notifier = new ChangeNotifier();
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
 
+            setWriteAheadLoggingEnabled(true);
+
+        }
     }
 
     /**
-     * Return a <code>Cursor</code> for records matching the current
-     * {@link WifiSettings} singleton's SSID
+     * Register a listener to be notified of changes to the saved rows
      * 
-     * This will return an empty <code>Cursor</code> if no matching row has yet
-     * been added to the database. If this ever returns a <code>Cursor</code>
-     * with more than one entry, then some data corruption has occurred due to a
-     * bug somewhere in the app
-     * 
-     * @param db
-     *            <code>SQLiteDatabase</code>
+     * @param listener
+     *            the {@link ChangeListener}, which is notified in the current
+     *            thread if it has a <code>Looper</code>
      * 
-     * @param selection
-     *            selection SQL parameter
+     * @see #removeChangeListener(ChangeListener)
+     */
+    public void addChangeListener(ChangeListener listener) {
+
+        notifier.add(listener);
+
+    }
+
+    /**
+     * Close the shared connection
      * 
-     * @param selectionArgs
-     *            arguments to replace '?' in <code>selection</code>
+     * <p>
+     * It will be re-opened if this instance is used again
+     * </p>
      * 
-     * @return <code>Cursor</code>
+     * @see android.database.sqlite.SQLiteOpenHelper#close()
      */
-    public Cursor query(SQLiteDatabase db, String selection,
-            String... selectionArgs) {
+    @Override
+    public void close() {
 
-        String[] columns = new String[] { BaseColumns._ID,
-                WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SSID,
-                WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_PASSWORD,
-                WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SECURITY,
-                WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_HIDDEN };
-        Cursor cursor = db.query(
-                WiFiSettingsContract.WifiSettingsEntry.TABLE_NAME, columns,
-                selection, selectionArgs, null, null, null);
-        return cursor;
+        synchronized (writeLock) {
 
+            if (upsert != null) {
+
+                upsert.close();
+                upsert = null;
+
+            }
+        }
+
+        synchronized (this) {
+
+            database = null;
+            super.close();
+
+        }
     }
 
     /**
-     * Update the existing row or insert a new row for the current state of the
-     * {@link WifiSettings} singleton
+     * Delete any row(s) matching the given criteria
      * 
-     * @param db
-     *            <code>SQLiteDatabase</code>
+     * @param selection
+     *            the selection string
+     * 
+     * @param selectionArgs
+     *            string with which to replace '?' variables in
+     *            <code>selection</code>
      */
-    public void storeWifiSettings(SQLiteDatabase db) {
+    public void delete(String selection, String... selectionArgs) {
 
-        try {
+        SQLiteDatabase db = getDatabase();
+        long[] ids = null;
 
-            WifiSettings settings = WifiSettings.getInstance();
-            String ssid = settings.getSsid();
-            String selection = WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SSID
-                    + " LIKE ?"; //$NON-NLS-1$
-            Cursor cursor = query(db, selection, ssid);
+        synchronized (writeLock) {
 
-            try {
+            if (notifier.hasListeners()) {
 
-                if (!cursor.moveToNext()) {
+                ids = queryIds(db, selection, selectionArgs);
 
-                    insert(db);
+            }
 
-                } else {
+            db.delete(WiFiSettingsContract.WifiSettingsEntry.TABLE_NAME,
+                    selection, selectionArgs);
 
-                    update(db);
+            if (SELECT_BY_SSID.equals(selection)
+                    && (selectionArgs.length == 1)) {
 
-                }
+                cache.remove(selectionArgs[0]);
 
-            } finally {
+            } else {
 
-                cursor.close();
+                cache.invalidate();
 
             }
+        }
 
-        } finally {
+        if (ids != null) {
 
-            db.close();
+            notifier.deleted(ids);
 
         }
     }
 
     /**
-     * Insert a new row for the current state of the {@link WifiSettings}
-     * singleton
+     * Delete the rows with the given <code>_id</code> values in a single
+     * transaction
      * 
-     * @param db
-     *            {@link WifiSettings}
+     * <p>
+     * The rows are removed from the full text search table by its delete
+     * trigger. Id's of rows that no longer exist are ignored, but are still
+     * reported to the {@link ChangeListener}s
+     * </p>
+     * 
+     * @param ids
+     *            the <code>_id</code> values
      */
-    private void insert(SQLiteDatabase db) {
+    public void deleteById(long... ids) {
 
-        ContentValues values = WifiSettings.getInstance().getContentValues();
-        db.insert(WiFiSettingsContract.WifiSettingsEntry.TABLE_NAME, null,
-                values);
+        SQLiteDatabase db = getDatabase();
 
-    }
+        synchronized (writeLock) {
 
-    /**
-     * Update the existing row for the current state of the {@link WifiSettings}
-     * singleton
-     * 
-     * @param db
-     *            {@link WifiSettings}
-     */
-    private void update(SQLiteDatabase db) {
+            SQLiteStatement statement = db.compileStatement(SQL_DELETE_BY_ID);
 
-        ContentValues values = WifiSettings.getInstance().getContentValues();
-        String whereClause = WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SSID
-                + " LIKE ?"; //$NON-NLS-1$
-        String[] whereArgs = { values
-                .getAsString(WiFiSettingsContract.WifiSettingsEntry.COLUMN_NAME_SSID) };
-        db.update(WiFiSettingsContract.WifiSettingsEntry.TABLE_NAME, values,
-                whereClause, whereArgs);
+            try {
 
+                db.beginTransaction();
+
+                try {
+
+                    for (long id : ids) {
+
+                        statement.bindLong(1, id);
+                        statement.execute();
+
+                    }
+
+                    db.setTransactionSuccessful();
+
+                } finally {
+
+                    db.endTransaction();
+
+                }
+
+            } finally {
+
+                statement.close();
+
+            }
+
+            cache.removeById(ids);
+
+        }
+
+        notifier.deleted(ids);
+
+    }
+
+    /**
+     * Return the shared connection, opening it if necessary
+     * 
+     * @return <code>SQLiteDatabase</code>
+     */
+    public synchronized SQLiteDatabase getDatabase() {
+
+        if ((database == null) || !database.isOpen()) {
+
+            database = getWritableDatabase();
+
+        }
+
+        return database;
+
+    }
+
+    /**
+     * Load the rows matching the given selection as detached snapshots
+     * 
+     * @param selection
+     *            selection SQL parameter
+     * 
+     * @param selectionArgs
+     *            arguments to replace '?' in <code>selection</code>
+     * 
+     * @return the rows, in the order returned by the query
+     * 
+     * @see WifiSettingsSnapshot#create(String, String, Security, boolean)
+     */
+    public List<WifiSettingsSnapshot> loadSnapshots(String selection,
+            String... selectionArgs) {
+
+        List<WifiSettingsSnapshot> snapshots = new ArrayList<WifiSettingsSnapshot>();
+        Cursor cursor = query(selection, selectionArgs);
+
+        try {
+
+            int ssidIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_SSID);
+            int passwordIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_PASSWORD);
+            int securityIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_SECURITY);
+            int hiddenIndex = cursor
+                    .getColumnIndex(WifiSettingsEntry.COLUMN_NAME_HIDDEN);
+
+            while (cursor.moveToNext()) {
+
+                snapshots.add(WifiSettingsSnapshot.create(
+                        cursor.getString(ssidIndex),
+                        cursor.getString(passwordIndex),
+                        Security.valueOf(cursor.getString(securityIndex)),
+                        cursor.getInt(hiddenIndex) != 0));
+
+            }
+
+        } finally {
+
+            cursor.close();
+
+        }
+
+        return snapshots;
+
+    }
+
+    /**
+     * Return the password stored in the database for the given SSID
+     * 
+     * <p>
+     * This is answered from the cache of saved rows if it has been filled,
+     * otherwise from {@link WifiSettingsEntry#INDEX_NAME_LOOKUP}. Filling the
+     * cache would mean reading the whole table for the sake of one row
+     * </p>
+     * 
+     * @param ssid
+     *            SSID
+     * 
+     * @return password or <code>null</code> to indicate that no entry has yet
+     *         been created for the given SSID
+     */
+    public String lookupPassword(String ssid) {
+
+        synchronized (cache) {
+
+            if (cache.isLoaded()) {
+
+                SavedRowCache.Row row = cache.get(ssid);
+                return (row == null) ? null : row.getSnapshot().getPassword();
+
+            }
+        }
+
+        Cursor cursor = getDatabase().rawQuery(SQL_LOOKUP_PASSWORD,
+                new String[] { (ssid == null) ? "" : ssid }); //$NON-NLS-1$
+
+        try {
+
+            if (!cursor.moveToNext()) {
+
+                return null;
+
+            }
+
+            return cursor.getString(0);
+
+        } finally {
+
+            cursor.close();
+
+        }
+    }
+
+    /**
+     * Create the database from scratch
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     */
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+
+        db.execSQL(SQL_CREATE_ENTRIES);
+        db.execSQL(SQL_CREATE_SSID_KEY_INDEX);
+        db.execSQL(SQL_CREATE_LIST_INDEX);
+        db.execSQL(SQL_CREATE_LOOKUP_INDEX);
+        createSearch(db);
+
+    }
+
+    /**
+     * Downgrade the database to the specified version
+     * 
+     * A newer schema can't be converted to an older one, so the existing
+     * database is deleted and recreated from scratch
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     * 
+     * @param oldVersion
+     *            version number of the existing database
+     * 
+     * @param newVersion
+     *            requested version of the new database
+     */
+    @Override
+    public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+
+        db.execSQL(SQL_DELETE_SEARCH);
+        db.execSQL(SQL_DELETE_ENTRIES);
+        onCreate(db);
+
+    }
+
+    /**
+     * Enable write-ahead logging on platforms that support it but don't have
+     * {@link #setWriteAheadLoggingEnabled(boolean)}
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     * 
+     * @see android.database.sqlite.SQLiteOpenHelper#onOpen(android.database.sqlite.SQLiteDatabase)
+     */
+    @Override
+    @TargetApi(Build.VERSION_CODES.HONEYCOMB)
+    public void onOpen(SQLiteDatabase db) {
+
+        super.onOpen(db);
+
+        if ((Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB)
+                && (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN)
+                && !db.isReadOnly()) {
+
+            db.enableWriteAheadLogging();
+
+        }
+    }
+
+    /**
+     * Upgrade the database to the specified version, preserving existing rows
+     * 
+     * <p>
+     * <code>SQLiteOpenHelper</code> calls this inside a transaction, so a
+     * failed migration leaves the old database intact
+     * </p>
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     * 
+     * @param oldVersion
+     *            version number of the existing database
+     * 
+     * @param newVersion
+     *            requested version of the new database
+     */
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+
+        if (oldVersion < 2) {
+
+            migrateToVersion2(db);
+
+        }
+
+        if (oldVersion < 3) {
+
+            migrateToVersion3(db);
+
+        }
+
+        if (oldVersion < 4) {
+
+            migrateToVersion4(db);
+
+        }
+    }
+
+    /**
+     * Open the saved rows with the given <code>_id</code> values as
+     * {@link SavedNetworks}, in <code>_id</code> order
+     * 
+     * <p>
+     * Unlike {@link #loadSnapshots(String, String...)}, the rows are read one
+     * at a time as they are visited rather than all at once, and the cache of
+     * saved rows is not used. Given <code>_id</code> values are looked up by
+     * primary key, in as many queries as SQLite's limit on bound parameters
+     * requires, so the cost depends on how many are given rather than on the
+     * size of the table. The caller must close the result
+     * </p>
+     * 
+     * @param ids
+     *            <code>_id</code> values of the rows, or none for all rows
+     * 
+     * @return {@link SavedNetworks}
+     */
+    public SavedNetworks openNetworks(long... ids) {
+
+        return new SavedNetworks(this, ids);
+
+    }
+
+    /**
+     * Return a <code>Cursor</code> for the <code>_id</code>, SSID, password,
+     * security and hidden columns of records matching the given selection
+     * 
+     * @param selection
+     *            selection SQL parameter
+     * 
+     * @param selectionArgs
+     *            arguments to replace '?' in <code>selection</code>
+     * 
+     * @return <code>Cursor</code>
+     * 
+     * @see #query(String[], String, String...)
+     */
+    public Cursor query(String selection, String... selectionArgs) {
+
+        return query(COLUMNS, selection, selectionArgs);
+
+    }
+
+    /**
+     * Return a <code>Cursor</code> for the given columns of records matching
+     * the given selection
+     * 
+     * <p>
+     * A <code>null</code> selection, i.e. all rows, fills the cache of saved
+     * rows if necessary and is answered from it. {@link #SELECT_BY_SSID} is
+     * answered from the cache if it has been filled. Other selections query the
+     * database
+     * </p>
+     * 
+     * @param projection
+     *            names of the columns to return
+     * 
+     * @param selection
+     *            selection SQL parameter
+     * 
+     * @param selectionArgs
+     *            arguments to replace '?' in <code>selection</code>
+     * 
+     * @return <code>Cursor</code>
+     */
+    public Cursor query(String[] projection, String selection,
+            String... selectionArgs) {
+
+        if (selection == null) {
+
+            return toCursor(projection, getCache().getAll());
+
+        }
+
+        if (SELECT_BY_SSID.equals(selection) && (selectionArgs.length == 1)) {
+
+            synchronized (cache) {
+
+                if (cache.isLoaded()) {
+
+                    SavedRowCache.Row row = cache.get(selectionArgs[0]);
+
+                    if (row == null) {
+
+                        return toCursor(projection,
+                                Collections.<SavedRowCache.Row> emptyList());
+
+                    }
+
+                    return toCursor(projection,
+                            Collections.singletonList(row));
+
+                }
+            }
+        }
+
+        return getDatabase().query(WifiSettingsEntry.TABLE_NAME, projection,
+                selection, selectionArgs, null, null, null);
+
+    }
+
+    /**
+     * Return a <code>Cursor</code> for the next page of saved SSID's
+     * 
+     * <p>
+     * Pages are keyed by <code>_id</code>, so each page is a range scan that
+     * costs the same however many rows precede it. Only the <code>_id</code>
+     * and SSID columns are returned, which are read from
+     * {@link WifiSettingsEntry#INDEX_NAME_LIST} without reading the table
+     * </p>
+     * 
+     * @param afterId
+     *            <code>_id</code> of the last row of the previous page, or 0
+     *            for the first page
+     * 
+     * @param limit
+     *            maximum number of rows to return
+     * 
+     * @return <code>Cursor</code> of up to <code>limit</code> rows in
+     *         <code>_id</code> order
+     */
+    public Cursor queryPage(long afterId, int limit) {
+
+        return getDatabase().rawQuery(SQL_QUERY_PAGE,
+                new String[] { Long.toString(afterId), Integer.toString(limit) });
+
+    }
+
+    /**
+     * Unregister a listener
+     * 
+     * <p>
+     * Notifications that have been queued for the listener but not yet
+     * delivered are discarded
+     * </p>
+     * 
+     * @param listener
+     *            the {@link ChangeListener}
+     * 
+     * @see #addChangeListener(ChangeListener)
+     */
+    public void removeChangeListener(ChangeListener listener) {
+
+        notifier.remove(listener);
+
+    }
+
+    /**
+     * Return a <code>Cursor</code> for the next page of saved SSID's matching
+     * the given search text
+     * 
+     * <p>
+     * Any word in the SSID may match, and each word of the search text matches
+     * as a prefix, ignoring case. The search uses
+     * {@link WifiSettingsEntry#SEARCH_TABLE_NAME}, so it costs about the same
+     * however many rows there are. Pages are keyed by <code>_id</code>, as for
+     * {@link #queryPage(long, int)}, which is used instead if the search text
+     * contains no words
+     * </p>
+     * 
+     * @param text
+     *            search text
+     * 
+     * @param afterId
+     *            <code>_id</code> of the last row of the previous page, or 0
+     *            for the first page
+     * 
+     * @param limit
+     *            maximum number of rows to return
+     * 
+     * @return <code>Cursor</code> of up to <code>limit</code> rows with the
+     *         <code>_id</code> and SSID columns, in <code>_id</code> order
+     */
+    public Cursor search(String text, long afterId, int limit) {
+
+        String match = toMatchExpression(text);
+
+        if (match == null) {
+
+            return queryPage(afterId, limit);
+
+        }
+
+        return getDatabase().rawQuery(
+                SQL_SEARCH,
+                new String[] { match, Long.toString(afterId),
+                        Integer.toString(limit) });
+
+    }
+
+    /**
+     * Update the existing row or insert a new row for each of the given
+     * snapshots, all in a single transaction
+     * 
+     * <p>
+     * Rows are matched by SSID, ignoring case. An empty password in a snapshot
+     * whose security protocol isn't {@link Security#NONE} leaves the stored
+     * password unchanged, so that the masked keys returned by
+     * {@link us.rader.wyfy.model.AndroidWifiService#toNetwork(android.net.wifi.WifiConfiguration)}
+     * don't overwrite real ones
+     * </p>
+     * 
+     * @param snapshots
+     *            the rows to store
+     * 
+     * @return number of rows stored
+     */
+    public int storeAll(List<WifiSettingsSnapshot> snapshots) {
+
+        SQLiteDatabase db = getDatabase();
+        long[] ids = new long[snapshots.size()];
+        long maxId = -1;
+
+        synchronized (writeLock) {
+
+            if (notifier.hasListeners()) {
+
+                maxId = getMaxId(db);
+
+            }
+
+            SQLiteStatement statement = getUpsert(db);
+            int index = 0;
+            db.beginTransaction();
+
+            try {
+
+                for (WifiSettingsSnapshot snapshot : snapshots) {
+
+                    bindUpsert(statement, snapshot.getSsid(),
+                            snapshot.getPassword(), snapshot.getSecurity(),
+                            snapshot.isHidden());
+                    ids[index++] = statement.executeInsert();
+
+                }
+
+                db.setTransactionSuccessful();
+
+            } finally {
+
+                db.endTransaction();
+
+            }
+
+            index = 0;
+
+            for (WifiSettingsSnapshot snapshot : snapshots) {
+
+                cache.stored(ids[index++], snapshot);
+
+            }
+        }
+
+        if (maxId >= 0) {
+
+            notifier.stored(maxId, ids);
+
+        }
+
+        return snapshots.size();
+
+    }
+
+    /**
+     * Update the existing row or insert a new row for the given snapshot of the
+     * {@link WifiSettings} singleton's state
+     * 
+     * @param snapshot
+     *            {@link WifiSettingsSnapshot}
+     * 
+     * @see #SQL_UPSERT
+     */
+    public void storeWifiSettings(WifiSettingsSnapshot snapshot) {
+
+        SQLiteDatabase db = getDatabase();
+        long id;
+        long maxId = -1;
+
+        synchronized (writeLock) {
+
+            if (notifier.hasListeners()) {
+
+                maxId = getMaxId(db);
+
+            }
+
+            SQLiteStatement statement = getUpsert(db);
+            bindUpsert(statement, snapshot.getSsid(), snapshot.getPassword(),
+                    snapshot.getSecurity(), snapshot.isHidden());
+            id = statement.executeInsert();
+            cache.stored(id, snapshot);
+
+        }
+
+        if (maxId >= 0) {
+
+            notifier.stored(maxId, id);
+
+        }
+    }
+
+    /**
+     * Return a <code>Cursor</code> for the <code>_id</code>, SSID, password,
+     * security and hidden columns of the rows with the given
+     * <code>_id</code> values, in <code>_id</code> order
+     * 
+     * <p>
+     * Each <code>_id</code> value is a bound parameter, so
+     * <code>end - start</code> must not exceed SQLite's limit on bound
+     * parameters
+     * </p>
+     * 
+     * @param ids
+     *            <code>_id</code> values, or <code>null</code> for all rows
+     * 
+     * @param start
+     *            index of the first <code>_id</code> value to use
+     * 
+     * @param end
+     *            index after the last <code>_id</code> value to use
+     * 
+     * @return <code>Cursor</code>
+     * 
+     * @see SavedNetworks
+     */
+    Cursor queryNetworks(long[] ids, int start, int end) {
+
+        String selection = null;
+        String[] selectionArgs = null;
+
+        if (ids != null) {
+
+            StringBuilder builder = new StringBuilder(BaseColumns._ID);
+            builder.append(" IN ("); //$NON-NLS-1$
+            selectionArgs = new String[end - start];
+
+            for (int index = start; index < end; ++index) {
+
+                builder.append((index == start) ? "?" : ",?"); //$NON-NLS-1$ //$NON-NLS-2$
+                selectionArgs[index - start] = Long.toString(ids[index]);
+
+            }
+
+            selection = builder.append(')').toString();
+
+        }
+
+        return getDatabase().query(WifiSettingsEntry.TABLE_NAME, COLUMNS,
+                selection, selectionArgs, null, null, BaseColumns._ID);
+
+    }
+
+    /**
+     * Discard the cache of saved rows and notify the {@link ChangeListener}s
+     * after the table has been changed directly, e.g. by a
+     * {@link WifiSettingsImporter}
+     */
+    void tableChanged() {
+
+        cache.invalidate();
+        notifier.tableChanged();
+
+    }
+
+    /**
+     * Create {@link WifiSettingsEntry#SEARCH_TABLE_NAME} and the triggers that
+     * keep it in step with {@link WifiSettingsEntry#TABLE_NAME}
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     */
+    private void createSearch(SQLiteDatabase db) {
+
+        db.execSQL(SQL_CREATE_SEARCH);
+        db.execSQL(SQL_SEARCH_INSERT_TRIGGER);
+        db.execSQL(SQL_SEARCH_UPDATE_TRIGGER);
+        db.execSQL(SQL_SEARCH_DELETE_TRIGGER);
+
+    }
+
+    /**
+     * Return the cache of saved rows, filling it if necessary
+     * 
+     * @return {@link #cache}
+     */
+    private SavedRowCache getCache() {
+
+        synchronized (cache) {
+
+            if (!cache.isLoaded()) {
+
+                cache.load(getDatabase().query(WifiSettingsEntry.TABLE_NAME,
+                        COLUMNS, null, null, null, null, BaseColumns._ID));
+
+            }
+        }
+
+        return cache;
+
+    }
+
+    /**
+     * Return the largest <code>_id</code> in the table
+     * 
+     * @param db
+     *            the shared connection
+     * 
+     * @return the largest <code>_id</code> or 0 if the table is empty
+     */
+    private long getMaxId(SQLiteDatabase db) {
+
+        return DatabaseUtils.longForQuery(db, SQL_MAX_ID, null);
+
+    }
+
+    /**
+     * Return {@link #SQL_UPSERT}, compiling it only if it isn't already cached
+     * 
+     * <p>
+     * The caller must hold {@link #writeLock}
+     * </p>
+     * 
+     * @param db
+     *            the shared connection
+     * 
+     * @return the compiled statement
+     */
+    private SQLiteStatement getUpsert(SQLiteDatabase db) {
+
+        if (upsert == null) {
+
+            upsert = db.compileStatement(SQL_UPSERT);
+
+        }
+
+        return upsert;
+
+    }
+
+    /**
+     * Add {@link WifiSettingsEntry#COLUMN_NAME_SSID_KEY} and its unique index
+     * to a version 1 database, removing rows with duplicate SSID's
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     */
+    private void migrateToVersion2(SQLiteDatabase db) {
+
+        db.execSQL(SQL_ADD_SSID_KEY);
+        db.execSQL(SQL_SET_SSID_KEY);
+        db.execSQL(SQL_DELETE_DUPLICATES);
+        db.execSQL(SQL_CREATE_SSID_KEY_INDEX);
+
+    }
+
+    /**
+     * Add {@link WifiSettingsEntry#INDEX_NAME_LIST} and
+     * {@link WifiSettingsEntry#INDEX_NAME_LOOKUP} to a version 2 database
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     */
+    private void migrateToVersion3(SQLiteDatabase db) {
+
+        db.execSQL(SQL_CREATE_LIST_INDEX);
+        db.execSQL(SQL_CREATE_LOOKUP_INDEX);
+
+    }
+
+    /**
+     * Add {@link WifiSettingsEntry#SEARCH_TABLE_NAME} and its triggers to a
+     * version 3 database and fill it from the existing rows
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     */
+    private void migrateToVersion4(SQLiteDatabase db) {
+
+        createSearch(db);
+        db.execSQL(SQL_FILL_SEARCH);
+
+    }
+
+    /**
+     * Return the <code>_id</code> of each row matching the given criteria
+     * 
+     * @param db
+     *            the shared connection
+     * 
+     * @param selection
+     *            the selection string
+     * 
+     * @param selectionArgs
+     *            string with which to replace '?' variables in
+     *            <code>selection</code>
+     * 
+     * @return the <code>_id</code> values
+     */
+    private long[] queryIds(SQLiteDatabase db, String selection,
+            String... selectionArgs) {
+
+        Cursor cursor = db.query(WifiSettingsEntry.TABLE_NAME,
+                new String[] { BaseColumns._ID }, selection, selectionArgs,
+                null, null, null);
+
+        try {
+
+            long[] ids = new long[cursor.getCount()];
+            int index = 0;
+
+            while (cursor.moveToNext()) {
+
+                ids[index++] = cursor.getLong(0);
+
+            }
+
+            return ids;
+
+        } finally {
+
+            cursor.close();
+
+        }
     }
 
 }
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import us.rader.wyfy.model.WifiUriParser;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.os.SystemClock;
+
+/**
+ * Bulk import of WIFI: URI's, one per line, into the WyFy database
+ * 
+ * <p>
+ * The input is streamed one line at a time and each line is parsed with a
+ * single re-used {@link WifiUriParser}, so the {@link us.rader.wyfy.model.WifiSettings}
+ * singleton is never touched. Rows are written using the precompiled
+ * {@link WifiSettingsDatabaseHelper#SQL_UPSERT} statement in batches of
+ * {@link #BATCH_SIZE} rows per transaction. As with
+ * {@link WifiSettingsDatabaseHelper#storeWifiSettings(us.rader.wyfy.model.WifiSettingsSnapshot)},
+ * an imported row replaces any existing row with the same SSID
+ * </p>
+ * 
+ * <p>
+ * Blank lines and lines starting with '#' are ignored. Lines that can't be
+ * parsed are skipped and reported by {@link #getErrors()}
+ * </p>
+ * 
+ * <p>
+ * This should always be used in a worker thread
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class WifiSettingsImporter {
+
+    /**
+     * Number of rows written per transaction
+     */
+    public static final int     BATCH_SIZE = 500;
+
+    /**
+     * Maximum number of error messages retained by {@link #getErrors()}
+     */
+    public static final int     MAX_ERRORS = 100;
+
+    /**
+     * Line prefix for comments
+     */
+    private static final String COMMENT    = "#"; //$NON-NLS-1$
+
+    /**
+     * Test whether a line is blank or a comment
+     * 
+     * <p>
+     * The line itself isn't trimmed, so that error positions reported for
+     * other lines are columns in the line as read
+     * </p>
+     * 
+     * @param line
+     *            the line
+     * 
+     * @return <code>true</code> if and only if <code>line</code> contains
+     *         only whitespace, or its first non-whitespace character starts
+     *         {@link #COMMENT}
+     */
+    private static boolean isIgnored(String line) {
+
+        int index = 0;
+
+        while ((index < line.length())
+                && Character.isWhitespace(line.charAt(index))) {
+
+            ++index;
+
+        }
+
+        return (index == line.length()) || line.startsWith(COMMENT, index);
+
+    }
+
+    /**
+     * Number of lines that couldn't be parsed
+     */
+    private int                 errorCount;
+
+    /**
+     * Error messages for the first {@link #MAX_ERRORS} lines that couldn't be
+     * parsed
+     */
+    private final List<String>  errors;
+
+    /**
+     * Elapsed time of the most recent import
+     */
+    private long                elapsedMillis;
+
+    /**
+     * Number of rows written
+     */
+    private int                 importedCount;
+
+    /**
+     * Number of lines read
+     */
+    private int                 lineCount;
+
+    /**
+     * Initialize to default state
+     */
+    public WifiSettingsImporter() {
+
+        errors = new ArrayList<String>();
+        reset();
+
+    }
+
+    /**
+     * @return number of lines that couldn't be parsed
+     */
+    public int getErrorCount() {
+
+        return errorCount;
+
+    }
+
+    /**
+     * @return error messages for the first {@link #MAX_ERRORS} lines that
+     *         couldn't be parsed
+     */
+    public List<String> getErrors() {
+
+        return Collections.unmodifiableList(errors);
+
+    }
+
+    /**
+     * @return elapsed time of the most recent import, in milliseconds
+     */
+    public long getElapsedMillis() {
+
+        return elapsedMillis;
+
+    }
+
+    /**
+     * @return number of rows written
+     */
+    public int getImportedCount() {
+
+        return importedCount;
+
+    }
+
+    /**
+     * @return number of lines read
+     */
+    public int getLineCount() {
+
+        return lineCount;
+
+    }
+
+    /**
+     * @return number of lines processed per second by the most recent import
+     */
+    public double getLinesPerSecond() {
+
+        if (elapsedMillis <= 0) {
+
+            return lineCount;
+
+        }
+
+        return (lineCount * 1000.0) / elapsedMillis;
+
+    }
+
+    /**
+     * Import the WIFI: URI's read from the given {@link Reader}, one per line
+     * 
+     * @param db
+     *            <code>SQLiteDatabase</code>
+     * 
+     * @param reader
+     *            the input
+     * 
+     * @return number of rows written
+     * 
+     * @throws IOException
+     *             if an I/O error occurs
+     */
+    public int importUris(SQLiteDatabase db, Reader reader) throws IOException {
+
+        reset();
+        long start = SystemClock.elapsedRealtime();
+        BufferedReader lines = new BufferedReader(reader);
+        WifiUriParser parser = new WifiUriParser();
+        SQLiteStatement upsert = db
+                .compileStatement(WifiSettingsDatabaseHelper.SQL_UPSERT);
+
+        try {
+
+            int batchCount = 0;
+            String line;
+            db.beginTransaction();
+
+            try {
+
+                while ((line = lines.readLine()) != null) {
+
+                    ++lineCount;
+
+                    if (isIgnored(line)) {
+
+                        continue;
+
+                    }
+
+                    WifiUriParser.Status status = parser.parse(line);
+
+                    if (status != WifiUriParser.Status.OK) {
+
+                        addError(status, parser.getErrorPosition());
+                        continue;
+
+                    }
+
+                    WifiSettingsDatabaseHelper.bindUpsert(upsert,
+                            parser.getSsid(), parser.getPassword(),
+                            parser.getSecurity(), parser.isHidden());
+                    upsert.execute();
+                    ++importedCount;
+
+                    if (++batchCount >= BATCH_SIZE) {
+
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        db.beginTransaction();
+                        batchCount = 0;
+
+                    }
+                }
+
+                db.setTransactionSuccessful();
+
+            } finally {
+
+                db.endTransaction();
+
+            }
+
+        } finally {
+
+            upsert.close();
+            elapsedMillis = SystemClock.elapsedRealtime() - start;
+
+        }
+
+        return importedCount;
+
+    }
+
+    /**
+     * Return a summary of the most recent import
+     * 
+     * @return summary string
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format(
+                "imported %d of %d lines in %d ms (%.1f lines/s), %d errors", //$NON-NLS-1$
+                importedCount, lineCount, elapsedMillis, getLinesPerSecond(),
+                errorCount);
+
+    }
+
+    /**
+     * Record a parse error for the current line
+     * 
+     * @param status
+     *            the parser's {@link WifiUriParser.Status}
+     * 
+     * @param position
+     *            the parser's error position
+     */
+    private void addError(WifiUriParser.Status status, int position) {
+
+        ++errorCount;
+
+        if (errors.size() < MAX_ERRORS) {
+
+            errors.add(String.format("line %d, column %d: %s", lineCount, //$NON-NLS-1$
+                    position + 1, status));
+
+        }
+    }
+
+    /**
+     * Clear the results of any previous import
+     */
+    private void reset() {
+
+        errors.clear();
+        errorCount = 0;
+        elapsedMillis = 0;
+        importedCount = 0;
+        lineCount = 0;
+
+    }
+
+}
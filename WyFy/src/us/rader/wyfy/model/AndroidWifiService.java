@@ -0,0 +1,397 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+
+/**
+ * {@link WifiService} implemented using the Android {@link WifiManager}
+ * 
+ * <p>
+ * This is also where {@link WifiNetwork} is converted to and from the
+ * platform's {@link WifiConfiguration}
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class AndroidWifiService implements WifiService {
+
+    /**
+     * Double-quote
+     */
+    private static final String DOUBLE_QUOTE = "\""; //$NON-NLS-1$
+
+    /**
+     * Value returned by the platform in place of a stored key
+     */
+    private static final String MASKED_KEY   = "*";  //$NON-NLS-1$
+
+    /**
+     * Wrap the given <code>string</code> in double-quotes
+     * 
+     * @param string
+     *            the string
+     * 
+     * @return the wrapped string
+     */
+    private static String addQuotes(String string) {
+
+        return DOUBLE_QUOTE + string + DOUBLE_QUOTE;
+
+    }
+
+    /**
+     * Create the entry to add to, or update in, the list of configured wi fi
+     * networks
+     * 
+     * TODO: this makes a lot of assumptions based on a small sampling of actual
+     * wi fi configurations -- need more research and testing!
+     * 
+     * @param network
+     *            the {@link WifiNetwork}
+     * 
+     * @return the {@link WifiConfiguration}, whose
+     *         {@link WifiConfiguration#networkId} is that of
+     *         <code>network</code> and whose key is <code>null</code>, so
+     *         that updating a network leaves its stored key unchanged, if
+     *         the password is empty
+     */
+    private static WifiConfiguration createConfiguration(WifiNetwork network) {
+
+        String password = network.getPassword();
+        Security securityProtcol = network.getSecurity();
+        WifiConfiguration config = new WifiConfiguration();
+        config.networkId = network.getNetworkId();
+        config.SSID = addQuotes(network.getSsid());
+        config.allowedKeyManagement.clear();
+        config.allowedAuthAlgorithms.set(WifiConfiguration.KeyMgmt.NONE);
+        config.allowedGroupCiphers.clear();
+
+        switch (securityProtcol) {
+
+            case NONE:
+
+                break;
+
+            case WEP:
+
+                if (isEmpty(password)) {
+
+                    break;
+
+                }
+
+                config.wepKeys = new String[] { addQuotes(password) };
+
+                if (password.length() == 10) {
+
+                    config.allowedGroupCiphers
+                            .set(WifiConfiguration.GroupCipher.WEP40);
+
+                } else {
+
+                    config.allowedAuthAlgorithms
+                            .set(WifiConfiguration.GroupCipher.WEP104);
+
+                }
+
+                break;
+
+            case WPA:
+
+                if (!isEmpty(password)) {
+
+                    config.preSharedKey = addQuotes(password);
+
+                }
+
+                config.allowedGroupCiphers
+                        .set(WifiConfiguration.GroupCipher.CCMP);
+
+                break;
+
+            default:
+
+                throw new IllegalStateException(
+                        "Illegal security constant " + securityProtcol); //$NON-NLS-1$
+
+        }
+
+        return config;
+
+    }
+
+    /**
+     * Test whether the given password is missing
+     * 
+     * @param password
+     *            the password or <code>null</code>
+     * 
+     * @return <code>true</code> if and only if <code>password</code> is
+     *         <code>null</code> or empty
+     */
+    private static boolean isEmpty(String password) {
+
+        return (password == null) || (password.length() == 0);
+
+    }
+
+    /**
+     * Unwrap a key stored in a {@link WifiConfiguration}
+     * 
+     * @param key
+     *            the stored key
+     * 
+     * @return the unwrapped key or the empty string if the key is masked or
+     *         missing
+     */
+    private static String removeKey(String key) {
+
+        if (MASKED_KEY.equals(key)) {
+
+            return WifiSettings.EMPTY_STRING;
+
+        }
+
+        return removeQuotes(key);
+
+    }
+
+    /**
+     * Remove the first and last character from the given string if they are
+     * double quotes
+     * 
+     * @param string
+     *            the string to unwrap
+     * 
+     * @return the unwrapped string
+     */
+    private static String removeQuotes(String string) {
+
+        if (string == null) {
+
+            return WifiSettings.EMPTY_STRING;
+
+        }
+
+        if ((string.length() > 1) && string.startsWith(DOUBLE_QUOTE)
+                && string.endsWith(DOUBLE_QUOTE)) {
+
+            return string.substring(1, string.length() - 1);
+
+        }
+
+        return string;
+
+    }
+
+    /**
+     * Convert a configured network
+     * 
+     * <p>
+     * The platform generally doesn't return stored keys, reporting them as
+     * <code>"*"</code> instead, in which case the password of the returned
+     * network is empty
+     * </p>
+     * 
+     * TODO: crude implementation; research how this is supposed to work
+     * 
+     * @param configuration
+     *            {@link WifiConfiguration}
+     * 
+     * @return the {@link WifiNetwork}
+     */
+    public static WifiNetwork toNetwork(WifiConfiguration configuration) {
+
+        int networkId = configuration.networkId;
+        String ssid = removeQuotes(configuration.SSID);
+        boolean hidden = configuration.hiddenSSID;
+        String preSharedKey = configuration.preSharedKey;
+
+        if (configuration.allowedKeyManagement
+                .get(WifiConfiguration.KeyMgmt.WPA_PSK)
+                || ((preSharedKey != null) && (preSharedKey.length() > 0))) {
+
+            return new WifiNetwork(networkId, ssid, removeKey(preSharedKey),
+                    Security.WPA, hidden);
+
+        }
+
+        if ((configuration.wepKeys != null)
+                && (configuration.wepKeys.length > 0)
+                && (configuration.wepKeys[0] != null)) {
+
+            return new WifiNetwork(networkId, ssid,
+                    removeKey(configuration.wepKeys[0]), Security.WEP, hidden);
+
+        }
+
+        return new WifiNetwork(networkId, ssid, WifiSettings.EMPTY_STRING,
+                Security.NONE, hidden);
+
+    }
+
+    /**
+     * The {@link WifiManager}
+     */
+    private final WifiManager manager;
+
+    /**
+     * Initialize {@link #manager}
+     * 
+     * @param manager
+     *            the {@link WifiManager}
+     */
+    public AndroidWifiService(WifiManager manager) {
+
+        this.manager = manager;
+
+    }
+
+    /**
+     * Add a network using {@link WifiManager#addNetwork(WifiConfiguration)}
+     * 
+     * @param network
+     *            the network, whose network id is ignored
+     * 
+     * @return the new network id or -1 on failure
+     * 
+     * @see us.rader.wyfy.model.WifiService#addNetwork(us.rader.wyfy.model.WifiNetwork)
+     */
+    @Override
+    public int addNetwork(WifiNetwork network) {
+
+        return manager.addNetwork(createConfiguration(network.withNetworkId(-1)));
+
+    }
+
+    /**
+     * Call {@link WifiManager#enableNetwork(int, boolean)}
+     * 
+     * @param networkId
+     *            the network id
+     * 
+     * @param disableOthers
+     *            whether to disable all other configured networks
+     * 
+     * @return <code>true</code> if and only if successful
+     * 
+     * @see us.rader.wyfy.model.WifiService#enableNetwork(int, boolean)
+     */
+    @Override
+    public boolean enableNetwork(int networkId, boolean disableOthers) {
+
+        return manager.enableNetwork(networkId, disableOthers);
+
+    }
+
+    /**
+     * Get the network id from {@link WifiManager#getConnectionInfo()}
+     * 
+     * @return network id of the active connection or -1 if there is none
+     * 
+     * @see us.rader.wyfy.model.WifiService#getActiveNetworkId()
+     */
+    @Override
+    public int getActiveNetworkId() {
+
+        WifiInfo info = manager.getConnectionInfo();
+
+        if (info == null) {
+
+            return -1;
+
+        }
+
+        return info.getNetworkId();
+
+    }
+
+    /**
+     * Convert the result of {@link WifiManager#getConfiguredNetworks()}
+     * 
+     * @return the configured networks or <code>null</code> if they aren't
+     *         available
+     * 
+     * @see us.rader.wyfy.model.WifiService#getConfiguredNetworks()
+     */
+    @Override
+    public List<WifiNetwork> getConfiguredNetworks() {
+
+        List<WifiConfiguration> configurations = manager
+                .getConfiguredNetworks();
+
+        if (configurations == null) {
+
+            return null;
+
+        }
+
+        List<WifiNetwork> networks = new ArrayList<WifiNetwork>(
+                configurations.size());
+
+        for (WifiConfiguration configuration : configurations) {
+
+            if (configuration.SSID != null) {
+
+                networks.add(toNetwork(configuration));
+
+            }
+        }
+
+        return networks;
+
+    }
+
+    /**
+     * Call {@link WifiManager#saveConfiguration()}
+     * 
+     * @return <code>true</code> if and only if successful
+     * 
+     * @see us.rader.wyfy.model.WifiService#saveConfiguration()
+     */
+    @Override
+    public boolean saveConfiguration() {
+
+        return manager.saveConfiguration();
+
+    }
+
+    /**
+     * Replace a network using
+     * {@link WifiManager#updateNetwork(WifiConfiguration)}
+     * 
+     * @param network
+     *            the network, whose network id identifies the network to
+     *            replace
+     * 
+     * @return the network id or -1 on failure
+     * 
+     * @see us.rader.wyfy.model.WifiService#updateNetwork(us.rader.wyfy.model.WifiNetwork)
+     */
+    @Override
+    public int updateNetwork(WifiNetwork network) {
+
+        return manager.updateNetwork(createConfiguration(network));
+
+    }
+
+}
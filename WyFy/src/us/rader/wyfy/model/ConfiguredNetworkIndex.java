@@ -0,0 +1,223 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.wifi.WifiConfiguration;
+import android.net.wifi.WifiManager;
+
+/**
+ * Process-wide {@link NetworkIndex} of the networks configured on this device
+ * 
+ * <p>
+ * The index is kept current using the broadcasts the system sends when the
+ * configured networks change. The configured networks changed broadcast is not
+ * part of the public SDK, so its action and extras are referenced by value.
+ * When the broadcast doesn't describe a single change, or isn't delivered at
+ * all, the index is simply rebuilt the next time it is used
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class ConfiguredNetworkIndex {
+
+    /**
+     * Keep the index current as the configured networks change
+     */
+    private final class Receiver extends BroadcastReceiver {
+
+        /**
+         * Apply the change described by <code>intent</code>
+         * 
+         * @param context
+         *            the {@link Context}
+         * 
+         * @param intent
+         *            the broadcast {@link Intent}
+         * 
+         * @see android.content.BroadcastReceiver#onReceive(android.content.Context,
+         *      android.content.Intent)
+         */
+        @Override
+        public void onReceive(Context context, Intent intent) {
+
+            if (!ACTION_CONFIGURED_NETWORKS_CHANGED.equals(intent.getAction())
+                    || intent.getBooleanExtra(EXTRA_MULTIPLE_NETWORKS_CHANGED,
+                            true)) {
+
+                index.invalidate();
+                return;
+
+            }
+
+            WifiConfiguration configuration = intent
+                    .getParcelableExtra(EXTRA_WIFI_CONFIGURATION);
+
+            if (configuration == null) {
+
+                index.invalidate();
+                return;
+
+            }
+
+            switch (intent.getIntExtra(EXTRA_CHANGE_REASON, -1)) {
+
+                case CHANGE_REASON_ADDED:
+                case CHANGE_REASON_CONFIG_CHANGE:
+
+                    index.put(AndroidWifiService.toNetwork(configuration));
+                    break;
+
+                case CHANGE_REASON_REMOVED:
+
+                    index.remove(configuration.networkId);
+                    break;
+
+                default:
+
+                    index.invalidate();
+                    break;
+
+            }
+        }
+
+    }
+
+    /**
+     * Action of the broadcast sent when the configured networks change
+     * 
+     * <p>
+     * Equivalent to the hidden constant
+     * <code>WifiManager.CONFIGURED_NETWORKS_CHANGED_ACTION</code>
+     * </p>
+     */
+    private static final String           ACTION_CONFIGURED_NETWORKS_CHANGED = "android.net.wifi.CONFIGURED_NETWORKS_CHANGE"; //$NON-NLS-1$
+
+    /**
+     * {@link #EXTRA_CHANGE_REASON} value for an added network
+     */
+    private static final int              CHANGE_REASON_ADDED                = 0;
+
+    /**
+     * {@link #EXTRA_CHANGE_REASON} value for a modified network
+     */
+    private static final int              CHANGE_REASON_CONFIG_CHANGE        = 2;
+
+    /**
+     * {@link #EXTRA_CHANGE_REASON} value for a removed network
+     */
+    private static final int              CHANGE_REASON_REMOVED              = 1;
+
+    /**
+     * Extra holding the reason for a single network change
+     */
+    private static final String           EXTRA_CHANGE_REASON                = "changeReason";                                //$NON-NLS-1$
+
+    /**
+     * Boolean extra that is <code>true</code> when more than one network
+     * changed
+     */
+    private static final String           EXTRA_MULTIPLE_NETWORKS_CHANGED    = "multipleChanges";                             //$NON-NLS-1$
+
+    /**
+     * Extra holding the {@link WifiConfiguration} of a single changed network
+     */
+    private static final String           EXTRA_WIFI_CONFIGURATION           = "wifiConfiguration";                           //$NON-NLS-1$
+
+    /**
+     * The singleton instance
+     */
+    private static ConfiguredNetworkIndex singleton;
+
+    static {
+
+        singleton = new ConfiguredNetworkIndex();
+
+    }
+
+    /**
+     * @return {@link #singleton}
+     */
+    public static ConfiguredNetworkIndex getInstance() {
+
+        return singleton;
+
+    }
+
+    /**
+     * The index
+     */
+    private final NetworkIndex index;
+
+    /**
+     * The broadcast receiver, once {@link #register(Context)} is called
+     */
+    private Receiver           receiver;
+
+    /**
+     * Initialize {@link #index}
+     */
+    private ConfiguredNetworkIndex() {
+
+        index = new NetworkIndex();
+
+    }
+
+    /**
+     * @return the {@link NetworkIndex}, for use with an
+     *         {@link AndroidWifiService}
+     */
+    public NetworkIndex getIndex() {
+
+        return index;
+
+    }
+
+    /**
+     * Start keeping the index current using the configured networks
+     * broadcasts
+     * 
+     * <p>
+     * The receiver is registered with the application context so that it lives
+     * as long as the index does. Calling this more than once has no further
+     * effect
+     * </p>
+     * 
+     * @param context
+     *            any {@link Context} of this application
+     */
+    public synchronized void register(Context context) {
+
+        if (receiver != null) {
+
+            return;
+
+        }
+
+        receiver = new Receiver();
+        IntentFilter filter = new IntentFilter(
+                ACTION_CONFIGURED_NETWORKS_CHANGED);
+        filter.addAction(WifiManager.NETWORK_IDS_CHANGED_ACTION);
+        context.getApplicationContext().registerReceiver(receiver, filter);
+        // anything may have changed before the receiver was registered
+        index.invalidate();
+
+    }
+
+}
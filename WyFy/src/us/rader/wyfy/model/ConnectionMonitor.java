@@ -0,0 +1,643 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.NetworkInfo;
+import android.net.wifi.SupplicantState;
+import android.net.wifi.WifiInfo;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Track a single connection attempt until the device has actually connected to
+ * the requested network, authentication fails or a timeout expires
+ * 
+ * <p>
+ * <code>WifiManager.enableNetwork()</code> returns as soon as the request has
+ * been accepted, long before the device associates with the access point and
+ * obtains an IP address. This listens to the supplicant state and network state
+ * broadcasts to resolve the real outcome, measuring the time from
+ * {@link #start()} to association and to having an IP address. Every resolved
+ * attempt is logged along with the access point's BSSID so that slow tags and
+ * access points can be identified
+ * </p>
+ * 
+ * <p>
+ * Usage: call {@link #start()} in the UI thread before enabling the network so
+ * that no broadcasts are missed, then pass the result of enabling it to
+ * {@link #onEnabled(ConnectionOutcome)}. The {@link Listener} is notified, in
+ * the UI thread, exactly once after both have happened, unless
+ * {@link #cancel()} is called first
+ * </p>
+ * 
+ * <p>
+ * Both broadcasts are sticky, so the last one sent before {@link #start()} is
+ * replayed as soon as the receiver is registered. Such replays, and any
+ * broadcast received before the network has been enabled, describe some
+ * earlier state of the device and are ignored. In case the device connects
+ * before {@link #onEnabled(ConnectionOutcome)} is called, the current
+ * connection is checked at that point
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class ConnectionMonitor {
+
+    /**
+     * Callback interface for {@link ConnectionMonitor}
+     * 
+     * @author Kirk
+     */
+    public interface Listener {
+
+        /**
+         * Notification that the connection attempt has been resolved
+         * 
+         * @param monitor
+         *            the {@link ConnectionMonitor}
+         */
+        void onConnectionResolved(ConnectionMonitor monitor);
+
+    }
+
+    /**
+     * Outcome of a connection attempt
+     * 
+     * @author Kirk
+     */
+    public enum Result {
+
+        /**
+         * The supplicant reported an authentication error
+         */
+        AUTHENTICATION_FAILED,
+
+        /**
+         * Connected to the requested network and obtained an IP address
+         */
+        CONNECTED,
+
+        /**
+         * <code>WifiManager</code> refused to add or enable the network
+         */
+        FAILED,
+
+        /**
+         * Not connected before the timeout expired
+         */
+        TIMED_OUT;
+
+    }
+
+    /**
+     * Broadcast receiver for supplicant and network state changes
+     */
+    private final class Receiver extends BroadcastReceiver {
+
+        /**
+         * Dispatch the broadcast
+         * 
+         * @param context
+         *            the {@link Context}
+         * 
+         * @param intent
+         *            the broadcast {@link Intent}
+         * 
+         * @see android.content.BroadcastReceiver#onReceive(android.content.Context,
+         *      android.content.Intent)
+         */
+        @Override
+        public void onReceive(Context context, Intent intent) {
+
+            if (isInitialStickyBroadcast() || (enableOutcome == null)) {
+
+                return;
+
+            }
+
+            if (WifiManager.SUPPLICANT_STATE_CHANGED_ACTION.equals(intent
+                    .getAction())) {
+
+                onSupplicantStateChanged(intent);
+
+            } else {
+
+                onNetworkStateChanged(intent);
+
+            }
+        }
+
+    }
+
+    /**
+     * Double-quote
+     */
+    private static final String DOUBLE_QUOTE = "\""; //$NON-NLS-1$
+
+    /**
+     * BSSID of the access point, once connected
+     */
+    private String              bssid;
+
+    /**
+     * {@link Context} used to register {@link #receiver}
+     */
+    private final Context       context;
+
+    /**
+     * Result of enabling the network, once known
+     */
+    private ConnectionOutcome   enableOutcome;
+
+    /**
+     * {@link Handler} used for the timeout
+     */
+    private final Handler       handler;
+
+    /**
+     * The listener to notify
+     */
+    private final Listener      listener;
+
+    /**
+     * {@link WifiManager}
+     */
+    private final WifiManager   manager;
+
+    /**
+     * Set once {@link #listener} has been notified
+     */
+    private boolean             notified;
+
+    /**
+     * The broadcast receiver, while registered
+     */
+    private Receiver            receiver;
+
+    /**
+     * The outcome, once resolved
+     */
+    private Result              result;
+
+    /**
+     * The SSID to which we are connecting
+     */
+    private final String        ssid;
+
+    /**
+     * Time at which {@link #start()} was called
+     */
+    private long                startTime;
+
+    /**
+     * Milliseconds from {@link #start()} until associated, or -1
+     */
+    private long                timeToAssociate;
+
+    /**
+     * Milliseconds from {@link #start()} until an IP address was obtained, or
+     * -1
+     */
+    private long                timeToIp;
+
+    /**
+     * Timeout, in milliseconds
+     */
+    private final long          timeoutMillis;
+
+    /**
+     * Resolve as {@link Result#TIMED_OUT}
+     */
+    private final Runnable      timeoutTask;
+
+    /**
+     * Initialize all fields
+     * 
+     * <p>
+     * This must be called in the UI thread
+     * </p>
+     * 
+     * @param context
+     *            any {@link Context} of this application
+     * 
+     * @param manager
+     *            {@link WifiManager}
+     * 
+     * @param ssid
+     *            the SSID to which we are connecting
+     * 
+     * @param timeoutMillis
+     *            how long to wait for the connection, in milliseconds
+     * 
+     * @param listener
+     *            the {@link Listener} to notify
+     */
+    public ConnectionMonitor(Context context, WifiManager manager, String ssid,
+            long timeoutMillis, Listener listener) {
+
+        this.context = context.getApplicationContext();
+        this.manager = manager;
+        this.ssid = ssid;
+        this.timeoutMillis = timeoutMillis;
+        this.listener = listener;
+        handler = new Handler();
+        timeToAssociate = -1;
+        timeToIp = -1;
+        timeoutTask = new Runnable() {
+
+            @Override
+            public void run() {
+
+                resolve(Result.TIMED_OUT);
+
+            }
+
+        };
+
+    }
+
+    /**
+     * Stop listening without notifying {@link #listener}
+     * 
+     * <p>
+     * Call this when the listener can no longer handle the outcome, e.g.
+     * because its <code>Activity</code> is being destroyed. This must be
+     * called in the UI thread
+     * </p>
+     */
+    public void cancel() {
+
+        notified = true;
+        stop();
+
+    }
+
+    /**
+     * @return BSSID of the access point or <code>null</code> if not connected
+     */
+    public String getBssid() {
+
+        return bssid;
+
+    }
+
+    /**
+     * @return result of enabling the network
+     */
+    public ConnectionOutcome getEnableOutcome() {
+
+        return enableOutcome;
+
+    }
+
+    /**
+     * @return the outcome or <code>null</code> if not yet resolved
+     */
+    public Result getResult() {
+
+        return result;
+
+    }
+
+    /**
+     * @return the SSID to which we are connecting
+     */
+    public String getSsid() {
+
+        return ssid;
+
+    }
+
+    /**
+     * @return milliseconds until associated or -1 if never associated
+     */
+    public long getTimeToAssociate() {
+
+        return timeToAssociate;
+
+    }
+
+    /**
+     * @return milliseconds until an IP address was obtained or -1 if never
+     *         connected
+     */
+    public long getTimeToIp() {
+
+        return timeToIp;
+
+    }
+
+    /**
+     * @return timeout, in milliseconds
+     */
+    public long getTimeoutMillis() {
+
+        return timeoutMillis;
+
+    }
+
+    /**
+     * Record the result of enabling the network
+     * 
+     * <p>
+     * This must be called in the UI thread
+     * </p>
+     * 
+     * @param outcome
+     *            value returned by
+     *            {@link WifiSettingsSnapshot#connect(WifiManager)}
+     */
+    public void onEnabled(ConnectionOutcome outcome) {
+
+        enableOutcome = outcome;
+
+        if (outcome == ConnectionOutcome.FAILED) {
+
+            resolve(Result.FAILED);
+
+        } else {
+
+            checkConnected();
+
+        }
+
+        notifyIfResolved();
+
+    }
+
+    /**
+     * Start listening for broadcasts and start the timeout
+     * 
+     * <p>
+     * This must be called in the UI thread
+     * </p>
+     */
+    public void start() {
+
+        startTime = SystemClock.elapsedRealtime();
+        receiver = new Receiver();
+        IntentFilter filter = new IntentFilter(
+                WifiManager.SUPPLICANT_STATE_CHANGED_ACTION);
+        filter.addAction(WifiManager.NETWORK_STATE_CHANGED_ACTION);
+        context.registerReceiver(receiver, filter);
+        handler.postDelayed(timeoutTask, timeoutMillis);
+
+    }
+
+    /**
+     * Return a summary of the connection attempt
+     * 
+     * @return summary string
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format(
+                "ssid=%s bssid=%s enable=%s result=%s associate=%d ms ip=%d ms", //$NON-NLS-1$
+                ssid, bssid, enableOutcome, result, timeToAssociate, timeToIp);
+
+    }
+
+    /**
+     * Resolve as {@link Result#CONNECTED} if the device is already connected
+     * to the requested network
+     * 
+     * <p>
+     * This covers broadcasts that were ignored because they arrived after the
+     * network was enabled but before {@link #onEnabled(ConnectionOutcome)}
+     * was called
+     * </p>
+     */
+    private void checkConnected() {
+
+        if (result != null) {
+
+            return;
+
+        }
+
+        WifiInfo info = manager.getConnectionInfo();
+
+        if ((info == null)
+                || (info.getSupplicantState() != SupplicantState.COMPLETED)
+                || (info.getIpAddress() == 0) || !isTarget(info, false)) {
+
+            return;
+
+        }
+
+        onConnected(info);
+
+    }
+
+    /**
+     * Elapsed time since {@link #start()}
+     * 
+     * @return milliseconds
+     */
+    private long elapsed() {
+
+        return SystemClock.elapsedRealtime() - startTime;
+
+    }
+
+    /**
+     * Test whether the current connection info refers to the network to which
+     * we are connecting
+     * 
+     * <p>
+     * Depending on the platform version, <code>WifiInfo.getSSID()</code> may
+     * or may not wrap the SSID in double-quotes
+     * </p>
+     * 
+     * @param info
+     *            the {@link WifiInfo} or <code>null</code>
+     * 
+     * @param unknown
+     *            value to return if the SSID isn't known
+     * 
+     * @return <code>true</code> if and only if <code>info</code> refers to
+     *         {@link #ssid}
+     */
+    private boolean isTarget(WifiInfo info, boolean unknown) {
+
+        String currentSsid = (info == null) ? null : info.getSSID();
+
+        if (currentSsid == null) {
+
+            return unknown;
+
+        }
+
+        return currentSsid.equals(ssid)
+                || currentSsid.equals(DOUBLE_QUOTE + ssid + DOUBLE_QUOTE);
+
+    }
+
+    /**
+     * Notify {@link #listener} once both the result of enabling the network
+     * and the outcome are known
+     */
+    private void notifyIfResolved() {
+
+        if (notified || (result == null) || (enableOutcome == null)) {
+
+            return;
+
+        }
+
+        notified = true;
+        Log.i(getClass().getName(), toString());
+        listener.onConnectionResolved(this);
+
+    }
+
+    /**
+     * Record the connection times and resolve as {@link Result#CONNECTED}
+     * 
+     * @param info
+     *            the {@link WifiInfo} of the connection
+     */
+    private void onConnected(WifiInfo info) {
+
+        long elapsed = elapsed();
+        timeToIp = elapsed;
+
+        if (timeToAssociate < 0) {
+
+            timeToAssociate = elapsed;
+
+        }
+
+        bssid = info.getBSSID();
+        resolve(Result.CONNECTED);
+
+    }
+
+    /**
+     * Handle <code>WifiManager.NETWORK_STATE_CHANGED_ACTION</code>
+     * 
+     * @param intent
+     *            the broadcast {@link Intent}
+     */
+    private void onNetworkStateChanged(Intent intent) {
+
+        NetworkInfo networkInfo = intent
+                .getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+
+        if ((networkInfo == null) || !networkInfo.isConnected()) {
+
+            return;
+
+        }
+
+        WifiInfo info = manager.getConnectionInfo();
+
+        if (!isTarget(info, false)) {
+
+            return;
+
+        }
+
+        onConnected(info);
+
+    }
+
+    /**
+     * Handle <code>WifiManager.SUPPLICANT_STATE_CHANGED_ACTION</code>
+     * 
+     * @param intent
+     *            the broadcast {@link Intent}
+     */
+    private void onSupplicantStateChanged(Intent intent) {
+
+        int error = intent.getIntExtra(WifiManager.EXTRA_SUPPLICANT_ERROR, 0);
+
+        if ((error == WifiManager.ERROR_AUTHENTICATING)
+                && isTarget(manager.getConnectionInfo(), true)) {
+
+            resolve(Result.AUTHENTICATION_FAILED);
+            return;
+
+        }
+
+        if (timeToAssociate >= 0) {
+
+            return;
+
+        }
+
+        SupplicantState state = intent
+                .getParcelableExtra(WifiManager.EXTRA_NEW_STATE);
+
+        if (((state == SupplicantState.ASSOCIATED)
+                || (state == SupplicantState.COMPLETED))
+                && isTarget(manager.getConnectionInfo(), true)) {
+
+            timeToAssociate = elapsed();
+
+        }
+    }
+
+    /**
+     * Record the outcome, stop listening and notify {@link #listener} if the
+     * result of enabling the network is already known
+     * 
+     * <p>
+     * Only the first outcome counts
+     * </p>
+     * 
+     * @param outcome
+     *            the outcome
+     */
+    private void resolve(Result outcome) {
+
+        if (result != null) {
+
+            return;
+
+        }
+
+        result = outcome;
+        stop();
+        notifyIfResolved();
+
+    }
+
+    /**
+     * Cancel the timeout and unregister {@link #receiver}
+     */
+    private void stop() {
+
+        handler.removeCallbacks(timeoutTask);
+
+        if (receiver != null) {
+
+            context.unregisterReceiver(receiver);
+            receiver = null;
+
+        }
+    }
+
+}
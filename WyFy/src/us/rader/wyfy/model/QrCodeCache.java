@@ -0,0 +1,367 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+import com.google.zxing.WriterException;
+
+/**
+ * Process-wide cache of rendered QR code {@link Bitmap} instances
+ * 
+ * <p>
+ * Entries are keyed by the encoded string, the colors and the size so that
+ * sharing the same QR code more than once doesn't encode and rasterize it
+ * again. The cache is bounded by the total number of bytes used by the cached
+ * {@link Bitmap} instances
+ * </p>
+ * 
+ * <p>
+ * Note that cached {@link Bitmap} instances are shared, so callers must not
+ * modify or recycle them
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class QrCodeCache {
+
+    /**
+     * Cache key
+     */
+    private static final class Key {
+
+        /**
+         * Background color
+         */
+        private final int    backgroundColor;
+
+        /**
+         * The encoded string
+         */
+        private final String contents;
+
+        /**
+         * Foreground color
+         */
+        private final int    foregroundColor;
+
+        /**
+         * Bitmap size
+         */
+        private final int    size;
+
+        /**
+         * Initialize all fields
+         * 
+         * @param contents
+         *            the encoded string
+         * 
+         * @param foregroundColor
+         *            foreground color
+         * 
+         * @param backgroundColor
+         *            background color
+         * 
+         * @param size
+         *            bitmap size
+         */
+        public Key(String contents, int foregroundColor, int backgroundColor,
+                int size) {
+
+            this.contents = contents;
+            this.foregroundColor = foregroundColor;
+            this.backgroundColor = backgroundColor;
+            this.size = size;
+
+        }
+
+        /**
+         * Compare all fields
+         * 
+         * @param other
+         *            the object to compare
+         * 
+         * @return <code>true</code> if and only if <code>other</code> is an
+         *         equivalent {@link Key}
+         * 
+         * @see java.lang.Object#equals(java.lang.Object)
+         */
+        @Override
+        public boolean equals(Object other) {
+
+            if (this == other) {
+
+                return true;
+
+            }
+
+            if (!(other instanceof Key)) {
+
+                return false;
+
+            }
+
+            Key key = (Key) other;
+            return (size == key.size)
+                    && (foregroundColor == key.foregroundColor)
+                    && (backgroundColor == key.backgroundColor)
+                    && contents.equals(key.contents);
+
+        }
+
+        /**
+         * Combine the hash codes of all fields
+         * 
+         * @return hash code
+         * 
+         * @see java.lang.Object#hashCode()
+         */
+        @Override
+        public int hashCode() {
+
+            int hash = contents.hashCode();
+            hash = (31 * hash) + foregroundColor;
+            hash = (31 * hash) + backgroundColor;
+            hash = (31 * hash) + size;
+            return hash;
+
+        }
+
+    }
+
+    /**
+     * Fraction of the maximum heap size to use for cached bitmaps
+     */
+    private static final int   HEAP_FRACTION = 8;
+
+    /**
+     * The singleton instance
+     */
+    private static QrCodeCache singleton;
+
+    static {
+
+        singleton = new QrCodeCache(
+                (int) (Runtime.getRuntime().maxMemory() / HEAP_FRACTION));
+
+    }
+
+    /**
+     * @return {@link #singleton}
+     */
+    public static QrCodeCache getInstance() {
+
+        return singleton;
+
+    }
+
+    /**
+     * The underlying {@link LruCache}, sized in bytes
+     */
+    private final LruCache<Key, Bitmap> cache;
+
+    /**
+     * Number of entries removed by {@link #trimToSize(int)}, which
+     * {@link LruCache#evictionCount()} doesn't count
+     */
+    private int                         trimmedCount;
+
+    /**
+     * Initialize {@link #cache}
+     * 
+     * @param maxBytes
+     *            maximum number of bytes to use for cached {@link Bitmap}
+     *            instances
+     */
+    private QrCodeCache(int maxBytes) {
+
+        cache = new LruCache<Key, Bitmap>(maxBytes) {
+
+            @Override
+            protected int sizeOf(Key key, Bitmap bitmap) {
+
+                return bitmap.getRowBytes() * bitmap.getHeight();
+
+            }
+
+        };
+
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+
+        cache.evictAll();
+
+    }
+
+    /**
+     * @return the number of entries that have been evicted to stay within the
+     *         size limit or released by {@link #trimMemory(int)}
+     */
+    public synchronized int getEvictionCount() {
+
+        return cache.evictionCount() + trimmedCount;
+
+    }
+
+    /**
+     * @return the number of requests satisfied by a cached entry
+     */
+    public int getHitCount() {
+
+        return cache.hitCount();
+
+    }
+
+    /**
+     * @return the number of requests that required rendering a new
+     *         {@link Bitmap}
+     */
+    public int getMissCount() {
+
+        return cache.missCount();
+
+    }
+
+    /**
+     * @return the number of entries released by {@link #trimMemory(int)}
+     *         short of clearing the cache, which are included in
+     *         {@link #getEvictionCount()}
+     */
+    public synchronized int getTrimmedCount() {
+
+        return trimmedCount;
+
+    }
+
+    /**
+     * Return the cached QR code {@link Bitmap} for the given parameters,
+     * rendering and caching it first if necessary
+     * 
+     * @param contents
+     *            the string to encode
+     * 
+     * @param foregroundColor
+     *            foreground color
+     * 
+     * @param backgroundColor
+     *            background color
+     * 
+     * @param size
+     *            size of the QR code bitmap
+     * 
+     * @return QR code {@link Bitmap}
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     * 
+     * @see QrCodeRasterizer#encode(String, int, int, int)
+     */
+    public Bitmap getQrCode(String contents, int foregroundColor,
+            int backgroundColor, int size) throws WriterException {
+
+        Key key = new Key(contents, foregroundColor, backgroundColor, size);
+        Bitmap bitmap = cache.get(key);
+
+        if (bitmap == null) {
+
+            bitmap = QrCodeRasterizer.encode(contents, foregroundColor,
+                    backgroundColor, size);
+            cache.put(key, bitmap);
+
+        }
+
+        return bitmap;
+
+    }
+
+    /**
+     * Return a summary of the cache statistics, for logging
+     * 
+     * @return summary string
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format(
+                "QrCodeCache[bytes=%d/%d, hits=%d, misses=%d, evictions=%d, trimmed=%d]", //$NON-NLS-1$
+                cache.size(), cache.maxSize(), getHitCount(), getMissCount(),
+                getEvictionCount(), getTrimmedCount());
+
+    }
+
+    /**
+     * Release cached entries in response to
+     * {@link ComponentCallbacks2#onTrimMemory(int)}
+     * 
+     * @param level
+     *            the trim level passed to
+     *            {@link ComponentCallbacks2#onTrimMemory(int)}
+     */
+    public void trimMemory(int level) {
+
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+
+            cache.evictAll();
+
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+
+            trimToSize(cache.maxSize() / 2);
+
+        }
+    }
+
+    /**
+     * Evict least-recently used entries until the total size is no more than
+     * <code>maxSize</code>
+     * 
+     * <p>
+     * {@link LruCache#trimToSize(int)} isn't public in all versions of the
+     * support library, so this walks {@link LruCache#snapshot()}, which is
+     * ordered from least to most recently used. Entries removed this way
+     * aren't counted by {@link LruCache#evictionCount()}, so they are counted
+     * in {@link #trimmedCount}
+     * </p>
+     * 
+     * @param maxSize
+     *            the target size, in bytes
+     */
+    private synchronized void trimToSize(int maxSize) {
+
+        for (Key key : cache.snapshot().keySet()) {
+
+            if (cache.size() <= maxSize) {
+
+                break;
+
+            }
+
+            if (cache.remove(key) != null) {
+
+                ++trimmedCount;
+
+            }
+        }
+    }
+
+}
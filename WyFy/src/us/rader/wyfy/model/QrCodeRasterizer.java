@@ -0,0 +1,148 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * Encode QR codes as module matrices and convert them to {@link Bitmap} images
+ * 
+ * <p>
+ * The encoding itself is done by {@link QrCodeEncoder}, which has no
+ * dependencies on the Android SDK
+ * </p>
+ * 
+ * <p>
+ * A QR code module matrix is a {@link BitMatrix} with exactly one bit per QR
+ * module, including the quiet zone, so it is tiny compared to a
+ * full-resolution {@link Bitmap}. Only code that actually needs pixels, e.g.
+ * to share the QR code as an image file, should rasterize it. When it does,
+ * each module row is expanded into a reusable scanline once and copied into
+ * the {@link Bitmap} for every pixel row it covers using
+ * {@link Bitmap#setPixels(int[], int, int, int, int, int, int)}, rather than
+ * calling {@link Bitmap#setPixel(int, int, int)} once per pixel
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class QrCodeRasterizer {
+
+    /**
+     * Create the QR code {@link Bitmap} for the given <code>contents</code>
+     * 
+     * @param contents
+     *            the string to encode
+     * 
+     * @param foregroundColor
+     *            foreground color
+     * 
+     * @param backgroundColor
+     *            background color
+     * 
+     * @param size
+     *            size of the QR code bitmap to create
+     * 
+     * @return QR code {@link Bitmap}
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     * 
+     * @see QrCodeEncoder#encodeModules(String)
+     * @see #rasterize(BitMatrix, int, int, int)
+     */
+    public static Bitmap encode(String contents, int foregroundColor,
+            int backgroundColor, int size) throws WriterException {
+
+        return rasterize(QrCodeEncoder.encodeModules(contents),
+                foregroundColor, backgroundColor, size);
+
+    }
+
+    /**
+     * Create a <code>size</code> by <code>size</code> {@link Bitmap} from the
+     * given module matrix
+     * 
+     * <p>
+     * The modules are scaled by the largest whole number that fits and centered
+     * in the same way as {@link QRCodeWriter} does. If <code>size</code> is
+     * smaller than the module matrix, the {@link Bitmap} will have one pixel
+     * per module
+     * </p>
+     * 
+     * @param modules
+     *            the module matrix
+     * 
+     * @param foregroundColor
+     *            foreground color
+     * 
+     * @param backgroundColor
+     *            background color
+     * 
+     * @param size
+     *            requested size of the {@link Bitmap}
+     * 
+     * @return {@link Bitmap}
+     * 
+     * @see QrCodeEncoder#expandRow(BitArray, int, int, int, int[], int,
+     *      int)
+     */
+    public static Bitmap rasterize(BitMatrix modules, int foregroundColor,
+            int backgroundColor, int size) {
+
+        int moduleCount = modules.getWidth();
+        int outputSize = Math.max(size, moduleCount);
+        int scale = outputSize / moduleCount;
+        int padding = (outputSize - (moduleCount * scale)) / 2;
+        Bitmap bitmap = Bitmap.createBitmap(outputSize, outputSize,
+                Bitmap.Config.ARGB_8888);
+        bitmap.eraseColor(backgroundColor);
+        int[] scanline = new int[outputSize];
+        BitArray row = new BitArray(moduleCount);
+
+        for (int y = 0; y < modules.getHeight(); ++y) {
+
+            row = modules.getRow(y, row);
+            QrCodeEncoder.expandRow(row, moduleCount, scale, padding,
+                    scanline, foregroundColor, backgroundColor);
+            int top = padding + (y * scale);
+
+            for (int repeat = 0; repeat < scale; ++repeat) {
+
+                bitmap.setPixels(scanline, 0, outputSize, 0, top + repeat,
+                        outputSize, 1);
+
+            }
+        }
+
+        return bitmap;
+
+    }
+
+    /**
+     * Prevent casual instantiation of utility class
+     */
+    private QrCodeRasterizer() {
+
+        // nothing to do here
+
+    }
+
+}
@@ -16,101 +16,47 @@
 package us.rader.wyfy.model;
 
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.Serializable;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 import us.rader.wyfy.db.WiFiSettingsContract.WifiSettingsEntry;
 import android.content.ContentValues;
 import android.graphics.Bitmap;
 import android.net.Uri;
-import android.net.wifi.WifiConfiguration;
-import android.net.wifi.WifiInfo;
 import android.net.wifi.WifiManager;
 import android.util.Log;
 
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.EncodeHintType;
 import com.google.zxing.WriterException;
-import com.google.zxing.common.BitMatrix;
-import com.google.zxing.qrcode.QRCodeWriter;
-import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
 
 /**
  * Model class for Android WIFI settings
  * 
+ * <p>
+ * The state is held as an immutable {@link WifiSettingsSnapshot} in an
+ * {@link AtomicReference}. Each setter atomically replaces the current snapshot
+ * with a new one whose version number is one greater, unless the value didn't
+ * actually change. Work done in worker threads should capture a snapshot using
+ * {@link #getSnapshot()} in the UI thread rather than reading this instance's
+ * getters piecemeal
+ * </p>
+ * 
  * @author Kirk
  */
 public final class WifiSettings implements Serializable {
 
-    /**
-     * Enumerated type returned by {@link WifiSettings#connect(WifiManager)}
-     */
-    public enum ConnectionOutcome {
-
-        /**
-         * Added and enabled
-         */
-        ADDED,
-
-        /**
-         * Already existed, so just enabled
-         */
-        ENABLED,
-
-        /**
-         * Failed
-         */
-        FAILED;
-
-        /**
-         * Serialization version number
-         */
-        private static final long serialVersionUID = 1L;
-
-    }
-
-    /**
-     * Enumeration of supported wifi security protocols
-     */
-    public enum Security {
-
-        /**
-         * No security
-         */
-        NONE,
-
-        /**
-         * WEP security
-         */
-        WEP,
-
-        /**
-         * WPA / WPA2 security
-         */
-        WPA;
-
-        /**
-         * Serialization version number
-         */
-        private static final long serialVersionUID = 1L;
-
-    }
-
     /**
      * The empty string
      */
     public static final String  EMPTY_STRING        = "";     //$NON-NLS-1$
 
     /**
-     * Double-quote
+     * Size of the buffer used by {@link #parse(Reader)}
      */
-    private static final String DOUBLE_QUOTE        = "\"";   //$NON-NLS-1$
+    private static final int    READ_BUFFER_SIZE    = 256;
 
     /**
      * Serialization version number
@@ -122,21 +68,6 @@ public final class WifiSettings implements Serializable {
      */
     private static WifiSettings singleton;
 
-    /**
-     * Scheme for WIFI: URI's
-     */
-    private static final String URI_SCHEME          = "WIFI:"; //$NON-NLS-1$
-
-    /**
-     * T: parameter value for WEP security protocol
-     */
-    private static final String WEP_PARAMETER_VALUE = "WEP";  //$NON-NLS-1$
-
-    /**
-     * T: parameter value for WPA security protocol
-     */
-    private static final String WPA_PARAMETER_VALUE = "WPA";  //$NON-NLS-1$
-
     static {
 
         singleton = new WifiSettings();
@@ -153,330 +84,36 @@ public final class WifiSettings implements Serializable {
     }
 
     /**
-     * Add the specified entry to the list of configured wi fi networks
-     * 
-     * TODO: this makes a lot of assumptions based on a small sampling of actual
-     * wi fi configurations -- need more research and testing!
-     * 
-     * @param manager
-     *            the {@link WifiManager}
-     * 
-     * @param wrappedSsid
-     *            the SSID string wrapped in double-quotes
-     * 
-     * @param password
-     *            the password string
-     * 
-     * @param securityProtcol
-     *            the {@link Security} value
-     * 
-     * @return the network id or -1 on failure
-     * 
-     * @see #initialize(WifiConfiguration)
-     */
-    private static int addNetwork(WifiManager manager, String wrappedSsid,
-            String password, Security securityProtcol) {
-
-        WifiConfiguration config = new WifiConfiguration();
-        config.SSID = wrappedSsid;
-        config.allowedKeyManagement.clear();
-        config.allowedAuthAlgorithms.set(WifiConfiguration.KeyMgmt.NONE);
-        config.allowedGroupCiphers.clear();
-
-        switch (securityProtcol) {
-
-            case NONE:
-
-                break;
-
-            case WEP:
-
-                config.wepKeys = new String[] { addQuotes(password) };
-
-                if (password.length() == 10) {
-
-                    config.allowedGroupCiphers
-                            .set(WifiConfiguration.GroupCipher.WEP40);
-
-                } else {
-
-                    config.allowedAuthAlgorithms
-                            .set(WifiConfiguration.GroupCipher.WEP104);
-
-                }
-
-                break;
-
-            case WPA:
-
-                config.preSharedKey = addQuotes(password);
-                config.allowedGroupCiphers
-                        .set(WifiConfiguration.GroupCipher.CCMP);
-
-                break;
-
-            default:
-
-                throw new IllegalStateException(
-                        "Illegal security constant " + securityProtcol); //$NON-NLS-1$
-
-        }
-
-        return manager.addNetwork(config);
-
-    }
-
-    /**
-     * Wrap the given <code>string</code> in double-quotes
-     * 
-     * @param string
-     *            the string
-     * 
-     * @return the wrapped string
+     * The current state
      */
-    private static String addQuotes(String string) {
-
-        return DOUBLE_QUOTE + string + DOUBLE_QUOTE;
-
-    }
-
-    /**
-     * Parse a token that begins with ':' and ends with ';'
-     * 
-     * <p>
-     * This is used to parse the parameter values from a WIFI: URI, e.g.
-     * S:ssid;P:password; etc.
-     * </p>
-     * 
-     * <p>
-     * Throws {@link IllegalArgumentException} if the next character in the
-     * stream isn't ':' or if end of input is reached without finding ';'.
-     * Otherwise, it returns the (possibly empty) string containing all of the
-     * characters (if any) after the initial ':' and before the next ';'
-     * </p>
-     * 
-     * <p>
-     * TODO: this will not work correctly if the parameter value itself contains
-     * a literal ';' or white-space characters at the beginning or end -- need
-     * to research the "official" syntax (hard to do for such an ad hoc format)
-     * </p>
-     * 
-     * @param reader
-     *            {@link BufferedReader}
-     * 
-     * @return the parsed token, i.e. everything after the initial ':' and
-     *         before the next ';'
-     * 
-     * @throws IOException
-     *             if an I/O error occurs
-     * 
-     * @throws IllegalArgumentException
-     *             if the URI is ill-formed, i.e. the next character read from
-     *             the stream isn't ':' or end of input is reached without
-     *             finding ';'
-     */
-    private static String parseParameterValue(BufferedReader reader)
-            throws IOException {
-
-        int c = skipWhitespace(reader);
-
-        if (c == -1) {
-
-            throw new IllegalArgumentException("end of input when ':' expected"); //$NON-NLS-1$
-
-        }
-
-        if (c != ':') {
-
-            throw new IllegalArgumentException("':' expected"); //$NON-NLS-1$
-
-        }
-
-        StringBuffer buffer = new StringBuffer();
-
-        while ((c = reader.read()) != ';') {
-
-            if (c == -1) {
-
-                throw new IllegalArgumentException(
-                        "end of input when ';' expected"); //$NON-NLS-1$
-
-            }
-
-            buffer.append((char) c);
-
-        }
-
-        return buffer.toString().trim();
-
-    }
-
-    /**
-     * Remove the first and last character from the given string if they are
-     * double quotes
-     * 
-     * @param string
-     *            the string to unwrap
-     * 
-     * @return the unwrapped string
-     */
-    private static String removeQuotes(String string) {
-
-        if (string == null) {
-
-            return EMPTY_STRING;
-
-        }
-
-        if (string.startsWith(DOUBLE_QUOTE) && string.endsWith(DOUBLE_QUOTE)) {
-
-            return string.substring(1, string.length() - 1);
-
-        }
-
-        return string;
-
-    }
-
-    /**
-     * Return the next non-white-space character found in the given stream
-     * 
-     * Discards any white-space characters found and marks the position of the
-     * returned character for use by {@link BufferedReader#reset()}
-     * 
-     * @param reader
-     *            {@link BufferedReader}
-     * 
-     * @return the next non-white-space character or -1 if end of input is
-     *         reached
-     * 
-     * @throws IOException
-     *             if an I/O error occurs
-     */
-    private static int skipWhitespace(BufferedReader reader) throws IOException {
-
-        int c;
-
-        do {
-
-            reader.mark(1);
-            c = reader.read();
-
-            if (c == -1) {
-
-                return -1;
-
-            }
-
-        } while (Character.isWhitespace(c));
-
-        return c;
-
-    }
-
-    /**
-     * Convert a T: URI parameter's value to the corresponding {@link Security}
-     * constant
-     * 
-     * @param parameterValue
-     *            the token
-     * 
-     * @return {@link Security}
-     */
-    private static Security toSecurity(String parameterValue) {
-
-        if (WEP_PARAMETER_VALUE.equalsIgnoreCase(parameterValue)) {
-
-            return Security.WEP;
-
-        } else if (WPA_PARAMETER_VALUE.equalsIgnoreCase(parameterValue)) {
-
-            return Security.WPA;
-
-        } else {
-
-            return Security.NONE;
-
-        }
-    }
-
-    /**
-     * Hidden SSID
-     */
-    private boolean  hidden;
-
-    /**
-     * Password
-     */
-    private String   password;
-
-    /**
-     * Security protocol
-     */
-    private Security security;
-
-    /**
-     * SSID
-     */
-    private String   ssid;
+    private final AtomicReference<WifiSettingsSnapshot> current;
 
     /**
      * Initialize to default state
      */
     private WifiSettings() {
 
-        ssid = EMPTY_STRING;
-        password = EMPTY_STRING;
-        security = Security.NONE;
-        hidden = false;
+        current = new AtomicReference<WifiSettingsSnapshot>(
+                new WifiSettingsSnapshot(0, EMPTY_STRING, EMPTY_STRING,
+                        Security.NONE, false));
 
     }
 
     /**
-     * Activate the WIFI connection represented by this instance
+     * Activate the WIFI connection represented by the current state
      * 
      * This should <code>always</code> be invoked on a worker thread
      * 
      * @param manager
      *            {@link WifiManager}
      * 
-     * @return <code>true</code> if and only if the connection was successfully
-     *         enabled
+     * @return {@link ConnectionOutcome}
+     * 
+     * @see WifiSettingsSnapshot#connect(WifiManager)
      */
     public ConnectionOutcome connect(WifiManager manager) {
 
-        String wrappedSsid = addQuotes(ssid);
-
-        for (WifiConfiguration configuration : manager.getConfiguredNetworks()) {
-
-            if (configuration.SSID.equals(wrappedSsid)) {
-
-                if (manager.enableNetwork(configuration.networkId, false)) {
-
-                    return ConnectionOutcome.ENABLED;
-
-                }
-
-                return ConnectionOutcome.FAILED;
-
-            }
-        }
-
-        int networkId = addNetwork(manager, wrappedSsid, password, security);
-
-        if (networkId == -1) {
-
-            return ConnectionOutcome.FAILED;
-
-        }
-
-        if (manager.enableNetwork(networkId, false)) {
-
-            return ConnectionOutcome.ADDED;
-
-        }
-
-        return ConnectionOutcome.FAILED;
+        return getSnapshot().connect(manager);
 
     }
 
@@ -501,46 +138,31 @@ public final class WifiSettings implements Serializable {
      */
     public boolean getActiveConnection(WifiManager manager) {
 
-        WifiInfo info = manager.getConnectionInfo();
-
-        if (info != null) {
-
-            int activeId = info.getNetworkId();
+        WifiConnector connector = new WifiConnector(new AndroidWifiService(
+                manager), ConfiguredNetworkIndex.getInstance().getIndex());
+        WifiNetwork network = connector.getActiveNetwork();
 
-            if (activeId != -1) {
+        if (network == null) {
 
-                for (WifiConfiguration configuration : manager
-                        .getConfiguredNetworks()) {
-
-                    if (configuration.networkId == activeId) {
-
-                        return initialize(configuration);
+            return false;
 
-                    }
-                }
-            }
         }
 
-        return false;
+        return initialize(network);
 
     }
 
     /**
-     * Get a {@link ContentValues} to use to persist the state of this instance
+     * Get a {@link ContentValues} to use to persist the current state
      * 
      * @return {@link ContentValues}
      * 
+     * @see WifiSettingsSnapshot#getContentValues()
      * @see WifiSettings#update(ContentValues)
      */
     public ContentValues getContentValues() {
 
-        ContentValues values = new ContentValues();
-        values.put(WifiSettingsEntry.COLUMN_NAME_HIDDEN, isHidden());
-        values.put(WifiSettingsEntry.COLUMN_NAME_PASSWORD, getPassword());
-        values.put(WifiSettingsEntry.COLUMN_NAME_SECURITY, getSecurity()
-                .toString());
-        values.put(WifiSettingsEntry.COLUMN_NAME_SSID, getSsid());
-        return values;
+        return getSnapshot().getContentValues();
 
     }
 
@@ -549,12 +171,12 @@ public final class WifiSettings implements Serializable {
      */
     public String getPassword() {
 
-        return password;
+        return getSnapshot().getPassword();
 
     }
 
     /**
-     * Create the QR code {@link Bitmap}
+     * Get the QR code {@link Bitmap} for the current state
      * 
      * @param foregroundColor
      *            foreground color
@@ -569,39 +191,31 @@ public final class WifiSettings implements Serializable {
      * 
      * @throws WriterException
      *             if a zxing error occurs
+     * 
+     * @see WifiSettingsSnapshot#getQrCode(int, int, int)
      */
     public Bitmap getQrCode(int foregroundColor, int backgroundColor, int size)
             throws WriterException {
 
-        QRCodeWriter writer = new QRCodeWriter();
-        Map<EncodeHintType, Object> hints = new HashMap<EncodeHintType, Object>();
-        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
-        String uri = toString();
-        BitMatrix bitMatrix = writer.encode(uri, BarcodeFormat.QR_CODE, size,
-                size, hints);
-        Bitmap bitmap = Bitmap
-                .createBitmap(size, size, Bitmap.Config.ARGB_8888);
-
-        for (int y = 0; y < bitMatrix.getHeight(); ++y) {
+        return getSnapshot().getQrCode(foregroundColor, backgroundColor, size);
 
-            for (int x = 0; x < bitMatrix.getWidth(); ++x) {
-
-                bitmap.setPixel(x, y, (bitMatrix.get(x, y) ? foregroundColor
-                        : backgroundColor));
+    }
 
-            }
-        }
+    /**
+     * @return current value of security
+     */
+    public Security getSecurity() {
 
-        return bitmap;
+        return getSnapshot().getSecurity();
 
     }
 
     /**
-     * @return current value of security
+     * @return the current state
      */
-    public Security getSecurity() {
+    public WifiSettingsSnapshot getSnapshot() {
 
-        return security;
+        return current.get();
 
     }
 
@@ -610,7 +224,17 @@ public final class WifiSettings implements Serializable {
      */
     public String getSsid() {
 
-        return ssid;
+        return getSnapshot().getSsid();
+
+    }
+
+    /**
+     * @return the current version number, which is incremented every time the
+     *         state changes
+     */
+    public long getVersion() {
+
+        return getSnapshot().getVersion();
 
     }
 
@@ -619,16 +243,27 @@ public final class WifiSettings implements Serializable {
      */
     public boolean isHidden() {
 
-        return hidden;
+        return getSnapshot().isHidden();
 
     }
 
     /**
-     * Parse WIFI: URI from the given {@link Reader}
+     * Test whether the given snapshot is still the current state
      * 
-     * Note that this doesn't enforce any required parameters (i.e. S:) nor
-     * consistency rules (e.g. missing P: when T: isn't "nopass"), check for
-     * duplicate parameters etc.
+     * @param snapshot
+     *            {@link WifiSettingsSnapshot}
+     * 
+     * @return <code>true</code> if and only if no change has been made since
+     *         <code>snapshot</code> was captured
+     */
+    public boolean isCurrent(WifiSettingsSnapshot snapshot) {
+
+        return snapshot.getVersion() == getVersion();
+
+    }
+
+    /**
+     * Parse WIFI: URI from the given {@link BufferedReader}
      * 
      * @param reader
      *            {@link BufferedReader}
@@ -637,87 +272,47 @@ public final class WifiSettings implements Serializable {
      * 
      * @throws IOException
      *             if an I/O error occurs
+     * 
+     * @see #parse(Reader)
      */
     public boolean parse(BufferedReader reader) throws IOException {
 
-        try {
-
-            int c = skipWhitespace(reader);
-
-            if (c == -1) {
-
-                Log.w(getClass().getName(),
-                        "end of input reached while expecting WIFI: URI"); //$NON-NLS-1$
-                return false;
-
-            }
-
-            reader.reset();
-            char[] chars = new char[URI_SCHEME.length()];
-            int actual = reader.read(chars);
-            String prefix = new String(chars, 0, actual);
-
-            if (!URI_SCHEME.equalsIgnoreCase(prefix)) {
-
-                Log.w(getClass().getName(), "URI must start with '" //$NON-NLS-1$
-                        + URI_SCHEME + "' but found '" //$NON-NLS-1$
-                        + prefix + "'"); //$NON-NLS-1$
-                return false;
-
-            }
-
-            while ((c = skipWhitespace(reader)) != ';') {
-
-                if (c == -1) {
-
-                    return false;
-
-                }
-
-                char parameter = Character.toUpperCase((char) c);
-                String token = parseParameterValue(reader);
-
-                switch (parameter) {
-
-                    case 'S':
-
-                        setSsid(token);
-                        break;
-
-                    case 'P':
-
-                        setPassword(token);
-                        break;
-
-                    case 'H':
+        return parse((Reader) reader);
 
-                        setHidden(Boolean.parseBoolean(token));
-                        break;
-
-                    case 'T':
-
-                        setSecurity(toSecurity(token));
-                        break;
-
-                    default:
-
-                        Log.w(getClass().getName(),
-                                "Unrecognized URI parameter name '" //$NON-NLS-1$
-                                        + parameter + "'"); //$NON-NLS-1$
-                        return false;
+    }
 
-                }
-            }
+    /**
+     * Parse the given WIFI: URI
+     * 
+     * <p>
+     * This instance is updated if and only if the URI is successfully parsed.
+     * Parameters missing from the URI are set to their default values
+     * </p>
+     * 
+     * @param uri
+     *            URI string
+     * 
+     * @return <code>true</code> if and only if URI was successfully parsed
+     * 
+     * @see WifiUriParser#parse(CharSequence)
+     */
+    public boolean parse(CharSequence uri) {
 
-            return true;
+        WifiUriParser parser = new WifiUriParser();
+        WifiUriParser.Status status = parser.parse(uri);
 
-        } catch (IllegalArgumentException e) {
+        if (status != WifiUriParser.Status.OK) {
 
-            Log.w(getClass().getName(), "parse(BufferedReader)", e); //$NON-NLS-1$
+            Log.w(getClass().getName(), "error parsing WIFI: URI: " + status //$NON-NLS-1$
+                    + " at position " + parser.getErrorPosition()); //$NON-NLS-1$
             return false;
 
         }
 
+        set(parser.getSsid(), parser.getPassword(), parser.getSecurity(),
+                parser.isHidden());
+        return true;
+
     }
 
     /**
@@ -742,6 +337,11 @@ public final class WifiSettings implements Serializable {
     /**
      * Parse WIFI: URI from the given {@link Reader}
      * 
+     * <p>
+     * This reads the remaining contents of <code>reader</code> and passes them
+     * to {@link #parse(CharSequence)}
+     * </p>
+     * 
      * @param reader
      *            {@link Reader}
      * 
@@ -750,11 +350,21 @@ public final class WifiSettings implements Serializable {
      * @throws IOException
      *             if an I/O error occurs
      * 
-     * @see #parse(BufferedReader)
+     * @see #parse(CharSequence)
      */
     public boolean parse(Reader reader) throws IOException {
 
-        return parse(new BufferedReader(reader));
+        StringBuilder buffer = new StringBuilder();
+        char[] chars = new char[READ_BUFFER_SIZE];
+        int count;
+
+        while ((count = reader.read(chars)) != -1) {
+
+            buffer.append(chars, 0, count);
+
+        }
+
+        return parse(buffer);
 
     }
 
@@ -764,16 +374,13 @@ public final class WifiSettings implements Serializable {
      * @param uri
      *            URI string
      * 
-     * @throws IOException
-     *             if an I/O error occurs
-     * 
      * @return <code>true</code> if and only if URI was successfully parsed
      * 
-     * @see #parse(InputStream)
+     * @see #parse(CharSequence)
      */
-    public boolean parse(String uri) throws IOException {
+    public boolean parse(String uri) {
 
-        return parse(new ByteArrayInputStream(uri.getBytes("US-ASCII"))); //$NON-NLS-1$
+        return parse((CharSequence) uri);
 
     }
 
@@ -785,24 +392,56 @@ public final class WifiSettings implements Serializable {
      * 
      * @return <code>true</code> if and only if URI was successfully parsed
      * 
-     * @throws IOException
-     *             if an I/O error occurs
-     * 
      * @see #parse(String)
      */
-    public boolean parse(Uri uri) throws IOException {
+    public boolean parse(Uri uri) {
 
         return parse(uri.toString());
 
     }
 
+    /**
+     * Atomically replace all of the current values
+     * 
+     * @param ssid
+     *            new value for ssid
+     * 
+     * @param password
+     *            new value for password
+     * 
+     * @param security
+     *            new value for security
+     * 
+     * @param hidden
+     *            new value for hidden
+     */
+    public void set(String ssid, String password, Security security,
+            boolean hidden) {
+
+        WifiSettingsSnapshot snapshot;
+
+        do {
+
+            snapshot = getSnapshot();
+
+        } while (!replace(snapshot, ssid, password, security, hidden));
+
+    }
+
     /**
      * @param hidden
      *            new value for hidden
      */
     public void setHidden(boolean hidden) {
 
-        this.hidden = hidden;
+        WifiSettingsSnapshot snapshot;
+
+        do {
+
+            snapshot = getSnapshot();
+
+        } while (!replace(snapshot, snapshot.getSsid(),
+                snapshot.getPassword(), snapshot.getSecurity(), hidden));
 
     }
 
@@ -812,7 +451,14 @@ public final class WifiSettings implements Serializable {
      */
     public void setPassword(String password) {
 
-        this.password = password;
+        WifiSettingsSnapshot snapshot;
+
+        do {
+
+            snapshot = getSnapshot();
+
+        } while (!replace(snapshot, snapshot.getSsid(), password,
+                snapshot.getSecurity(), snapshot.isHidden()));
 
     }
 
@@ -822,7 +468,14 @@ public final class WifiSettings implements Serializable {
      */
     public void setSecurity(Security security) {
 
-        this.security = security;
+        WifiSettingsSnapshot snapshot;
+
+        do {
+
+            snapshot = getSnapshot();
+
+        } while (!replace(snapshot, snapshot.getSsid(),
+                snapshot.getPassword(), security, snapshot.isHidden()));
 
     }
 
@@ -832,53 +485,27 @@ public final class WifiSettings implements Serializable {
      */
     public void setSsid(String ssid) {
 
-        this.ssid = ssid;
+        WifiSettingsSnapshot snapshot;
+
+        do {
+
+            snapshot = getSnapshot();
+
+        } while (!replace(snapshot, ssid, snapshot.getPassword(),
+                snapshot.getSecurity(), snapshot.isHidden()));
 
     }
 
     /**
-     * Return the WIFI: URI for this instance
+     * Return the WIFI: URI for the current state
      * 
+     * @see WifiSettingsSnapshot#toString()
      * @see java.lang.Object#toString()
      */
     @Override
     public String toString() {
 
-        StringBuffer buffer = new StringBuffer(URI_SCHEME + "S:"); //$NON-NLS-1$
-        buffer.append(ssid);
-        buffer.append(';');
-
-        switch (security) {
-
-            case WEP:
-
-                buffer.append("T:WEP;P:"); //$NON-NLS-1$
-                buffer.append(password);
-                buffer.append(';');
-                break;
-
-            case WPA:
-
-                buffer.append("T:WPA;P:"); //$NON-NLS-1$
-                buffer.append(password);
-                buffer.append(';');
-                break;
-
-            default:
-
-                buffer.append("T:nopass;"); //$NON-NLS-1$
-                break;
-
-        }
-
-        if (hidden) {
-
-            buffer.append("H:true;"); //$NON-NLS-1$
-
-        }
-
-        buffer.append(';');
-        return buffer.toString();
+        return getSnapshot().toString();
 
     }
 
@@ -899,51 +526,62 @@ public final class WifiSettings implements Serializable {
                 values.getAsString(WifiSettingsEntry.COLUMN_NAME_SECURITY));
         boolean hidden = values
                 .getAsBoolean(WifiSettingsEntry.COLUMN_NAME_HIDDEN);
-        setSsid(ssid);
-        setPassword(password);
-        setSecurity(security);
-        setHidden(hidden);
+        set(ssid, password, security, hidden);
 
     }
 
     /**
-     * Initialize this instance from the given {@link WifiConfiguration}
+     * Initialize this instance from the given {@link WifiNetwork}
      * 
-     * TODO: crude implementation; research how this is supposed to work
-     * 
-     * @param configuration
-     *            {@link WifiConfiguration}
+     * @param network
+     *            {@link WifiNetwork}
      * 
      * @return <code>true</code> if and only if successful
      * 
-     * @see #addNetwork(WifiManager, String, String, Security)
+     * @see AndroidWifiService#toNetwork(android.net.wifi.WifiConfiguration)
      */
-    private boolean initialize(WifiConfiguration configuration) {
-
-        setSsid(removeQuotes(configuration.SSID));
-        setHidden(configuration.hiddenSSID);
+    private boolean initialize(WifiNetwork network) {
 
-        if ((configuration.preSharedKey != null)
-                && !EMPTY_STRING.equals(configuration.preSharedKey)) {
+        set(network.getSsid(), network.getPassword(), network.getSecurity(),
+                network.isHidden());
+        return true;
 
-            setSecurity(Security.WPA);
-            setPassword(removeQuotes(configuration.preSharedKey));
-            return true;
+    }
 
-        }
+    /**
+     * Replace <code>expected</code> with a new snapshot of the given values if
+     * it is still the current state
+     * 
+     * @param expected
+     *            the snapshot on which the new values are based
+     * 
+     * @param ssid
+     *            new value for ssid
+     * 
+     * @param password
+     *            new value for password
+     * 
+     * @param security
+     *            new value for security
+     * 
+     * @param hidden
+     *            new value for hidden
+     * 
+     * @return <code>true</code> if the state was replaced or already had the
+     *         given values, <code>false</code> if another thread changed the
+     *         state first
+     */
+    private boolean replace(WifiSettingsSnapshot expected, String ssid,
+            String password, Security security, boolean hidden) {
 
-        if ((configuration.wepKeys != null)
-                && (configuration.wepKeys.length > 0)) {
+        if (expected.hasSettings(ssid, password, security, hidden)) {
 
-            setSecurity(Security.WEP);
-            setPassword(removeQuotes(configuration.wepKeys[0]));
             return true;
 
         }
 
-        setSecurity(Security.NONE);
-        setPassword(EMPTY_STRING);
-        return true;
+        return current.compareAndSet(expected, new WifiSettingsSnapshot(
+                expected.getVersion() + 1, ssid, password, security, hidden));
 
     }
 
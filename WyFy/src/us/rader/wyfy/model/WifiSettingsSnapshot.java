@@ -0,0 +1,443 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import java.io.Serializable;
+
+import us.rader.wyfy.db.WiFiSettingsContract.WifiSettingsEntry;
+import us.rader.wyfy.nfc.NdefUriPayload;
+import android.content.ContentValues;
+import android.graphics.Bitmap;
+import android.net.wifi.WifiManager;
+
+import com.google.zxing.WriterException;
+
+/**
+ * Immutable, versioned copy of the state of the {@link WifiSettings} model
+ * 
+ * <p>
+ * Every change to the model replaces its current snapshot with a new one with
+ * the next version number, so code running in worker threads can use a
+ * snapshot captured in the UI thread without any locking and without seeing a
+ * mixture of old and new values. Comparing {@link #getVersion()} with
+ * {@link WifiSettings#getVersion()} tells whether a result computed from a
+ * snapshot is stale
+ * </p>
+ * 
+ * <p>
+ * The canonical encodings of a snapshot, i.e. its WIFI: URI, the US-ASCII
+ * bytes of the URI and the NDEF "U" record payload, are each computed lazily
+ * the first time they are requested and then re-used, so they are built at
+ * most once per change to the model. Two threads may occasionally both compute
+ * the same encoding, which is harmless since the results are identical
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class WifiSettingsSnapshot implements Serializable {
+
+    /**
+     * Serialization version number
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create a snapshot that doesn't belong to the {@link WifiSettings} model,
+     * e.g. for a row loaded from the database
+     * 
+     * <p>
+     * The returned snapshot has version -1, so
+     * {@link WifiSettings#isCurrent(WifiSettingsSnapshot)} is always
+     * <code>false</code> for it
+     * </p>
+     * 
+     * @param ssid
+     *            SSID
+     * 
+     * @param password
+     *            password
+     * 
+     * @param security
+     *            security protocol
+     * 
+     * @param hidden
+     *            hidden SSID
+     * 
+     * @return the {@link WifiSettingsSnapshot}
+     */
+    public static WifiSettingsSnapshot create(String ssid, String password,
+            Security security, boolean hidden) {
+
+        return new WifiSettingsSnapshot(-1, ssid, password, security, hidden);
+
+    }
+
+    /**
+     * Null-safe string comparison
+     * 
+     * @param string1
+     *            first string
+     * 
+     * @param string2
+     *            second string
+     * 
+     * @return <code>true</code> if and only if both are <code>null</code> or
+     *         they are equal
+     */
+    private static boolean equal(String string1, String string2) {
+
+        if (string1 == null) {
+
+            return string2 == null;
+
+        }
+
+        return string1.equals(string2);
+
+    }
+
+    /**
+     * Create a detached snapshot of the given network
+     * 
+     * @param network
+     *            the {@link WifiNetwork}
+     * 
+     * @return the {@link WifiSettingsSnapshot}
+     * 
+     * @see #create(String, String, Security, boolean)
+     */
+    public static WifiSettingsSnapshot fromNetwork(WifiNetwork network) {
+
+        return create(network.getSsid(), network.getPassword(),
+                network.getSecurity(), network.isHidden());
+
+    }
+
+    /**
+     * Hidden SSID
+     */
+    private final boolean             hidden;
+
+    /**
+     * Password
+     */
+    private final String              password;
+
+    /**
+     * Security protocol
+     */
+    private final Security            security;
+
+    /**
+     * SSID
+     */
+    private final String              ssid;
+
+    /**
+     * Cached NDEF "U" record payload
+     * 
+     * @see #getNdefUriPayload()
+     */
+    private transient volatile byte[] ndefUriPayload;
+
+    /**
+     * Cached WIFI: URI
+     * 
+     * @see #getUri()
+     */
+    private transient volatile String uri;
+
+    /**
+     * Cached US-ASCII encoding of {@link #uri}
+     * 
+     * @see #getUriBytes()
+     */
+    private transient volatile byte[] uriBytes;
+
+    /**
+     * Model version number
+     */
+    private final long                version;
+
+    /**
+     * Initialize all fields
+     * 
+     * @param version
+     *            model version number
+     * 
+     * @param ssid
+     *            SSID
+     * 
+     * @param password
+     *            password
+     * 
+     * @param security
+     *            security protocol
+     * 
+     * @param hidden
+     *            hidden SSID
+     */
+    WifiSettingsSnapshot(long version, String ssid, String password,
+            Security security, boolean hidden) {
+
+        this.version = version;
+        this.ssid = ssid;
+        this.password = password;
+        this.security = security;
+        this.hidden = hidden;
+
+    }
+
+    /**
+     * Activate the WIFI connection represented by this instance
+     * 
+     * This should <code>always</code> be invoked on a worker thread
+     * 
+     * @param manager
+     *            {@link WifiManager}
+     * 
+     * @return {@link ConnectionOutcome}
+     */
+    public ConnectionOutcome connect(WifiManager manager) {
+
+        WifiConnector connector = new WifiConnector(new AndroidWifiService(
+                manager), ConfiguredNetworkIndex.getInstance().getIndex());
+        return connector.connect(toNetwork());
+
+    }
+
+    /**
+     * Get a {@link ContentValues} to use to persist the state of this instance
+     * 
+     * @return {@link ContentValues}
+     * 
+     * @see WifiSettings#update(ContentValues)
+     */
+    public ContentValues getContentValues() {
+
+        ContentValues values = new ContentValues();
+        values.put(WifiSettingsEntry.COLUMN_NAME_HIDDEN, hidden);
+        values.put(WifiSettingsEntry.COLUMN_NAME_PASSWORD, password);
+        values.put(WifiSettingsEntry.COLUMN_NAME_SECURITY, security.toString());
+        values.put(WifiSettingsEntry.COLUMN_NAME_SSID, ssid);
+        return values;
+
+    }
+
+    /**
+     * Get the payload for a NDEF "U" record containing the WIFI: URI for this
+     * instance
+     * 
+     * <p>
+     * The returned array is shared and must not be modified
+     * </p>
+     * 
+     * @return the payload
+     * 
+     * @see NdefUriPayload#encode(String, byte[])
+     */
+    public byte[] getNdefUriPayload() {
+
+        byte[] payload = ndefUriPayload;
+
+        if (payload == null) {
+
+            payload = NdefUriPayload.encode(getUri(), getUriBytes());
+            ndefUriPayload = payload;
+
+        }
+
+        return payload;
+
+    }
+
+    /**
+     * @return the password
+     */
+    public String getPassword() {
+
+        return password;
+
+    }
+
+    /**
+     * Get the QR code {@link Bitmap}, rendering it only if an equivalent one
+     * isn't already cached
+     * 
+     * @param foregroundColor
+     *            foreground color
+     * 
+     * @param backgroundColor
+     *            background color
+     * 
+     * @param size
+     *            size of the QR code bitmap to create
+     * 
+     * @return QR code {@link Bitmap}
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     * 
+     * @see QrCodeCache#getQrCode(String, int, int, int)
+     */
+    public Bitmap getQrCode(int foregroundColor, int backgroundColor, int size)
+            throws WriterException {
+
+        return QrCodeCache.getInstance().getQrCode(toString(),
+                foregroundColor, backgroundColor, size);
+
+    }
+
+    /**
+     * @return the security protocol
+     */
+    public Security getSecurity() {
+
+        return security;
+
+    }
+
+    /**
+     * @return the SSID
+     */
+    public String getSsid() {
+
+        return ssid;
+
+    }
+
+    /**
+     * Get the WIFI: URI for this instance
+     * 
+     * <p>
+     * Special characters in the parameter values are escaped as expected by
+     * {@link WifiUriParser#parse(CharSequence)}
+     * </p>
+     * 
+     * @return the WIFI: URI
+     * 
+     * @see WifiUriFormatter#format(String, String, Security, boolean)
+     */
+    public String getUri() {
+
+        String result = uri;
+
+        if (result == null) {
+
+            result = WifiUriFormatter.format(ssid, password, security,
+                    hidden);
+            uri = result;
+
+        }
+
+        return result;
+
+    }
+
+    /**
+     * Get the US-ASCII encoding of the WIFI: URI for this instance
+     * 
+     * <p>
+     * The returned array is shared and must not be modified
+     * </p>
+     * 
+     * @return the URI bytes
+     * 
+     * @see #getUri()
+     */
+    public byte[] getUriBytes() {
+
+        byte[] bytes = uriBytes;
+
+        if (bytes == null) {
+
+            bytes = NdefUriPayload.toAscii(getUri());
+            uriBytes = bytes;
+
+        }
+
+        return bytes;
+
+    }
+
+    /**
+     * @return the model version number of this snapshot
+     */
+    public long getVersion() {
+
+        return version;
+
+    }
+
+    /**
+     * @return the hidden SSID flag
+     */
+    public boolean isHidden() {
+
+        return hidden;
+
+    }
+
+    /**
+     * @return a {@link WifiNetwork} with the settings of this instance and no
+     *         network id
+     */
+    public WifiNetwork toNetwork() {
+
+        return new WifiNetwork(-1, ssid, password, security, hidden);
+
+    }
+
+    /**
+     * Return the WIFI: URI for this instance
+     * 
+     * @see #getUri()
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return getUri();
+
+    }
+
+    /**
+     * Test whether this snapshot holds the given settings, regardless of
+     * version
+     * 
+     * @param ssid
+     *            SSID
+     * 
+     * @param password
+     *            password
+     * 
+     * @param security
+     *            security protocol
+     * 
+     * @param hidden
+     *            hidden SSID
+     * 
+     * @return <code>true</code> if and only if all the values match
+     */
+    boolean hasSettings(String ssid, String password, Security security,
+            boolean hidden) {
+
+        return (this.hidden == hidden) && (this.security == security)
+                && equal(this.ssid, ssid) && equal(this.password, password);
+
+    }
+
+}
@@ -172,28 +172,13 @@ public abstract class NdefReaderActivity extends
      * 
      * @throws UnsupportedEncodingException
      *             if there is a bug in the Java virtual machine
+     * 
+     * @see NdefTextPayload#decode(byte[])
      */
     private static String decodeText(byte[] payload)
             throws UnsupportedEncodingException {
 
-        int code = payload[0];
-        int languageLength = code & 0x7F;
-        int encodingFlag = code & 0x80;
-        String encoding;
-
-        if (encodingFlag == 0) {
-
-            encoding = "UTF-8"; //$NON-NLS-1$
-
-        } else {
-
-            encoding = "UTF-16"; //$NON-NLS-1$
-
-        }
-
-        byte[] bytes = new byte[payload.length - languageLength - 1];
-        System.arraycopy(payload, 1, bytes, 0, bytes.length);
-        return new String(bytes, encoding);
+        return NdefTextPayload.decode(payload);
 
     }
 
@@ -207,21 +192,14 @@ public abstract class NdefReaderActivity extends
      * 
      * @throws UnsupportedEncodingException
      *             if there is a bug in the Java virtual machine
+     * 
+     * @see NdefUriPayload#decode(byte[])
      */
     private static String decodeUri(byte[] payload)
             throws UnsupportedEncodingException {
 
-        int code = payload[0];
-        String suffix = new String(payload, 1, payload.length - 1, "US-ASCII"); //$NON-NLS-1$
-        String prefix = ""; //$NON-NLS-1$
-
-        if ((code > 0) && (code < WELL_KNOWN_URI_PREFIX.length)) {
-
-            prefix = WELL_KNOWN_URI_PREFIX[code];
-
-        }
+        return NdefUriPayload.decode(payload);
 
-        return prefix + suffix;
     }
 
     /**
@@ -169,19 +169,14 @@ public abstract class NdefWriterActivity extends NdefReaderActivity {
      *            the text string
      * 
      * @return "T" {@link NdefRecord}
+     * 
+     * @see NdefTextPayload#encode(String, String)
      */
     public static NdefRecord createText(String language, String text) {
 
         try {
 
-            byte[] languageBytes = language.getBytes("UTF-8"); //$NON-NLS-1$
-            byte[] textBytes = text.getBytes("UTF-8"); //$NON-NLS-1$
-            byte[] payload = new byte[languageBytes.length + textBytes.length
-                    + 1];
-            payload[0] = (byte) languageBytes.length;
-            System.arraycopy(languageBytes, 0, payload, 1, languageBytes.length);
-            System.arraycopy(textBytes, 0, payload, languageBytes.length + 1,
-                    textBytes.length);
+            byte[] payload = NdefTextPayload.encode(language, text);
             return new NdefRecord(NdefRecord.TNF_WELL_KNOWN,
                     NdefRecord.RTD_TEXT, null, payload);
 
@@ -202,41 +197,12 @@ public abstract class NdefWriterActivity extends NdefReaderActivity {
      * @return "U" {@link NdefRecord}
      * 
      * @see #createUri(Uri)
+     * @see NdefUriPayload#encode(String)
      */
     public static NdefRecord createUri(String uri) {
 
-        try {
-
-            String prefix = ""; //$NON-NLS-1$
-            String suffix = uri;
-            int code = 0;
-
-            for (int index = 1; index < WELL_KNOWN_URI_PREFIX.length; ++index) {
-
-                if (uri.startsWith(WELL_KNOWN_URI_PREFIX[index])) {
-
-                    prefix = WELL_KNOWN_URI_PREFIX[index];
-                    suffix = uri.substring(prefix.length());
-                    code = index;
-                    break;
-
-                }
-
-            }
-
-            byte[] bytes = suffix.getBytes("US-ASCII"); //$NON-NLS-1$
-            byte[] payload = new byte[bytes.length + 1];
-            payload[0] = (byte) code;
-            System.arraycopy(bytes, 0, payload, 1, bytes.length);
-            return new NdefRecord(NdefRecord.TNF_WELL_KNOWN,
-                    NdefRecord.RTD_URI, null, payload);
-
-        } catch (UnsupportedEncodingException e) {
+        return createUriRecord(NdefUriPayload.encode(uri));
 
-            Log.e(NdefWriterActivity.class.getName(), "createUri", e); //$NON-NLS-1$
-            throw new IllegalArgumentException(e);
-
-        }
     }
 
     /**
@@ -255,6 +221,22 @@ public abstract class NdefWriterActivity extends NdefReaderActivity {
 
     }
 
+    /**
+     * Create a "U" {@link NdefRecord} from an already encoded payload
+     * 
+     * @param payload
+     *            the payload, as returned by
+     *            {@link NdefUriPayload#encode(String)}
+     * 
+     * @return "U" {@link NdefRecord}
+     */
+    public static NdefRecord createUriRecord(byte[] payload) {
+
+        return new NdefRecord(NdefRecord.TNF_WELL_KNOWN, NdefRecord.RTD_URI,
+                null, payload);
+
+    }
+
     /**
      * If <code>true</code>, write-protect a {@link Tag} after writing to it.
      * Otherwise, leave the {@link Tag} writable
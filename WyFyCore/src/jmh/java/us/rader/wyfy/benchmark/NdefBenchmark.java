@@ -0,0 +1,166 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.benchmark;
+
+import java.io.UnsupportedEncodingException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.rader.wyfy.nfc.NdefTextPayload;
+import us.rader.wyfy.nfc.NdefUriPayload;
+
+/**
+ * Benchmarks for encoding and decoding NDEF record payloads
+ * 
+ * @author Kirk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NdefBenchmark {
+
+    /**
+     * Text for "T" records
+     */
+    private String text;
+
+    /**
+     * Encoded "T" record payload
+     */
+    private byte[] textPayload;
+
+    /**
+     * WIFI: URI for "U" records
+     */
+    private String uri;
+
+    /**
+     * US-ASCII bytes of {@link #uri}
+     */
+    private byte[] uriBytes;
+
+    /**
+     * Encoded "U" record payload
+     */
+    private byte[] uriPayload;
+
+    /**
+     * Decode a "T" record payload
+     * 
+     * @return the text
+     * 
+     * @throws UnsupportedEncodingException
+     *             if there is a bug in the Java virtual machine
+     */
+    @Benchmark
+    public String decodeText() throws UnsupportedEncodingException {
+
+        return NdefTextPayload.decode(textPayload);
+
+    }
+
+    /**
+     * Decode a "U" record payload
+     * 
+     * @return the URI
+     * 
+     * @throws UnsupportedEncodingException
+     *             if there is a bug in the Java virtual machine
+     */
+    @Benchmark
+    public String decodeUri() throws UnsupportedEncodingException {
+
+        return NdefUriPayload.decode(uriPayload);
+
+    }
+
+    /**
+     * Encode a "T" record payload
+     * 
+     * @return the payload
+     * 
+     * @throws UnsupportedEncodingException
+     *             if there is a bug in the Java virtual machine
+     */
+    @Benchmark
+    public byte[] encodeText() throws UnsupportedEncodingException {
+
+        return NdefTextPayload.encode("en", text); //$NON-NLS-1$
+
+    }
+
+    /**
+     * Encode a "U" record payload from the URI string
+     * 
+     * @return the payload
+     */
+    @Benchmark
+    public byte[] encodeUri() {
+
+        return NdefUriPayload.encode(uri);
+
+    }
+
+    /**
+     * Encode a "U" record payload from already encoded bytes, as
+     * <code>WifiSettingsSnapshot</code> does
+     * 
+     * @return the payload
+     */
+    @Benchmark
+    public byte[] encodeUriFromBytes() {
+
+        return NdefUriPayload.encode(uri, uriBytes);
+
+    }
+
+    /**
+     * Create the inputs and check that they survive a round trip
+     * 
+     * @throws UnsupportedEncodingException
+     *             if there is a bug in the Java virtual machine
+     */
+    @Setup
+    public void setup() throws UnsupportedEncodingException {
+
+        uri = "WIFI:S:Kirk's Network;T:WPA;P:correct horse battery staple;;"; //$NON-NLS-1$
+        uriBytes = NdefUriPayload.toAscii(uri);
+        uriPayload = NdefUriPayload.encode(uri);
+        text = "Tap to connect to Kirk's Network"; //$NON-NLS-1$
+        textPayload = NdefTextPayload.encode("en", text); //$NON-NLS-1$
+
+        if (!uri.equals(NdefUriPayload.decode(uriPayload))
+                || !text.equals(NdefTextPayload.decode(textPayload))) {
+
+            throw new IllegalStateException();
+
+        }
+    }
+
+}
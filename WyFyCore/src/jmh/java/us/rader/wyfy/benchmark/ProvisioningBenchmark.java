@@ -0,0 +1,147 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.rader.wyfy.model.NetworkIndex;
+import us.rader.wyfy.model.Security;
+import us.rader.wyfy.model.SimulatedWifiService;
+import us.rader.wyfy.model.WifiNetwork;
+import us.rader.wyfy.model.WifiSettingsProvisioner;
+
+/**
+ * Bulk provisioning scenarios against a {@link SimulatedWifiService}
+ * 
+ * <p>
+ * Each invocation provisions {@link #networkCount} networks into a service
+ * that already has half of them configured, so roughly half are updated and
+ * half added, with the given rate of injected failures
+ * </p>
+ * 
+ * @author Kirk
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Thread)
+public class ProvisioningBenchmark {
+
+    /**
+     * Fraction of changes that fail
+     */
+    @Param({ "0", "0.01" })
+    public double                   failureRate;
+
+    /**
+     * Simulated latency of each call, in microseconds
+     */
+    @Param({ "0", "20" })
+    public int                      latencyMicros;
+
+    /**
+     * Number of networks to provision
+     */
+    @Param({ "1000", "5000" })
+    public int                      networkCount;
+
+    /**
+     * The networks to provision
+     */
+    private List<WifiNetwork>       networks;
+
+    /**
+     * The provisioner under test
+     */
+    private WifiSettingsProvisioner provisioner;
+
+    /**
+     * The simulated service
+     */
+    private SimulatedWifiService    service;
+
+    /**
+     * Provision all of {@link #networks}
+     * 
+     * @return number of networks successfully provisioned
+     */
+    @Benchmark
+    public int provision() {
+
+        return provisioner.provision(networks);
+
+    }
+
+    /**
+     * Build {@link #networks}
+     */
+    @Setup(Level.Trial)
+    public void setup() {
+
+        networks = new ArrayList<WifiNetwork>(networkCount);
+
+        for (int index = 0; index < networkCount; ++index) {
+
+            networks.add(new WifiNetwork(-1, "network-" + index, //$NON-NLS-1$
+                    "password-" + index, Security.WPA, false)); //$NON-NLS-1$
+
+        }
+
+        service = new SimulatedWifiService();
+
+    }
+
+    /**
+     * Start each invocation with half of the networks already configured and
+     * an empty index
+     */
+    @Setup(Level.Invocation)
+    public void setupInvocation() {
+
+        service.clear();
+        service.setLatency(0, TimeUnit.MICROSECONDS);
+        service.setFailureRate(0.0, 0);
+
+        for (int index = 0; index < networkCount; index += 2) {
+
+            service.addNetwork(networks.get(index));
+
+        }
+
+        service.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+        service.setFailureRate(failureRate, 42);
+        provisioner = new WifiSettingsProvisioner(service, new NetworkIndex());
+
+    }
+
+}
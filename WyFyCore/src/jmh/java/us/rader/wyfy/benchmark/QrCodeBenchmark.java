@@ -0,0 +1,216 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.rader.wyfy.model.QrCodeEncoder;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+/**
+ * Benchmarks for QR code encoding and rasterization
+ * 
+ * <p>
+ * The rasterization benchmarks fill an <code>int[]</code> pixel buffer the way
+ * the app fills a <code>Bitmap</code>. {@link #rasterizeScanlines()} is the
+ * approach used by <code>QrCodeRasterizer</code>, expanding each module row
+ * once and copying it for every pixel row. {@link #rasterizePerPixel()} is the
+ * approach it replaced, asking zxing for a full-resolution matrix and testing
+ * every pixel
+ * </p>
+ * 
+ * @author Kirk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QrCodeBenchmark {
+
+    /**
+     * Background color
+     */
+    private static final int BACKGROUND = 0xFFFFFFFF;
+
+    /**
+     * Foreground color
+     */
+    private static final int FOREGROUND = 0xFF000000;
+
+    /**
+     * The string to encode
+     */
+    private String           contents;
+
+    /**
+     * Pre-encoded module matrix for {@link #contents}
+     */
+    private BitMatrix        modules;
+
+    /**
+     * Pixel buffer
+     */
+    private int[]            pixels;
+
+    /**
+     * Size of the image in pixels
+     */
+    @Param({ "512", "1024" })
+    public int               size;
+
+    /**
+     * Encode the module matrix
+     * 
+     * @return the module matrix
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     */
+    @Benchmark
+    public BitMatrix encodeModules() throws WriterException {
+
+        return QrCodeEncoder.encodeModules(contents);
+
+    }
+
+    /**
+     * Encode a full-resolution matrix and test every pixel, as the app did
+     * before it switched to module matrices
+     * 
+     * @return the pixel buffer
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     */
+    @Benchmark
+    public int[] rasterizePerPixel() throws WriterException {
+
+        BitMatrix matrix = new QRCodeWriter().encode(contents,
+                BarcodeFormat.QR_CODE, size, size);
+        int width = matrix.getWidth();
+        int height = matrix.getHeight();
+
+        for (int y = 0; y < height; ++y) {
+
+            for (int x = 0; x < width; ++x) {
+
+                pixels[(y * width) + x] = (matrix.get(x, y) ? FOREGROUND
+                        : BACKGROUND);
+
+            }
+        }
+
+        return pixels;
+
+    }
+
+    /**
+     * Encode the module matrix and expand it one module row at a time
+     * 
+     * @return the pixel buffer
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     */
+    @Benchmark
+    public int[] rasterizeScanlines() throws WriterException {
+
+        return expand(QrCodeEncoder.encodeModules(contents));
+
+    }
+
+    /**
+     * Expand the pre-encoded module matrix, excluding the cost of encoding
+     * 
+     * @return the pixel buffer
+     */
+    @Benchmark
+    public int[] expandModules() {
+
+        return expand(modules);
+
+    }
+
+    /**
+     * Create the inputs
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     */
+    @Setup
+    public void setup() throws WriterException {
+
+        contents = "WIFI:S:Kirk's Network;T:WPA;P:correct horse battery staple;;"; //$NON-NLS-1$
+        modules = QrCodeEncoder.encodeModules(contents);
+        pixels = new int[size * size];
+
+    }
+
+    /**
+     * Fill {@link #pixels} from the given module matrix
+     * 
+     * @param matrix
+     *            the module matrix
+     * 
+     * @return {@link #pixels}
+     */
+    private int[] expand(BitMatrix matrix) {
+
+        int moduleCount = matrix.getWidth();
+        int scale = size / moduleCount;
+        int padding = (size - (moduleCount * scale)) / 2;
+        int[] scanline = new int[size];
+        BitArray row = new BitArray(moduleCount);
+
+        for (int y = 0; y < matrix.getHeight(); ++y) {
+
+            row = matrix.getRow(y, row);
+            QrCodeEncoder.expandRow(row, moduleCount, scale, padding,
+                    scanline, FOREGROUND, BACKGROUND);
+            int top = padding + (y * scale);
+
+            for (int repeat = 0; repeat < scale; ++repeat) {
+
+                System.arraycopy(scanline, 0, pixels, (top + repeat) * size,
+                        size);
+
+            }
+        }
+
+        return pixels;
+
+    }
+
+}
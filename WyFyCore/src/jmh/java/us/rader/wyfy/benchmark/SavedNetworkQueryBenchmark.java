@@ -0,0 +1,348 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Latency of the saved network list and password lookup queries on a large
+ * synthetic <code>wifi_settings</code> table
+ * 
+ * <p>
+ * The schema and SQL mirror <code>WifiSettingsDatabaseHelper</code> in the
+ * Android project, which can't be used here since it depends on the Android
+ * SDK, run against SQLite through JDBC. The <code>...AllColumns</code>
+ * benchmarks select every column and search the table, as the app used to.
+ * The <code>...Covered</code> benchmarks select only the columns they need and
+ * are answered entirely from a covering index. <code>cacheSize</code> is the
+ * SQLite page cache size in KiB, to show the effect of a table that doesn't
+ * fit in memory
+ * </p>
+ * 
+ * @author Kirk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SavedNetworkQueryBenchmark {
+
+    /**
+     * Rows per page of the saved network list
+     */
+    private static final int  PAGE_SIZE = 100;
+
+    /**
+     * Return the SSID of the given row
+     * 
+     * @param index
+     *            row index
+     * 
+     * @return the SSID
+     */
+    private static String ssid(int index) {
+
+        return String.format("Network-%06d", Integer.valueOf(index)); //$NON-NLS-1$
+
+    }
+
+    /**
+     * SQLite page cache size, in KiB
+     */
+    @Param({ "256", "8192" })
+    public int                cacheSize;
+
+    /**
+     * Number of rows
+     */
+    @Param({ "50000" })
+    public int                rowCount;
+
+    /**
+     * Connection to {@link #file}
+     */
+    private Connection        connection;
+
+    /**
+     * The database file
+     */
+    private File              file;
+
+    /**
+     * Password lookup selecting every column
+     */
+    private PreparedStatement lookupAllColumns;
+
+    /**
+     * Password lookup answered from the covering index
+     */
+    private PreparedStatement lookupCovered;
+
+    /**
+     * Counter used to spread the queries across the table
+     */
+    private int               next;
+
+    /**
+     * List page selecting every column
+     */
+    private PreparedStatement pageAllColumns;
+
+    /**
+     * List page answered from the covering index
+     */
+    private PreparedStatement pageCovered;
+
+    /**
+     * Look up a password, reading the whole row
+     * 
+     * @return the password
+     * 
+     * @throws SQLException
+     *             if a database error occurs
+     */
+    @Benchmark
+    public String lookupPasswordAllColumns() throws SQLException {
+
+        lookupAllColumns.setString(1, nextSsid());
+
+        try (ResultSet result = lookupAllColumns.executeQuery()) {
+
+            if (!result.next()) {
+
+                return null;
+
+            }
+
+            // copy every selected column, as filling a CursorWindow does
+            for (int column = 1; column <= 5; ++column) {
+
+                result.getString(column);
+
+            }
+
+            return result.getString(3);
+
+        }
+    }
+
+    /**
+     * Look up a password from the covering index
+     * 
+     * @return the password
+     * 
+     * @throws SQLException
+     *             if a database error occurs
+     */
+    @Benchmark
+    public String lookupPasswordCovered() throws SQLException {
+
+        lookupCovered.setString(1, nextSsid());
+
+        try (ResultSet result = lookupCovered.executeQuery()) {
+
+            return result.next() ? result.getString(1) : null;
+
+        }
+    }
+
+    /**
+     * Read one page of the list, reading whole rows
+     * 
+     * @return number of characters read
+     * 
+     * @throws SQLException
+     *             if a database error occurs
+     */
+    @Benchmark
+    public int queryPageAllColumns() throws SQLException {
+
+        return readPage(pageAllColumns);
+
+    }
+
+    /**
+     * Read one page of the list from the covering index
+     * 
+     * @return number of characters read
+     * 
+     * @throws SQLException
+     *             if a database error occurs
+     */
+    @Benchmark
+    public int queryPageCovered() throws SQLException {
+
+        return readPage(pageCovered);
+
+    }
+
+    /**
+     * Create and fill the table and prepare the queries
+     * 
+     * @throws IOException
+     *             if the database file can't be created
+     * 
+     * @throws SQLException
+     *             if a database error occurs
+     */
+    @Setup
+    public void setup() throws IOException, SQLException {
+
+        file = File.createTempFile("wyfy", ".db"); //$NON-NLS-1$ //$NON-NLS-2$
+        connection = DriverManager.getConnection("jdbc:sqlite:" //$NON-NLS-1$
+                + file.getPath());
+
+        try (Statement statement = connection.createStatement()) {
+
+            statement.execute("CREATE TABLE wifi_settings (_id INTEGER PRIMARY KEY,ssid TEXT,password TEXT,security TEXT,hidden INTEGER,ssid_key TEXT NOT NULL)"); //$NON-NLS-1$
+            statement.execute("CREATE UNIQUE INDEX wifi_settings_ssid_key ON wifi_settings (ssid_key)"); //$NON-NLS-1$
+            statement.execute("CREATE INDEX wifi_settings_list ON wifi_settings (_id, ssid)"); //$NON-NLS-1$
+            statement.execute("CREATE INDEX wifi_settings_lookup ON wifi_settings (ssid_key, password)"); //$NON-NLS-1$
+
+        }
+
+        connection.setAutoCommit(false);
+
+        try (PreparedStatement insert = connection
+                .prepareStatement("INSERT INTO wifi_settings (ssid_key, ssid, password, security, hidden) VALUES (lower(?1), ?1, ?2, 'WPA', 0)")) { //$NON-NLS-1$
+
+            for (int index = 0; index < rowCount; ++index) {
+
+                insert.setString(1, ssid(index));
+                insert.setString(2, String.format(
+                        "%064x", Long.valueOf(index * 0x9E3779B97F4A7C15L))); //$NON-NLS-1$
+                insert.executeUpdate();
+
+            }
+        }
+
+        connection.commit();
+        connection.setAutoCommit(true);
+
+        try (Statement statement = connection.createStatement()) {
+
+            statement.execute("PRAGMA cache_size = -" + cacheSize); //$NON-NLS-1$
+
+        }
+
+        lookupAllColumns = connection
+                .prepareStatement("SELECT _id, ssid, password, security, hidden FROM wifi_settings WHERE ssid_key = lower(?)"); //$NON-NLS-1$
+        lookupCovered = connection
+                .prepareStatement("SELECT password FROM wifi_settings INDEXED BY wifi_settings_lookup WHERE ssid_key = lower(?)"); //$NON-NLS-1$
+        pageAllColumns = connection
+                .prepareStatement("SELECT _id, ssid, password, security, hidden FROM wifi_settings WHERE _id > ? ORDER BY _id LIMIT " //$NON-NLS-1$
+                        + PAGE_SIZE);
+        pageCovered = connection
+                .prepareStatement("SELECT _id, ssid FROM wifi_settings INDEXED BY wifi_settings_list WHERE _id > ? ORDER BY _id LIMIT " //$NON-NLS-1$
+                        + PAGE_SIZE);
+
+    }
+
+    /**
+     * Close the connection and delete the database file
+     * 
+     * @throws SQLException
+     *             if a database error occurs
+     */
+    @TearDown
+    public void tearDown() throws SQLException {
+
+        connection.close();
+        file.delete();
+
+    }
+
+    /**
+     * @return the next row number, spread across the table
+     */
+    private int nextRow() {
+
+        next = (next + 1) % rowCount;
+        return (int) ((next * 7919L) % rowCount);
+
+    }
+
+    /**
+     * @return the SSID of the next row to look up, in a different case from
+     *         the stored one
+     */
+    private String nextSsid() {
+
+        return ssid(nextRow()).toUpperCase(Locale.US);
+
+    }
+
+    /**
+     * Read a page of rows following a row spread across the table
+     * 
+     * @param statement
+     *            the page query
+     * 
+     * @return number of characters read
+     * 
+     * @throws SQLException
+     *             if a database error occurs
+     */
+    private int readPage(PreparedStatement statement) throws SQLException {
+
+        statement.setLong(1, Math.max(0, nextRow() - PAGE_SIZE));
+        int length = 0;
+
+        try (ResultSet result = statement.executeQuery()) {
+
+            int columns = result.getMetaData().getColumnCount();
+
+            while (result.next()) {
+
+                // copy every selected column, as filling a CursorWindow does
+                for (int column = 1; column <= columns; ++column) {
+
+                    String value = result.getString(column);
+                    length += (value == null) ? 0 : value.length();
+
+                }
+            }
+        }
+
+        return length;
+
+    }
+
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.rader.wyfy.model.ConnectionOutcome;
+import us.rader.wyfy.model.NetworkIndex;
+import us.rader.wyfy.model.Security;
+import us.rader.wyfy.model.SimulatedWifiService;
+import us.rader.wyfy.model.WifiConnector;
+import us.rader.wyfy.model.WifiNetwork;
+
+/**
+ * Throughput of the connect path against a {@link SimulatedWifiService} with
+ * many configured networks
+ * 
+ * <p>
+ * {@link #connect()} uses {@link WifiConnector} and its {@link NetworkIndex}.
+ * {@link #connectByScanning()} is the original implementation, which fetched
+ * and scanned the whole list of configured networks on every connect, for
+ * comparison. <code>latencyMicros</code> is the simulated cost of each call to
+ * the wi fi service
+ * </p>
+ * 
+ * @author Kirk
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WifiConnectBenchmark {
+
+    /**
+     * Simulated latency of each call, in microseconds
+     */
+    @Param({ "0", "100" })
+    public int                  latencyMicros;
+
+    /**
+     * Number of configured networks
+     */
+    @Param({ "100", "1000" })
+    public int                  networkCount;
+
+    /**
+     * The connector under test
+     */
+    private WifiConnector        connector;
+
+    /**
+     * Position in {@link #targets} of the next network to connect to
+     */
+    private int                  next;
+
+    /**
+     * The simulated service
+     */
+    private SimulatedWifiService service;
+
+    /**
+     * The networks to connect to, all of which are already configured
+     */
+    private WifiNetwork[]        targets;
+
+    /**
+     * Connect using the index
+     * 
+     * @return the outcome
+     */
+    @Benchmark
+    public ConnectionOutcome connect() {
+
+        return connector.connect(nextTarget());
+
+    }
+
+    /**
+     * Connect the way the original implementation did
+     * 
+     * @return the outcome
+     */
+    @Benchmark
+    public ConnectionOutcome connectByScanning() {
+
+        String ssid = nextTarget().getSsid();
+
+        for (WifiNetwork network : service.getConfiguredNetworks()) {
+
+            if (network.getSsid().equals(ssid)) {
+
+                if (service.enableNetwork(network.getNetworkId(), false)) {
+
+                    return ConnectionOutcome.ENABLED;
+
+                }
+
+                return ConnectionOutcome.FAILED;
+
+            }
+        }
+
+        return ConnectionOutcome.FAILED;
+
+    }
+
+    /**
+     * Configure {@link #networkCount} networks and pick the targets
+     */
+    @Setup
+    public void setup() {
+
+        service = new SimulatedWifiService();
+
+        for (int index = 0; index < networkCount; ++index) {
+
+            service.addNetwork(new WifiNetwork(-1, "network-" + index, //$NON-NLS-1$
+                    "password-" + index, Security.WPA, false)); //$NON-NLS-1$
+
+        }
+
+        List<WifiNetwork> networks = service.getConfiguredNetworks();
+        targets = new WifiNetwork[64];
+
+        for (int index = 0; index < targets.length; ++index) {
+
+            // spread the targets across the list
+            targets[index] = networks.get((index * 7919) % networks.size())
+                    .withNetworkId(-1);
+
+        }
+
+        service.setLatency(latencyMicros, TimeUnit.MICROSECONDS);
+        connector = new WifiConnector(service, new NetworkIndex());
+
+    }
+
+    /**
+     * @return the next target network, cycling through {@link #targets}
+     */
+    private WifiNetwork nextTarget() {
+
+        WifiNetwork target = targets[next];
+        next = (next + 1) % targets.length;
+        return target;
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import us.rader.wyfy.model.Security;
+import us.rader.wyfy.model.WifiUriFormatter;
+import us.rader.wyfy.model.WifiUriParser;
+
+/**
+ * Benchmarks for parsing and formatting WIFI: URI's
+ * 
+ * <p>
+ * {@link #format()} measures the work done by
+ * <code>WifiSettings.toString()</code> the first time it is called for a
+ * given state
+ * </p>
+ * 
+ * @author Kirk
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WifiUriBenchmark {
+
+    /**
+     * Password used to build the benchmark inputs
+     */
+    @Param({ "secret", "p\\a;s:s,w\"o\\rd with some length to it" })
+    public String        password;
+
+    /**
+     * The parser, re-used across invocations as the importer does
+     */
+    private WifiUriParser parser;
+
+    /**
+     * SSID used to build the benchmark inputs
+     */
+    private String        ssid;
+
+    /**
+     * The URI to parse
+     */
+    private String        uri;
+
+    /**
+     * Format a WIFI: URI
+     * 
+     * @return the URI
+     */
+    @Benchmark
+    public String format() {
+
+        return WifiUriFormatter.format(ssid, password, Security.WPA, true);
+
+    }
+
+    /**
+     * Parse a WIFI: URI
+     * 
+     * @return the parsed SSID
+     */
+    @Benchmark
+    public String parse() {
+
+        if (parser.parse(uri) != WifiUriParser.Status.OK) {
+
+            throw new IllegalStateException(uri);
+
+        }
+
+        return parser.getSsid();
+
+    }
+
+    /**
+     * Build the inputs and check that they survive a round trip
+     */
+    @Setup
+    public void setup() {
+
+        ssid = "Kirk's Network"; //$NON-NLS-1$
+        parser = new WifiUriParser();
+        uri = WifiUriFormatter.format(ssid, password, Security.WPA, true);
+
+        if ((parser.parse(uri) != WifiUriParser.Status.OK)
+                || !password.equals(parser.getPassword())) {
+
+            throw new IllegalStateException(uri);
+
+        }
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+/**
+ * Enumerated type returned by {@link WifiConnector#connect(WifiNetwork)} and
+ * reported per network by {@link WifiSettingsProvisioner}
+ * 
+ * @author Kirk
+ */
+public enum ConnectionOutcome {
+
+    /**
+     * Added and enabled
+     */
+    ADDED,
+
+    /**
+     * Already existed, so just enabled
+     */
+    ENABLED,
+
+    /**
+     * Failed
+     */
+    FAILED,
+
+    /**
+     * Already existed, so updated and enabled
+     */
+    UPDATED;
+
+    /**
+     * Serialization version number
+     */
+    private static final long serialVersionUID = 1L;
+
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Index of the networks configured in a {@link WifiService}
+ * 
+ * <p>
+ * {@link WifiService#getConfiguredNetworks()} is a round trip to the system
+ * service that returns every configured network, so scanning its result each
+ * time the user connects is slow on devices with many configured networks.
+ * This builds SSID to network id and network id to {@link WifiNetwork} maps
+ * from a single call, after which lookups are hash lookups. The owner is
+ * responsible for keeping the index current using {@link #put(WifiNetwork)},
+ * {@link #remove(int)} and {@link #invalidate()}; the index is rebuilt the next
+ * time it is used after being invalidated. Callers that find a network id from
+ * the index to be stale should call {@link #invalidate()} and look it up again
+ * </p>
+ * 
+ * <p>
+ * All methods are synchronized since the index is used from worker threads
+ * and updated from the UI thread
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class NetworkIndex {
+
+    /**
+     * Network ids by SSID
+     */
+    private final Map<String, Integer>      idsBySsid;
+
+    /**
+     * Number of times the index was built from
+     * {@link WifiService#getConfiguredNetworks()}
+     */
+    private int                             loadCount;
+
+    /**
+     * Set once the index has been built and cleared by {@link #invalidate()}
+     */
+    private boolean                         loaded;
+
+    /**
+     * Configured networks by network id, in the order returned by
+     * {@link WifiService#getConfiguredNetworks()}
+     */
+    private final Map<Integer, WifiNetwork> networksById;
+
+    /**
+     * Initialize to the empty, unloaded state
+     */
+    public NetworkIndex() {
+
+        idsBySsid = new HashMap<String, Integer>();
+        networksById = new LinkedHashMap<Integer, WifiNetwork>();
+
+    }
+
+    /**
+     * @return number of times the index was built from
+     *         {@link WifiService#getConfiguredNetworks()}
+     */
+    public synchronized int getLoadCount() {
+
+        return loadCount;
+
+    }
+
+    /**
+     * Look up a configured network by network id
+     * 
+     * @param service
+     *            {@link WifiService} used to build the index if necessary
+     * 
+     * @param networkId
+     *            the network id
+     * 
+     * @return the {@link WifiNetwork} or <code>null</code> if there is no such
+     *         network
+     */
+    public synchronized WifiNetwork getNetwork(WifiService service,
+            int networkId) {
+
+        load(service);
+        return networksById.get(networkId);
+
+    }
+
+    /**
+     * Look up the network id for an SSID
+     * 
+     * @param service
+     *            {@link WifiService} used to build the index if necessary
+     * 
+     * @param ssid
+     *            the SSID, not wrapped in double-quotes
+     * 
+     * @return the network id or -1 if there is no such network
+     */
+    public synchronized int getNetworkId(WifiService service, String ssid) {
+
+        load(service);
+        Integer networkId = idsBySsid.get(ssid);
+
+        if (networkId == null) {
+
+            return -1;
+
+        }
+
+        return networkId;
+
+    }
+
+    /**
+     * Discard the index so that it is rebuilt the next time it is used
+     */
+    public synchronized void invalidate() {
+
+        idsBySsid.clear();
+        networksById.clear();
+        loaded = false;
+
+    }
+
+    /**
+     * Add or replace a configured network in the index
+     * 
+     * <p>
+     * This is a no-op if the index hasn't been built yet, since the network
+     * will be included when it is. An SSID already mapped to another network
+     * keeps that mapping, so that the first network with a given SSID still
+     * wins, as it does when the index is built
+     * </p>
+     * 
+     * @param network
+     *            the {@link WifiNetwork}, whose network id must be set
+     */
+    public synchronized void put(WifiNetwork network) {
+
+        int networkId = network.getNetworkId();
+
+        if (!loaded || (networkId == -1)) {
+
+            return;
+
+        }
+
+        String ssid = network.getSsid();
+        WifiNetwork existing = networksById.get(networkId);
+
+        if ((existing != null) && (existing.getSsid() != null)
+                && !existing.getSsid().equals(ssid)) {
+
+            // renamed, so release the old SSID to any other network with it
+            remove(networkId);
+
+        }
+
+        networksById.put(networkId, network);
+
+        if ((ssid != null) && !idsBySsid.containsKey(ssid)) {
+
+            idsBySsid.put(ssid, networkId);
+
+        }
+    }
+
+    /**
+     * Remove a configured network from the index
+     * 
+     * @param networkId
+     *            the network id
+     */
+    public synchronized void remove(int networkId) {
+
+        WifiNetwork existing = networksById.remove(networkId);
+
+        if ((existing == null) || (existing.getSsid() == null)) {
+
+            return;
+
+        }
+
+        String ssid = existing.getSsid();
+        Integer id = idsBySsid.get(ssid);
+
+        if ((id == null) || (id != networkId)) {
+
+            return;
+
+        }
+
+        idsBySsid.remove(ssid);
+
+        // fall back to another network with the same SSID, if any
+        for (WifiNetwork other : networksById.values()) {
+
+            if (ssid.equals(other.getSsid())) {
+
+                idsBySsid.put(ssid, other.getNetworkId());
+                break;
+
+            }
+        }
+    }
+
+    /**
+     * @return number of configured networks in the index, which is 0 if it
+     *         isn't loaded
+     */
+    public synchronized int size() {
+
+        return networksById.size();
+
+    }
+
+    /**
+     * Build the index if it isn't already loaded
+     * 
+     * <p>
+     * Where more than one network has the same SSID, the first one returned by
+     * {@link WifiService#getConfiguredNetworks()} wins, as it did when that
+     * list was scanned directly. The index is left unloaded if the list isn't
+     * available
+     * </p>
+     * 
+     * @param service
+     *            {@link WifiService}
+     */
+    private void load(WifiService service) {
+
+        if (loaded) {
+
+            return;
+
+        }
+
+        List<WifiNetwork> networks = service.getConfiguredNetworks();
+
+        if (networks == null) {
+
+            return;
+
+        }
+
+        for (WifiNetwork network : networks) {
+
+            networksById.put(network.getNetworkId(), network);
+
+            if ((network.getSsid() != null)
+                    && !idsBySsid.containsKey(network.getSsid())) {
+
+                idsBySsid.put(network.getSsid(), network.getNetworkId());
+
+            }
+        }
+
+        ++loadCount;
+        loaded = true;
+
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+import com.google.zxing.qrcode.decoder.ErrorCorrectionLevel;
+
+/**
+ * Encode QR codes as module matrices and expand them into pixel scanlines
+ * 
+ * <p>
+ * A QR code module matrix is a {@link BitMatrix} with exactly one bit per QR
+ * module, including the quiet zone. Turning it into an image is a matter of
+ * expanding each module row into a scanline once, using
+ * {@link #expandRow(BitArray, int, int, int, int[], int, int)}, and copying
+ * that scanline for every pixel row the module row covers
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class QrCodeEncoder {
+
+    /**
+     * Create the QR code module matrix for the given <code>contents</code>
+     * 
+     * @param contents
+     *            the string to encode
+     * 
+     * @return {@link BitMatrix} with one bit per module, including the quiet
+     *         zone
+     * 
+     * @throws WriterException
+     *             if a zxing error occurs
+     */
+    public static BitMatrix encodeModules(String contents)
+            throws WriterException {
+
+        QRCodeWriter writer = new QRCodeWriter();
+        Map<EncodeHintType, Object> hints = new HashMap<EncodeHintType, Object>();
+        hints.put(EncodeHintType.ERROR_CORRECTION, ErrorCorrectionLevel.L);
+        // requesting a size of 0 returns the matrix unscaled
+        return writer.encode(contents, BarcodeFormat.QR_CODE, 0, 0, hints);
+
+    }
+
+    /**
+     * Fill <code>scanline</code> with the pixel colors for the given module
+     * row
+     * 
+     * @param row
+     *            {@link BitArray} for one row of a module matrix
+     * 
+     * @param moduleCount
+     *            number of modules in <code>row</code>
+     * 
+     * @param scale
+     *            number of pixels per module
+     * 
+     * @param padding
+     *            number of background pixels before the first module
+     * 
+     * @param scanline
+     *            the buffer to fill
+     * 
+     * @param foregroundColor
+     *            color for set bits
+     * 
+     * @param backgroundColor
+     *            color for clear bits
+     */
+    public static void expandRow(BitArray row, int moduleCount, int scale,
+            int padding, int[] scanline, int foregroundColor,
+            int backgroundColor) {
+
+        Arrays.fill(scanline, backgroundColor);
+        int offset = padding;
+
+        for (int x = 0; x < moduleCount; ++x) {
+
+            if (row.get(x)) {
+
+                Arrays.fill(scanline, offset, offset + scale, foregroundColor);
+
+            }
+
+            offset += scale;
+
+        }
+    }
+
+    /**
+     * Prevent casual instantiation of utility class
+     */
+    private QrCodeEncoder() {
+
+        // nothing to do here
+
+    }
+
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+/**
+ * Enumeration of supported wifi security protocols
+ * 
+ * @author Kirk
+ */
+public enum Security {
+
+    /**
+     * No security
+     */
+    NONE,
+
+    /**
+     * WEP security
+     */
+    WEP,
+
+    /**
+     * WPA / WPA2 security
+     */
+    WPA;
+
+    /**
+     * Serialization version number
+     */
+    private static final long serialVersionUID = 1L;
+
+}
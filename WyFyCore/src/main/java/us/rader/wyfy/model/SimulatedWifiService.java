@@ -0,0 +1,434 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-memory {@link WifiService} for benchmarks and load tests
+ * 
+ * <p>
+ * Every call waits for a configurable latency, standing in for the round trip
+ * to the system service, and calls that change the configuration fail at a
+ * configurable rate. Failures are drawn from a seeded {@link Random} so that
+ * a given scenario is repeatable. Disabling the simulated wi fi makes
+ * {@link #getConfiguredNetworks()} return <code>null</code> and every change
+ * fail, as on a device. The simulated active connection is simply the most
+ * recently enabled network
+ * </p>
+ * 
+ * <p>
+ * All methods are synchronized, so calls are serialized as they are by the
+ * real system service
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class SimulatedWifiService implements WifiService {
+
+    /**
+     * Network id of the simulated active connection or -1
+     */
+    private int                             activeNetworkId;
+
+    /**
+     * Number of calls made through the {@link WifiService} interface
+     */
+    private long                            callCount;
+
+    /**
+     * Whether the simulated wi fi is enabled
+     */
+    private boolean                         enabled;
+
+    /**
+     * Number of injected failures
+     */
+    private long                            failureCount;
+
+    /**
+     * Fraction of changes that fail, from 0 to 1
+     */
+    private double                          failureRate;
+
+    /**
+     * Latency of each call, in nanoseconds
+     */
+    private long                            latencyNanos;
+
+    /**
+     * Configured networks by network id, in the order they were added
+     */
+    private final Map<Integer, WifiNetwork> networks;
+
+    /**
+     * Next network id to assign
+     */
+    private int                             nextNetworkId;
+
+    /**
+     * Source of injected failures
+     */
+    private Random                          random;
+
+    /**
+     * Number of successful calls to {@link #saveConfiguration()}
+     */
+    private long                            saveCount;
+
+    /**
+     * Initialize to an enabled service with no configured networks, no latency
+     * and no failures
+     */
+    public SimulatedWifiService() {
+
+        networks = new LinkedHashMap<Integer, WifiNetwork>();
+        activeNetworkId = -1;
+        enabled = true;
+        random = new Random(0);
+
+    }
+
+    /**
+     * Add a network
+     * 
+     * @param network
+     *            the network, whose network id is ignored
+     * 
+     * @return the new network id or -1 on failure
+     * 
+     * @see us.rader.wyfy.model.WifiService#addNetwork(us.rader.wyfy.model.WifiNetwork)
+     */
+    @Override
+    public synchronized int addNetwork(WifiNetwork network) {
+
+        if (!call(true)) {
+
+            return -1;
+
+        }
+
+        int networkId = nextNetworkId++;
+        networks.put(networkId, network.withNetworkId(networkId));
+        return networkId;
+
+    }
+
+    /**
+     * Make the configured networks and counters empty without changing the
+     * latency, failure rate or enabled state
+     */
+    public synchronized void clear() {
+
+        networks.clear();
+        activeNetworkId = -1;
+        callCount = 0;
+        failureCount = 0;
+        nextNetworkId = 0;
+        saveCount = 0;
+
+    }
+
+    /**
+     * Enable a network, making it the simulated active connection
+     * 
+     * @param networkId
+     *            the network id
+     * 
+     * @param disableOthers
+     *            ignored
+     * 
+     * @return <code>true</code> if and only if the network exists and no
+     *         failure was injected
+     * 
+     * @see us.rader.wyfy.model.WifiService#enableNetwork(int, boolean)
+     */
+    @Override
+    public synchronized boolean enableNetwork(int networkId,
+            boolean disableOthers) {
+
+        if (!call(true) || !networks.containsKey(networkId)) {
+
+            return false;
+
+        }
+
+        activeNetworkId = networkId;
+        return true;
+
+    }
+
+    /**
+     * @return network id of the simulated active connection or -1
+     * 
+     * @see us.rader.wyfy.model.WifiService#getActiveNetworkId()
+     */
+    @Override
+    public synchronized int getActiveNetworkId() {
+
+        if (!call(false)) {
+
+            return -1;
+
+        }
+
+        return activeNetworkId;
+
+    }
+
+    /**
+     * @return number of calls made through the {@link WifiService} interface
+     */
+    public synchronized long getCallCount() {
+
+        return callCount;
+
+    }
+
+    /**
+     * @return a copy of the configured networks, in the order they were
+     *         added, or <code>null</code> if wi fi is disabled
+     * 
+     * @see us.rader.wyfy.model.WifiService#getConfiguredNetworks()
+     */
+    @Override
+    public synchronized List<WifiNetwork> getConfiguredNetworks() {
+
+        if (!call(false)) {
+
+            return null;
+
+        }
+
+        return new ArrayList<WifiNetwork>(networks.values());
+
+    }
+
+    /**
+     * @return number of injected failures
+     */
+    public synchronized long getFailureCount() {
+
+        return failureCount;
+
+    }
+
+    /**
+     * @return number of successful calls to {@link #saveConfiguration()}
+     */
+    public synchronized long getSaveCount() {
+
+        return saveCount;
+
+    }
+
+    /**
+     * Remove a configured network, as another app or the user might
+     * 
+     * <p>
+     * This doesn't count as a call and is never subject to latency or failure
+     * </p>
+     * 
+     * @param networkId
+     *            the network id
+     * 
+     * @return <code>true</code> if and only if the network existed
+     */
+    public synchronized boolean removeNetwork(int networkId) {
+
+        if (activeNetworkId == networkId) {
+
+            activeNetworkId = -1;
+
+        }
+
+        return networks.remove(networkId) != null;
+
+    }
+
+    /**
+     * Simulate saving the configuration
+     * 
+     * @return <code>true</code> if and only if no failure was injected
+     * 
+     * @see us.rader.wyfy.model.WifiService#saveConfiguration()
+     */
+    @Override
+    public synchronized boolean saveConfiguration() {
+
+        if (!call(true)) {
+
+            return false;
+
+        }
+
+        ++saveCount;
+        return true;
+
+    }
+
+    /**
+     * Enable or disable the simulated wi fi
+     * 
+     * @param enabled
+     *            <code>true</code> to enable
+     */
+    public synchronized void setEnabled(boolean enabled) {
+
+        this.enabled = enabled;
+
+    }
+
+    /**
+     * Set the fraction of changes that fail
+     * 
+     * @param failureRate
+     *            from 0, meaning never, to 1, meaning always
+     * 
+     * @param seed
+     *            seed for the {@link Random} that decides which calls fail
+     */
+    public synchronized void setFailureRate(double failureRate, long seed) {
+
+        if ((failureRate < 0.0) || (failureRate > 1.0)) {
+
+            throw new IllegalArgumentException(
+                    "failure rate must be between 0 and 1: " + failureRate); //$NON-NLS-1$
+
+        }
+
+        this.failureRate = failureRate;
+        random = new Random(seed);
+
+    }
+
+    /**
+     * Set the latency of each call
+     * 
+     * @param latency
+     *            the latency
+     * 
+     * @param unit
+     *            unit of <code>latency</code>
+     */
+    public synchronized void setLatency(long latency, TimeUnit unit) {
+
+        latencyNanos = unit.toNanos(latency);
+
+    }
+
+    /**
+     * @return the number of configured networks
+     */
+    public synchronized int size() {
+
+        return networks.size();
+
+    }
+
+    /**
+     * Replace a configured network, keeping the stored password if the new
+     * one is empty and the network is secured
+     * 
+     * @param network
+     *            the network, whose network id identifies the network to
+     *            replace
+     * 
+     * @return the network id or -1 if there is no such network or a failure
+     *         was injected
+     * 
+     * @see us.rader.wyfy.model.WifiService#updateNetwork(us.rader.wyfy.model.WifiNetwork)
+     */
+    @Override
+    public synchronized int updateNetwork(WifiNetwork network) {
+
+        int networkId = network.getNetworkId();
+
+        if (!call(true) || !networks.containsKey(networkId)) {
+
+            return -1;
+
+        }
+
+        WifiNetwork stored = network;
+        String password = network.getPassword();
+
+        if ((network.getSecurity() != Security.NONE)
+                && ((password == null) || (password.length() == 0))) {
+
+            stored = new WifiNetwork(networkId, network.getSsid(), networks
+                    .get(networkId).getPassword(), network.getSecurity(),
+                    network.isHidden());
+
+        }
+
+        networks.put(networkId, stored);
+        return networkId;
+
+    }
+
+    /**
+     * Count a call, wait for the simulated latency and decide whether it
+     * fails
+     * 
+     * @param change
+     *            whether the call changes the configuration, and so is subject
+     *            to injected failures
+     * 
+     * @return <code>true</code> if the call should succeed
+     */
+    private boolean call(boolean change) {
+
+        ++callCount;
+
+        if (latencyNanos > 0) {
+
+            long deadline = System.nanoTime() + latencyNanos;
+            long remaining = latencyNanos;
+
+            while (remaining > 0) {
+
+                LockSupport.parkNanos(remaining);
+                remaining = deadline - System.nanoTime();
+
+            }
+        }
+
+        if (!enabled) {
+
+            return false;
+
+        }
+
+        if (change && (failureRate > 0.0)
+                && (random.nextDouble() < failureRate)) {
+
+            ++failureCount;
+            return false;
+
+        }
+
+        return true;
+
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+/**
+ * Connect to a wi fi network, adding it to the configured networks if
+ * necessary
+ * 
+ * <p>
+ * This should always be used in a worker thread
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class WifiConnector {
+
+    /**
+     * Index of the configured networks
+     */
+    private final NetworkIndex index;
+
+    /**
+     * The wi fi service
+     */
+    private final WifiService  service;
+
+    /**
+     * Initialize all fields
+     * 
+     * @param service
+     *            the {@link WifiService}
+     * 
+     * @param index
+     *            index of the networks configured in <code>service</code>
+     */
+    public WifiConnector(WifiService service, NetworkIndex index) {
+
+        this.service = service;
+        this.index = index;
+
+    }
+
+    /**
+     * Enable the configured network with the same SSID as the given one, or
+     * add and enable the given network if there is none
+     * 
+     * <p>
+     * The existing network is found using the {@link NetworkIndex}. If
+     * enabling an indexed network id fails, the index is rebuilt and the
+     * lookup tried once more, in case the network was removed or renumbered
+     * without the index being updated
+     * </p>
+     * 
+     * @param network
+     *            the network, whose network id is ignored
+     * 
+     * @return {@link ConnectionOutcome}
+     */
+    public ConnectionOutcome connect(WifiNetwork network) {
+
+        String ssid = network.getSsid();
+        int networkId = index.getNetworkId(service, ssid);
+
+        if (networkId != -1) {
+
+            if (service.enableNetwork(networkId, false)) {
+
+                return ConnectionOutcome.ENABLED;
+
+            }
+
+            index.invalidate();
+            networkId = index.getNetworkId(service, ssid);
+
+            if (networkId != -1) {
+
+                if (service.enableNetwork(networkId, false)) {
+
+                    return ConnectionOutcome.ENABLED;
+
+                }
+
+                return ConnectionOutcome.FAILED;
+
+            }
+        }
+
+        networkId = service.addNetwork(network);
+
+        if (networkId == -1) {
+
+            return ConnectionOutcome.FAILED;
+
+        }
+
+        index.put(network.withNetworkId(networkId));
+
+        if (service.enableNetwork(networkId, false)) {
+
+            return ConnectionOutcome.ADDED;
+
+        }
+
+        return ConnectionOutcome.FAILED;
+
+    }
+
+    /**
+     * Look up the configured network of the active connection
+     * 
+     * @return the {@link WifiNetwork} or <code>null</code> if there is no
+     *         active connection
+     */
+    public WifiNetwork getActiveNetwork() {
+
+        int activeId = service.getActiveNetworkId();
+
+        if (activeId == -1) {
+
+            return null;
+
+        }
+
+        return index.getNetwork(service, activeId);
+
+    }
+
+}
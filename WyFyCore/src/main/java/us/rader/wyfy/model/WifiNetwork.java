@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+/**
+ * Immutable description of a configured wi fi network
+ * 
+ * <p>
+ * This is the platform-independent equivalent of
+ * <code>android.net.wifi.WifiConfiguration</code> used by {@link WifiService}.
+ * Unlike <code>WifiConfiguration.SSID</code>, {@link #getSsid()} is never
+ * wrapped in double-quotes
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class WifiNetwork {
+
+    /**
+     * Hidden SSID
+     */
+    private final boolean  hidden;
+
+    /**
+     * Network id assigned by the {@link WifiService} or -1
+     */
+    private final int      networkId;
+
+    /**
+     * Password
+     */
+    private final String   password;
+
+    /**
+     * Security protocol
+     */
+    private final Security security;
+
+    /**
+     * SSID
+     */
+    private final String   ssid;
+
+    /**
+     * Initialize all fields
+     * 
+     * @param networkId
+     *            network id assigned by the {@link WifiService} or -1
+     * 
+     * @param ssid
+     *            SSID
+     * 
+     * @param password
+     *            password
+     * 
+     * @param security
+     *            security protocol
+     * 
+     * @param hidden
+     *            hidden SSID
+     */
+    public WifiNetwork(int networkId, String ssid, String password,
+            Security security, boolean hidden) {
+
+        this.networkId = networkId;
+        this.ssid = ssid;
+        this.password = password;
+        this.security = security;
+        this.hidden = hidden;
+
+    }
+
+    /**
+     * @return network id assigned by the {@link WifiService} or -1
+     */
+    public int getNetworkId() {
+
+        return networkId;
+
+    }
+
+    /**
+     * @return the password
+     */
+    public String getPassword() {
+
+        return password;
+
+    }
+
+    /**
+     * @return the security protocol
+     */
+    public Security getSecurity() {
+
+        return security;
+
+    }
+
+    /**
+     * @return the SSID
+     */
+    public String getSsid() {
+
+        return ssid;
+
+    }
+
+    /**
+     * @return the hidden SSID flag
+     */
+    public boolean isHidden() {
+
+        return hidden;
+
+    }
+
+    /**
+     * Return a summary that doesn't reveal the password
+     * 
+     * @return summary string
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return networkId + ": " + ssid + " (" + security + ")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+    }
+
+    /**
+     * Return a copy of this network with the given network id
+     * 
+     * @param id
+     *            the network id
+     * 
+     * @return the copy, or this instance if the id is unchanged
+     */
+    public WifiNetwork withNetworkId(int id) {
+
+        if (id == networkId) {
+
+            return this;
+
+        }
+
+        return new WifiNetwork(id, ssid, password, security, hidden);
+
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import java.util.List;
+
+/**
+ * The subset of <code>android.net.wifi.WifiManager</code> used to connect to
+ * and provision wi fi networks
+ * 
+ * <p>
+ * The connect and provisioning logic in {@link WifiConnector} and
+ * {@link WifiSettingsProvisioner} only uses this interface, so it can be run
+ * against {@link SimulatedWifiService} on any JVM as well as against the
+ * Android implementation in the app. The methods have the same meaning as the
+ * <code>WifiManager</code> methods of the same names, which are generally
+ * round trips to a system service, so callers should assume every call is
+ * expensive
+ * </p>
+ * 
+ * @author Kirk
+ */
+public interface WifiService {
+
+    /**
+     * Add a network to the configured networks
+     * 
+     * @param network
+     *            the network, whose network id is ignored
+     * 
+     * @return the new network id or -1 on failure
+     */
+    int addNetwork(WifiNetwork network);
+
+    /**
+     * Enable a configured network
+     * 
+     * @param networkId
+     *            the network id
+     * 
+     * @param disableOthers
+     *            whether to disable all other configured networks
+     * 
+     * @return <code>true</code> if and only if successful
+     */
+    boolean enableNetwork(int networkId, boolean disableOthers);
+
+    /**
+     * @return network id of the active connection or -1 if there is none
+     */
+    int getActiveNetworkId();
+
+    /**
+     * @return all configured networks or <code>null</code> if they aren't
+     *         available, e.g. while wi fi is disabled
+     */
+    List<WifiNetwork> getConfiguredNetworks();
+
+    /**
+     * Persist the configured networks
+     * 
+     * @return <code>true</code> if and only if successful
+     */
+    boolean saveConfiguration();
+
+    /**
+     * Replace a configured network
+     * 
+     * <p>
+     * An empty password for a network whose security protocol isn't
+     * {@link Security#NONE} leaves the stored key unchanged, since the stored
+     * keys of configured networks aren't revealed and so are often unknown
+     * </p>
+     * 
+     * @param network
+     *            the network, whose network id identifies the network to
+     *            replace
+     * 
+     * @return the network id or -1 on failure
+     */
+    int updateNetwork(WifiNetwork network);
+
+}
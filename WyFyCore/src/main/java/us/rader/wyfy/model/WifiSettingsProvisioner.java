@@ -0,0 +1,380 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Bulk provisioning of many networks into the system wi fi configuration
+ * 
+ * <p>
+ * Existing networks are found using a {@link NetworkIndex}, so the list of
+ * configured networks is read once no matter how many networks are
+ * provisioned, and at most once more to check for stale network ids the first
+ * time an update is refused. Each network is then added, or updated in place if
+ * a network with the same SSID is already configured, and enabled without
+ * disabling the others. The configuration is saved once at the end
+ * </p>
+ * 
+ * <p>
+ * Saved rows often have no password for a secured network, since the platform
+ * doesn't reveal the stored keys of the networks it imports. Updating such a
+ * network leaves its stored key unchanged, and such a network that isn't
+ * already configured fails rather than being added without a key. A network
+ * whose update is refused, e.g. because it belongs to another application,
+ * also fails rather than being added again under the same SSID. Once the list
+ * has been read again, any further refused update fails without reading it
+ * </p>
+ * 
+ * <p>
+ * This should always be used in a worker thread
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class WifiSettingsProvisioner {
+
+    /**
+     * Outcome of provisioning a single network
+     * 
+     * @author Kirk
+     */
+    public static final class Result {
+
+        /**
+         * The network id or -1 on failure
+         */
+        private final int               networkId;
+
+        /**
+         * The outcome
+         */
+        private final ConnectionOutcome outcome;
+
+        /**
+         * The SSID
+         */
+        private final String            ssid;
+
+        /**
+         * Initialize all fields
+         * 
+         * @param ssid
+         *            the SSID
+         * 
+         * @param outcome
+         *            the outcome
+         * 
+         * @param networkId
+         *            the network id or -1 on failure
+         */
+        Result(String ssid, ConnectionOutcome outcome, int networkId) {
+
+            this.ssid = ssid;
+            this.outcome = outcome;
+            this.networkId = networkId;
+
+        }
+
+        /**
+         * @return the network id or -1 on failure
+         */
+        public int getNetworkId() {
+
+            return networkId;
+
+        }
+
+        /**
+         * @return {@link ConnectionOutcome#ADDED},
+         *         {@link ConnectionOutcome#UPDATED} or
+         *         {@link ConnectionOutcome#FAILED}
+         */
+        public ConnectionOutcome getOutcome() {
+
+            return outcome;
+
+        }
+
+        /**
+         * @return the SSID
+         */
+        public String getSsid() {
+
+            return ssid;
+
+        }
+
+        /**
+         * Return a summary of the outcome
+         * 
+         * @return summary string
+         * 
+         * @see java.lang.Object#toString()
+         */
+        @Override
+        public String toString() {
+
+            return ssid + ": " + outcome; //$NON-NLS-1$
+
+        }
+
+    }
+
+    /**
+     * Test whether the given network is secured but has no password, e.g.
+     * because it was imported from a configured network whose key the
+     * platform didn't reveal
+     * 
+     * @param network
+     *            the network
+     * 
+     * @return <code>true</code> if and only if the key is missing
+     */
+    private static boolean isKeyMissing(WifiNetwork network) {
+
+        String password = network.getPassword();
+        return (network.getSecurity() != Security.NONE)
+                && ((password == null) || (password.length() == 0));
+
+    }
+
+    /**
+     * Elapsed time of the most recent call to {@link #provision(Iterable)}
+     */
+    private long               elapsedMillis;
+
+    /**
+     * Number of networks that couldn't be provisioned
+     */
+    private int                failedCount;
+
+    /**
+     * Index of the configured networks
+     */
+    private final NetworkIndex index;
+
+    /**
+     * Set once the configured networks have been read again during the
+     * current call to {@link #provision(Iterable)}
+     */
+    private boolean            reloaded;
+
+    /**
+     * Per-network results, in the order requested
+     */
+    private final List<Result> results;
+
+    /**
+     * Whether the configuration was saved successfully
+     */
+    private boolean            saved;
+
+    /**
+     * The wi fi service
+     */
+    private final WifiService  service;
+
+    /**
+     * Initialize to default state
+     * 
+     * @param service
+     *            the {@link WifiService}
+     * 
+     * @param index
+     *            index of the networks configured in <code>service</code>
+     */
+    public WifiSettingsProvisioner(WifiService service, NetworkIndex index) {
+
+        this.service = service;
+        this.index = index;
+        results = new ArrayList<Result>();
+
+    }
+
+    /**
+     * @return elapsed time of the most recent call to
+     *         {@link #provision(Iterable)}, in milliseconds
+     */
+    public long getElapsedMillis() {
+
+        return elapsedMillis;
+
+    }
+
+    /**
+     * @return number of networks that couldn't be provisioned
+     */
+    public int getFailedCount() {
+
+        return failedCount;
+
+    }
+
+    /**
+     * @return per-network results, in the order requested
+     */
+    public List<Result> getResults() {
+
+        return Collections.unmodifiableList(results);
+
+    }
+
+    /**
+     * @return <code>true</code> if and only if the configuration was saved
+     *         successfully
+     */
+    public boolean isSaved() {
+
+        return saved;
+
+    }
+
+    /**
+     * Add or update, and enable, the given networks and then save the
+     * configuration
+     * 
+     * <p>
+     * The networks are visited once, in order, so they may be read lazily
+     * </p>
+     * 
+     * @param networks
+     *            the networks to provision, whose network ids are ignored
+     * 
+     * @return number of networks successfully provisioned
+     */
+    public int provision(Iterable<WifiNetwork> networks) {
+
+        long start = System.nanoTime();
+        results.clear();
+        failedCount = 0;
+        saved = false;
+        reloaded = false;
+
+        try {
+
+            for (WifiNetwork network : networks) {
+
+                Result result = provision(network);
+
+                if (result.getOutcome() == ConnectionOutcome.FAILED) {
+
+                    ++failedCount;
+
+                }
+
+                results.add(result);
+
+            }
+
+            saved = service.saveConfiguration();
+            // saving may renumber the configured networks
+            index.invalidate();
+
+        } finally {
+
+            elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        }
+
+        return results.size() - failedCount;
+
+    }
+
+    /**
+     * Return a summary of the most recent call to {@link #provision(Iterable)}
+     * 
+     * @return summary string
+     * 
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString() {
+
+        return String.format(
+                "provisioned %d of %d networks in %d ms, saved: %b", //$NON-NLS-1$
+                results.size() - failedCount, results.size(), elapsedMillis,
+                saved);
+
+    }
+
+    /**
+     * Add or update, and enable, a single network
+     * 
+     * @param network
+     *            the network to provision
+     * 
+     * @return the {@link Result}
+     */
+    private Result provision(WifiNetwork network) {
+
+        String ssid = network.getSsid();
+        int existingId = index.getNetworkId(service, ssid);
+        int networkId = -1;
+        ConnectionOutcome outcome = ConnectionOutcome.UPDATED;
+
+        if (existingId != -1) {
+
+            networkId = service.updateNetwork(network.withNetworkId(existingId));
+
+            if ((networkId == -1) && !reloaded) {
+
+                // re-read the configured networks, once per call, in case the
+                // indexed network id was stale, rather than adding a duplicate
+                // of a network whose update was refused
+                reloaded = true;
+                index.invalidate();
+                int currentId = index.getNetworkId(service, ssid);
+
+                if ((currentId != -1) && (currentId != existingId)) {
+
+                    networkId = service.updateNetwork(network
+                            .withNetworkId(currentId));
+
+                }
+
+                existingId = currentId;
+
+            }
+        }
+
+        if (existingId == -1) {
+
+            if (isKeyMissing(network)) {
+
+                return new Result(ssid, ConnectionOutcome.FAILED, -1);
+
+            }
+
+            networkId = service.addNetwork(network);
+            outcome = ConnectionOutcome.ADDED;
+
+        }
+
+        if ((networkId == -1) || !service.enableNetwork(networkId, false)) {
+
+            return new Result(ssid, ConnectionOutcome.FAILED, networkId);
+
+        }
+
+        index.put(network.withNetworkId(networkId));
+        return new Result(ssid, outcome, networkId);
+
+    }
+
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+/**
+ * Format WIFI: URI's
+ * 
+ * <p>
+ * Special characters in the parameter values are escaped as expected by
+ * {@link WifiUriParser#parse(CharSequence)}, so that formatting and then
+ * parsing a set of parameters always yields the same values
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class WifiUriFormatter {
+
+    /**
+     * Return the WIFI: URI for the given parameters
+     * 
+     * @param ssid
+     *            SSID
+     * 
+     * @param password
+     *            password, ignored if <code>security</code> is
+     *            {@link Security#NONE}
+     * 
+     * @param security
+     *            security protocol
+     * 
+     * @param hidden
+     *            hidden SSID
+     * 
+     * @return the WIFI: URI
+     */
+    public static String format(String ssid, String password,
+            Security security, boolean hidden) {
+
+        StringBuilder buffer = new StringBuilder(WifiUriParser.URI_SCHEME);
+        buffer.append("S:"); //$NON-NLS-1$
+        WifiUriParser.appendEscaped(buffer, ssid);
+        buffer.append(';');
+
+        switch (security) {
+
+            case WEP:
+
+                buffer.append("T:WEP;P:"); //$NON-NLS-1$
+                WifiUriParser.appendEscaped(buffer, password);
+                buffer.append(';');
+                break;
+
+            case WPA:
+
+                buffer.append("T:WPA;P:"); //$NON-NLS-1$
+                WifiUriParser.appendEscaped(buffer, password);
+                buffer.append(';');
+                break;
+
+            default:
+
+                buffer.append("T:nopass;"); //$NON-NLS-1$
+                break;
+
+        }
+
+        if (hidden) {
+
+            buffer.append("H:true;"); //$NON-NLS-1$
+
+        }
+
+        buffer.append(';');
+        return buffer.toString();
+
+    }
+
+    /**
+     * Prevent casual instantiation of utility class
+     */
+    private WifiUriFormatter() {
+
+        // nothing to do here
+
+    }
+
+}
@@ -0,0 +1,529 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+/**
+ * Single-pass parser for WIFI: URI's
+ * 
+ * <p>
+ * This works directly over a {@link CharSequence} by index. Rather than
+ * throwing exceptions, {@link #parse(CharSequence)} returns a {@link Status}
+ * and records the position at which parsing stopped, which makes rejecting
+ * malformed input cheap. A single instance may be re-used for any number of
+ * URI's, but is not thread-safe
+ * </p>
+ * 
+ * <p>
+ * The syntax is <code>WIFI:</code> followed by any number of
+ * <code><i>name</i>:<i>value</i>;</code> parameters and terminated by an
+ * additional <code>;</code>, where <i>name</i> is one of <code>S</code>,
+ * <code>P</code>, <code>T</code> or <code>H</code>. Within a <i>value</i>,
+ * <code>\</code> escapes the following character, e.g. <code>\;</code>,
+ * <code>\:</code> and <code>\\</code>. Unescaped white space at the beginning
+ * and end of each value is ignored
+ * </p>
+ * 
+ * <p>
+ * Parameters that aren't present in the URI are given their default values,
+ * i.e. empty SSID and password, {@link Security#NONE} and not hidden
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class WifiUriParser {
+
+    /**
+     * Result of {@link WifiUriParser#parse(CharSequence)}
+     */
+    public enum Status {
+
+        /**
+         * ':' not found after a parameter name
+         */
+        EXPECTED_COLON,
+
+        /**
+         * The input doesn't start with "WIFI:"
+         */
+        MISSING_SCHEME,
+
+        /**
+         * End of input reached before the terminating ';'
+         */
+        MISSING_TERMINATOR,
+
+        /**
+         * Successfully parsed
+         */
+        OK,
+
+        /**
+         * Unrecognized parameter name
+         */
+        UNRECOGNIZED_PARAMETER,
+
+        /**
+         * End of input reached while parsing a parameter value
+         */
+        UNTERMINATED_VALUE;
+
+    }
+
+    /**
+     * Scheme for WIFI: URI's
+     */
+    static final String         URI_SCHEME           = "WIFI:";  //$NON-NLS-1$
+
+    /**
+     * The empty string
+     */
+    private static final String EMPTY_STRING         = "";       //$NON-NLS-1$
+
+    /**
+     * Characters that must be escaped in parameter values
+     */
+    private static final String SPECIAL_CHARACTERS   = "\\;,:\""; //$NON-NLS-1$
+
+    /**
+     * H: parameter value for hidden SSID's
+     */
+    private static final String TRUE_PARAMETER_VALUE = "true";   //$NON-NLS-1$
+
+    /**
+     * T: parameter value for WEP security protocol
+     */
+    private static final String WEP_PARAMETER_VALUE  = "WEP";    //$NON-NLS-1$
+
+    /**
+     * T: parameter value for WPA security protocol
+     */
+    private static final String WPA_PARAMETER_VALUE  = "WPA";    //$NON-NLS-1$
+
+    /**
+     * Append <code>value</code> to <code>buffer</code>, escaping any characters
+     * that have special meaning in WIFI: URI parameter values
+     * 
+     * <p>
+     * This is the inverse of the unescaping performed by
+     * {@link #parse(CharSequence)}. White space at the beginning and end of
+     * the value is escaped too, so that it isn't trimmed
+     * </p>
+     * 
+     * @param buffer
+     *            the buffer
+     * 
+     * @param value
+     *            the parameter value
+     */
+    public static void appendEscaped(StringBuilder buffer, CharSequence value) {
+
+        int length = value.length();
+
+        for (int index = 0; index < length; ++index) {
+
+            char c = value.charAt(index);
+
+            if ((SPECIAL_CHARACTERS.indexOf(c) >= 0)
+                    || (((index == 0) || (index == (length - 1))) && Character
+                            .isWhitespace(c))) {
+
+                buffer.append('\\');
+
+            }
+
+            buffer.append(c);
+
+        }
+    }
+
+    /**
+     * Test whether the given buffer contains exactly <code>string</code>,
+     * ignoring case, without allocating a new {@link String}
+     * 
+     * @param buffer
+     *            the buffer
+     * 
+     * @param string
+     *            the string
+     * 
+     * @return <code>true</code> if and only if they are equal, ignoring case
+     */
+    private static boolean equalsIgnoreCase(StringBuilder buffer, String string) {
+
+        int length = string.length();
+
+        if (buffer.length() != length) {
+
+            return false;
+
+        }
+
+        for (int index = 0; index < length; ++index) {
+
+            if (Character.toUpperCase(buffer.charAt(index)) != Character
+                    .toUpperCase(string.charAt(index))) {
+
+                return false;
+
+            }
+        }
+
+        return true;
+
+    }
+
+    /**
+     * Return the index of the first non-white-space character at or after
+     * <code>index</code>
+     * 
+     * @param uri
+     *            the input
+     * 
+     * @param index
+     *            the starting index
+     * 
+     * @return index of the next non-white-space character or
+     *         <code>uri.length()</code>
+     */
+    private static int skipWhitespace(CharSequence uri, int index) {
+
+        int length = uri.length();
+
+        while ((index < length) && Character.isWhitespace(uri.charAt(index))) {
+
+            ++index;
+
+        }
+
+        return index;
+
+    }
+
+    /**
+     * Buffer for unescaped parameter values, re-used across calls
+     */
+    private final StringBuilder buffer;
+
+    /**
+     * Index at which parsing stopped
+     */
+    private int                 errorPosition;
+
+    /**
+     * Parsed H: value
+     */
+    private boolean             hidden;
+
+    /**
+     * Parsed P: value
+     */
+    private String              password;
+
+    /**
+     * Parsed T: value
+     */
+    private Security            security;
+
+    /**
+     * Parsed S: value
+     */
+    private String              ssid;
+
+    /**
+     * Initialize to default state
+     */
+    public WifiUriParser() {
+
+        buffer = new StringBuilder();
+        reset();
+
+    }
+
+    /**
+     * @return the index in the input at which the most recent call to
+     *         {@link #parse(CharSequence)} stopped, which will be just after
+     *         the terminating ';' after a successful parse
+     */
+    public int getErrorPosition() {
+
+        return errorPosition;
+
+    }
+
+    /**
+     * @return the parsed password
+     */
+    public String getPassword() {
+
+        return password;
+
+    }
+
+    /**
+     * @return the parsed security protocol
+     */
+    public Security getSecurity() {
+
+        return security;
+
+    }
+
+    /**
+     * @return the parsed SSID
+     */
+    public String getSsid() {
+
+        return ssid;
+
+    }
+
+    /**
+     * @return the parsed hidden flag
+     */
+    public boolean isHidden() {
+
+        return hidden;
+
+    }
+
+    /**
+     * Parse the given WIFI: URI
+     * 
+     * <p>
+     * The parsed values are available from this instance's getters if and
+     * only if this returns {@link Status#OK}. Otherwise,
+     * {@link #getErrorPosition()} returns the index at which the error was
+     * detected
+     * </p>
+     * 
+     * <p>
+     * Note that this doesn't enforce any required parameters (i.e. S:) nor
+     * consistency rules (e.g. missing P: when T: isn't "nopass"), check for
+     * duplicate parameters etc.
+     * </p>
+     * 
+     * @param uri
+     *            the input
+     * 
+     * @return {@link Status}
+     */
+    public Status parse(CharSequence uri) {
+
+        reset();
+        int length = uri.length();
+        int index = skipWhitespace(uri, 0);
+        int schemeLength = URI_SCHEME.length();
+
+        if ((length - index) < schemeLength) {
+
+            return fail(Status.MISSING_SCHEME, index);
+
+        }
+
+        for (int offset = 0; offset < schemeLength; ++offset) {
+
+            if (Character.toUpperCase(uri.charAt(index + offset)) != URI_SCHEME
+                    .charAt(offset)) {
+
+                return fail(Status.MISSING_SCHEME, index);
+
+            }
+        }
+
+        index += schemeLength;
+
+        while (true) {
+
+            index = skipWhitespace(uri, index);
+
+            if (index >= length) {
+
+                return fail(Status.MISSING_TERMINATOR, index);
+
+            }
+
+            char parameter = Character.toUpperCase(uri.charAt(index));
+
+            if (parameter == ';') {
+
+                errorPosition = index + 1;
+                return Status.OK;
+
+            }
+
+            int parameterPosition = index;
+            index = skipWhitespace(uri, index + 1);
+
+            if ((index >= length) || (uri.charAt(index) != ':')) {
+
+                return fail(Status.EXPECTED_COLON, index);
+
+            }
+
+            index = parseValue(uri, index + 1);
+
+            if (index < 0) {
+
+                return fail(Status.UNTERMINATED_VALUE, length);
+
+            }
+
+            switch (parameter) {
+
+                case 'S':
+
+                    ssid = buffer.toString();
+                    break;
+
+                case 'P':
+
+                    password = buffer.toString();
+                    break;
+
+                case 'H':
+
+                    hidden = equalsIgnoreCase(buffer, TRUE_PARAMETER_VALUE);
+                    break;
+
+                case 'T':
+
+                    security = toSecurity();
+                    break;
+
+                default:
+
+                    return fail(Status.UNRECOGNIZED_PARAMETER,
+                            parameterPosition);
+
+            }
+        }
+    }
+
+    /**
+     * Record a parse failure
+     * 
+     * @param status
+     *            the failure {@link Status}
+     * 
+     * @param position
+     *            the index at which parsing stopped
+     * 
+     * @return <code>status</code>
+     */
+    private Status fail(Status status, int position) {
+
+        reset();
+        errorPosition = position;
+        return status;
+
+    }
+
+    /**
+     * Unescape the parameter value starting at <code>index</code> into
+     * {@link #buffer}
+     * 
+     * @param uri
+     *            the input
+     * 
+     * @param index
+     *            index of the first character after the ':'
+     * 
+     * @return index of the first character after the terminating ';' or -1 if
+     *         end of input was reached first
+     */
+    private int parseValue(CharSequence uri, int index) {
+
+        int length = uri.length();
+        buffer.setLength(0);
+        index = skipWhitespace(uri, index);
+        // length of the value excluding trailing unescaped white space
+        int trimmed = 0;
+
+        while (index < length) {
+
+            char c = uri.charAt(index++);
+
+            if (c == ';') {
+
+                buffer.setLength(trimmed);
+                return index;
+
+            }
+
+            if (c == '\\') {
+
+                if (index >= length) {
+
+                    return -1;
+
+                }
+
+                buffer.append(uri.charAt(index++));
+                trimmed = buffer.length();
+
+            } else {
+
+                buffer.append(c);
+
+                if (!Character.isWhitespace(c)) {
+
+                    trimmed = buffer.length();
+
+                }
+            }
+        }
+
+        return -1;
+
+    }
+
+    /**
+     * Restore the default parameter values
+     */
+    private void reset() {
+
+        errorPosition = 0;
+        ssid = EMPTY_STRING;
+        password = EMPTY_STRING;
+        security = Security.NONE;
+        hidden = false;
+
+    }
+
+    /**
+     * Convert the T: parameter value in {@link #buffer} to the corresponding
+     * {@link Security} constant
+     * 
+     * @return {@link Security}
+     */
+    private Security toSecurity() {
+
+        if (equalsIgnoreCase(buffer, WEP_PARAMETER_VALUE)) {
+
+            return Security.WEP;
+
+        } else if (equalsIgnoreCase(buffer, WPA_PARAMETER_VALUE)) {
+
+            return Security.WPA;
+
+        } else {
+
+            return Security.NONE;
+
+        }
+    }
+
+}
@@ -15,11 +15,15 @@
  */
 package us.rader.wyfy.nfc;
 
-import android.nfc.NdefRecord;
-
 /**
  * Constants used in formatting and parsing NDEF "U" records
  * 
+ * <p>
+ * This has no dependencies on the Android SDK so that it can be shared by the
+ * app and the plain Java core library. References to <code>NdefRecord</code>
+ * are to <code>android.nfc.NdefRecord</code>
+ * </p>
+ * 
  * @author Kirk
  */
 public interface NdefRecordConstants {
@@ -27,33 +31,27 @@ public interface NdefRecordConstants {
     /**
      * MIME type prefix for records whose payload is assumed to be UTF-8 JSON
      * text
-     * 
-     * @see NdefReaderActivity#decodeMime(String, byte[])
      */
     public static final String MIME_JSON             = "application/json";          //$NON-NLS-1$
 
     /**
      * MIME type prefix for records whose payload is assumed to be UTF-8 text
-     * 
-     * @see NdefReaderActivity#decodeMime(String, byte[])
      */
     public static final String MIME_TEXT_PREFIX      = "text/";                     //$NON-NLS-1$
 
     /**
      * MIME type prefix for records whose payload is assumed to be UTF-8 XML
      * text
-     * 
-     * @see NdefReaderActivity#decodeMime(String, byte[])
      */
     public static final String MIME_XML              = "application/xml";           //$NON-NLS-1$
 
     /**
-     * Java string equivalent of {@link NdefRecord#RTD_TEXT}
+     * Java string equivalent of <code>NdefRecord.RTD_TEXT</code>
      */
     static final String        RECORD_TYPE_TEXT      = "T";                         //$NON-NLS-1$
 
     /**
-     * Java string equivalent of {@link NdefRecord#RTD_URI}
+     * Java string equivalent of <code>NdefRecord.RTD_URI</code>
      */
     static final String        RECORD_TYPE_URI       = "U";                         //$NON-NLS-1$
 
@@ -316,19 +314,20 @@ public interface NdefRecordConstants {
      * 
      * <ul>
      * 
-     * <li>{@link NdefRecord#getTnf()} returns {@link NdefRecord#TNF_WELL_KNOWN}
+     * <li><code>NdefRecord.getTnf()</code> returns
+     * <code>NdefRecord.TNF_WELL_KNOWN</code>
      * 
-     * <li>{@link NdefRecord#getType()} returns an array with the same contents
-     * as {@link NdefRecord#RTD_URI} (i.e. the ASCII representation of the
-     * single-character string "U")
+     * <li><code>NdefRecord.getType()</code> returns an array with the same
+     * contents as <code>NdefRecord.RTD_URI</code> (i.e. the ASCII
+     * representation of the single-character string "U")
      * 
      * <li>The first byte of the array returned by
-     * {@link NdefRecord#getPayload()} contains a code denoting a standard URI
-     * prefix as defined in the NDEF forum specification for such records
+     * <code>NdefRecord.getPayload()</code> contains a code denoting a standard
+     * URI prefix as defined in the NDEF forum specification for such records
      * 
      * <li>The remaining bytes of the array returned by
-     * {@link NdefRecord#getPayload()} contain the ASCII characters to append to
-     * the prefix denoted by the first byte
+     * <code>NdefRecord.getPayload()</code> contain the ASCII characters to
+     * append to the prefix denoted by the first byte
      * 
      * </ul>
      * 
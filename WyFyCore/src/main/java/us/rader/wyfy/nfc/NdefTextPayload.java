@@ -0,0 +1,128 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.nfc;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Encode and decode the payloads of NDEF "T" records
+ * 
+ * <p>
+ * The payload is a status byte followed by the language code and then the
+ * text. The low-order six bits of the status byte are the length of the
+ * language code and its high-order bit is set if the text is UTF-16 rather
+ * than UTF-8
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class NdefTextPayload {
+
+    /**
+     * Bit mask for the encoding flag in the status byte
+     */
+    private static final int    ENCODING_MASK        = 0x80;
+
+    /**
+     * Bit mask for the language code length in the status byte
+     */
+    private static final int    LANGUAGE_LENGTH_MASK = 0x3F;
+
+    /**
+     * Character set for UTF-16 text
+     */
+    private static final String UTF_16               = "UTF-16"; //$NON-NLS-1$
+
+    /**
+     * Character set for language codes and UTF-8 text
+     */
+    private static final String UTF_8                = "UTF-8";  //$NON-NLS-1$
+
+    /**
+     * Decode the text from the given "T" record payload
+     * 
+     * <p>
+     * This discards the language code
+     * </p>
+     * 
+     * @param payload
+     *            the payload
+     * 
+     * @return the text
+     * 
+     * @throws UnsupportedEncodingException
+     *             if there is a bug in the Java virtual machine
+     */
+    public static String decode(byte[] payload)
+            throws UnsupportedEncodingException {
+
+        int status = payload[0];
+        int languageLength = status & LANGUAGE_LENGTH_MASK;
+        String encoding;
+
+        if ((status & ENCODING_MASK) == 0) {
+
+            encoding = UTF_8;
+
+        } else {
+
+            encoding = UTF_16;
+
+        }
+
+        int offset = languageLength + 1;
+        return new String(payload, offset, payload.length - offset, encoding);
+
+    }
+
+    /**
+     * Encode the given text as a UTF-8 "T" record payload
+     * 
+     * @param language
+     *            the language code
+     * 
+     * @param text
+     *            the text
+     * 
+     * @return the payload
+     * 
+     * @throws UnsupportedEncodingException
+     *             if there is a bug in the Java virtual machine
+     */
+    public static byte[] encode(String language, String text)
+            throws UnsupportedEncodingException {
+
+        byte[] languageBytes = language.getBytes(UTF_8);
+        byte[] textBytes = text.getBytes(UTF_8);
+        byte[] payload = new byte[languageBytes.length + textBytes.length + 1];
+        payload[0] = (byte) languageBytes.length;
+        System.arraycopy(languageBytes, 0, payload, 1, languageBytes.length);
+        System.arraycopy(textBytes, 0, payload, languageBytes.length + 1,
+                textBytes.length);
+        return payload;
+
+    }
+
+    /**
+     * Prevent casual instantiation of utility class
+     */
+    private NdefTextPayload() {
+
+        // nothing to do here
+
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.nfc;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Encode and decode the payloads of NDEF "U" records
+ * 
+ * <p>
+ * The payload is a single code byte identifying one of the
+ * {@link NdefRecordConstants#WELL_KNOWN_URI_PREFIX} strings followed by the
+ * remainder of the URI in US-ASCII
+ * </p>
+ * 
+ * @author Kirk
+ */
+public final class NdefUriPayload {
+
+    /**
+     * Character set for URI's in "U" records
+     */
+    private static final String US_ASCII = "US-ASCII"; //$NON-NLS-1$
+
+    /**
+     * Decode the given "U" record payload
+     * 
+     * @param payload
+     *            the payload
+     * 
+     * @return the URI string
+     * 
+     * @throws UnsupportedEncodingException
+     *             if US-ASCII isn't supported (which should never happen)
+     */
+    public static String decode(byte[] payload)
+            throws UnsupportedEncodingException {
+
+        int code = payload[0];
+        String suffix = new String(payload, 1, payload.length - 1, US_ASCII);
+        String prefix = ""; //$NON-NLS-1$
+
+        if ((code > 0)
+                && (code < NdefRecordConstants.WELL_KNOWN_URI_PREFIX.length)) {
+
+            prefix = NdefRecordConstants.WELL_KNOWN_URI_PREFIX[code];
+
+        }
+
+        return prefix + suffix;
+
+    }
+
+    /**
+     * Encode the given URI as a "U" record payload
+     * 
+     * @param uri
+     *            the URI string
+     * 
+     * @return the payload
+     * 
+     * @see #encode(String, byte[])
+     */
+    public static byte[] encode(String uri) {
+
+        return encode(uri, toAscii(uri));
+
+    }
+
+    /**
+     * Encode the given URI as a "U" record payload, given its US-ASCII bytes
+     * 
+     * <p>
+     * This allows callers that already have the encoded bytes to avoid
+     * encoding the URI again. Since US-ASCII uses one byte per character, the
+     * well-known prefix is dropped simply by skipping its length in
+     * <code>asciiUri</code>
+     * </p>
+     * 
+     * @param uri
+     *            the URI string
+     * 
+     * @param asciiUri
+     *            the US-ASCII encoding of <code>uri</code>
+     * 
+     * @return the payload
+     * 
+     * @see #toAscii(String)
+     */
+    public static byte[] encode(String uri, byte[] asciiUri) {
+
+        int code = 0;
+        int prefixLength = 0;
+
+        for (int index = 1; index < NdefRecordConstants.WELL_KNOWN_URI_PREFIX.length; ++index) {
+
+            String prefix = NdefRecordConstants.WELL_KNOWN_URI_PREFIX[index];
+
+            if (uri.startsWith(prefix)) {
+
+                code = index;
+                prefixLength = prefix.length();
+                break;
+
+            }
+        }
+
+        byte[] payload = new byte[asciiUri.length - prefixLength + 1];
+        payload[0] = (byte) code;
+        System.arraycopy(asciiUri, prefixLength, payload, 1, payload.length - 1);
+        return payload;
+
+    }
+
+    /**
+     * Encode the given string as US-ASCII
+     * 
+     * @param string
+     *            the string
+     * 
+     * @return the US-ASCII bytes
+     * 
+     * @throws IllegalArgumentException
+     *             if US-ASCII isn't supported (which should never happen)
+     */
+    public static byte[] toAscii(String string) {
+
+        try {
+
+            return string.getBytes(US_ASCII);
+
+        } catch (UnsupportedEncodingException e) {
+
+            throw new IllegalArgumentException(e);
+
+        }
+    }
+
+    /**
+     * Prevent casual instantiation of utility class
+     */
+    private NdefUriPayload() {
+
+        // nothing to do here
+
+    }
+
+}
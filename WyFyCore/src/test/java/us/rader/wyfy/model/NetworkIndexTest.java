@@ -0,0 +1,203 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link NetworkIndex} and its use by {@link WifiConnector}
+ * 
+ * @author Kirk
+ */
+public class NetworkIndexTest {
+
+    /**
+     * SSID used by the tests
+     */
+    private static final String  SSID = "home"; //$NON-NLS-1$
+
+    /**
+     * Create a network with no network id
+     * 
+     * @param ssid
+     *            the SSID
+     * 
+     * @return the {@link WifiNetwork}
+     */
+    private static WifiNetwork network(String ssid) {
+
+        return new WifiNetwork(-1, ssid, "secret", Security.WPA, false); //$NON-NLS-1$
+
+    }
+
+    /**
+     * The index under test
+     */
+    private NetworkIndex         index;
+
+    /**
+     * The simulated configured networks
+     */
+    private SimulatedWifiService service;
+
+    /**
+     * Create an empty simulated service and index for each test
+     */
+    @Before
+    public void setUp() {
+
+        service = new SimulatedWifiService();
+        index = new NetworkIndex();
+
+    }
+
+    /**
+     * A network removed since the index was built is added again
+     */
+    @Test
+    public void testConnectAddsRemovedNetwork() {
+
+        int oldId = service.addNetwork(network(SSID));
+        index.getNetworkId(service, SSID);
+        service.removeNetwork(oldId);
+        WifiConnector connector = new WifiConnector(service, index);
+        assertEquals(ConnectionOutcome.ADDED, connector.connect(network(SSID)));
+        assertEquals(1, service.size());
+        assertEquals(2, index.getLoadCount());
+
+    }
+
+    /**
+     * A network renumbered since the index was built is enabled under its new
+     * network id after rebuilding the index once
+     */
+    @Test
+    public void testConnectRetriesStaleId() {
+
+        int oldId = service.addNetwork(network(SSID));
+        index.getNetworkId(service, SSID);
+        service.removeNetwork(oldId);
+        int newId = service.addNetwork(network(SSID));
+        WifiConnector connector = new WifiConnector(service, index);
+        assertEquals(ConnectionOutcome.ENABLED,
+                connector.connect(network(SSID)));
+        assertEquals(newId, service.getActiveNetworkId());
+        assertEquals(1, service.size());
+        assertEquals(2, index.getLoadCount());
+
+    }
+
+    /**
+     * The first of several networks with the same SSID wins
+     */
+    @Test
+    public void testFirstNetworkWins() {
+
+        int firstId = service.addNetwork(network(SSID));
+        service.addNetwork(network(SSID));
+        assertEquals(firstId, index.getNetworkId(service, SSID));
+
+    }
+
+    /**
+     * After being invalidated, the index is rebuilt from the service the next
+     * time it is used
+     */
+    @Test
+    public void testInvalidate() {
+
+        assertEquals(-1, index.getNetworkId(service, SSID));
+        int networkId = service.addNetwork(network(SSID));
+        assertEquals(-1, index.getNetworkId(service, SSID));
+        index.invalidate();
+        assertEquals(0, index.size());
+        assertEquals(networkId, index.getNetworkId(service, SSID));
+        assertEquals(2, index.getLoadCount());
+
+    }
+
+    /**
+     * Putting a network before the index has been built is ignored, and the
+     * network is found once it is built
+     */
+    @Test
+    public void testPutBeforeLoad() {
+
+        int networkId = service.addNetwork(network(SSID));
+        index.put(network("other").withNetworkId(networkId)); //$NON-NLS-1$
+        assertEquals(0, index.size());
+        assertEquals(networkId, index.getNetworkId(service, SSID));
+
+    }
+
+    /**
+     * Putting a network whose SSID is already mapped to another network keeps
+     * the existing mapping
+     */
+    @Test
+    public void testPutKeepsFirstNetwork() {
+
+        int firstId = service.addNetwork(network(SSID));
+        int secondId = service.addNetwork(network(SSID));
+        index.getNetworkId(service, SSID);
+        index.put(network(SSID).withNetworkId(secondId));
+        assertEquals(firstId, index.getNetworkId(service, SSID));
+        index.put(network(SSID).withNetworkId(firstId));
+        assertEquals(firstId, index.getNetworkId(service, SSID));
+        assertEquals(2, index.size());
+
+    }
+
+    /**
+     * Putting a renamed network maps its new SSID and hands its old SSID over
+     * to another network with that SSID
+     */
+    @Test
+    public void testPutRenamed() {
+
+        int firstId = service.addNetwork(network(SSID));
+        int secondId = service.addNetwork(network(SSID));
+        index.getNetworkId(service, SSID);
+        index.put(network("other").withNetworkId(firstId)); //$NON-NLS-1$
+        assertEquals(secondId, index.getNetworkId(service, SSID));
+        assertEquals(firstId, index.getNetworkId(service, "other")); //$NON-NLS-1$
+        assertEquals(1, index.getLoadCount());
+
+    }
+
+    /**
+     * Removing the network an SSID maps to falls back to another network with
+     * the same SSID, and removing the last one unmaps it
+     */
+    @Test
+    public void testRemoveFallsBack() {
+
+        int firstId = service.addNetwork(network(SSID));
+        int secondId = service.addNetwork(network(SSID));
+        index.getNetworkId(service, SSID);
+        index.remove(firstId);
+        assertEquals(secondId, index.getNetworkId(service, SSID));
+        index.remove(secondId);
+        assertEquals(-1, index.getNetworkId(service, SSID));
+        assertEquals(0, index.size());
+        assertEquals(1, index.getLoadCount());
+
+    }
+
+}
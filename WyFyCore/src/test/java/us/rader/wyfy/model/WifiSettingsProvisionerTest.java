@@ -0,0 +1,317 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link WifiSettingsProvisioner}
+ * 
+ * @author Kirk
+ */
+public class WifiSettingsProvisionerTest {
+
+    /**
+     * {@link WifiService} that refuses to update networks, as the platform
+     * does for a network that belongs to another application
+     */
+    private static final class RefusingWifiService implements WifiService {
+
+        /**
+         * The service to which everything but updates is delegated
+         */
+        private final WifiService delegate;
+
+        /**
+         * Initialize {@link #delegate}
+         * 
+         * @param delegate
+         *            the service to which everything but updates is delegated
+         */
+        RefusingWifiService(WifiService delegate) {
+
+            this.delegate = delegate;
+
+        }
+
+        /**
+         * Delegate to {@link #delegate}
+         * 
+         * @see us.rader.wyfy.model.WifiService#addNetwork(us.rader.wyfy.model.WifiNetwork)
+         */
+        @Override
+        public int addNetwork(WifiNetwork network) {
+
+            return delegate.addNetwork(network);
+
+        }
+
+        /**
+         * Delegate to {@link #delegate}
+         * 
+         * @see us.rader.wyfy.model.WifiService#enableNetwork(int, boolean)
+         */
+        @Override
+        public boolean enableNetwork(int networkId, boolean disableOthers) {
+
+            return delegate.enableNetwork(networkId, disableOthers);
+
+        }
+
+        /**
+         * Delegate to {@link #delegate}
+         * 
+         * @see us.rader.wyfy.model.WifiService#getActiveNetworkId()
+         */
+        @Override
+        public int getActiveNetworkId() {
+
+            return delegate.getActiveNetworkId();
+
+        }
+
+        /**
+         * Delegate to {@link #delegate}
+         * 
+         * @see us.rader.wyfy.model.WifiService#getConfiguredNetworks()
+         */
+        @Override
+        public List<WifiNetwork> getConfiguredNetworks() {
+
+            return delegate.getConfiguredNetworks();
+
+        }
+
+        /**
+         * Delegate to {@link #delegate}
+         * 
+         * @see us.rader.wyfy.model.WifiService#saveConfiguration()
+         */
+        @Override
+        public boolean saveConfiguration() {
+
+            return delegate.saveConfiguration();
+
+        }
+
+        /**
+         * Refuse the update
+         * 
+         * @see us.rader.wyfy.model.WifiService#updateNetwork(us.rader.wyfy.model.WifiNetwork)
+         */
+        @Override
+        public int updateNetwork(WifiNetwork network) {
+
+            return -1;
+
+        }
+
+    }
+
+    /**
+     * SSID used by the tests
+     */
+    private static final String  SSID = "home"; //$NON-NLS-1$
+
+    /**
+     * Create a network with no network id
+     * 
+     * @param password
+     *            the password
+     * 
+     * @return the {@link WifiNetwork}
+     */
+    private static WifiNetwork network(String password) {
+
+        return new WifiNetwork(-1, SSID, password, Security.WPA, false);
+
+    }
+
+    /**
+     * Index of the configured networks
+     */
+    private NetworkIndex         index;
+
+    /**
+     * The simulated configured networks
+     */
+    private SimulatedWifiService service;
+
+    /**
+     * Create an empty simulated service and index for each test
+     */
+    @Before
+    public void setUp() {
+
+        service = new SimulatedWifiService();
+        index = new NetworkIndex();
+
+    }
+
+    /**
+     * A secured network with no password that isn't configured fails rather
+     * than being added without a key
+     */
+    @Test
+    public void testMissingKeyNotAdded() {
+
+        WifiSettingsProvisioner.Result result = provision(service,
+                network("")); //$NON-NLS-1$
+        assertEquals(ConnectionOutcome.FAILED, result.getOutcome());
+        assertEquals(0, service.size());
+
+    }
+
+    /**
+     * A network that isn't configured is added
+     */
+    @Test
+    public void testNewNetworkAdded() {
+
+        WifiSettingsProvisioner.Result result = provision(service,
+                network("secret")); //$NON-NLS-1$
+        assertEquals(ConnectionOutcome.ADDED, result.getOutcome());
+        assertEquals(1, service.size());
+
+    }
+
+    /**
+     * A network whose update is refused fails rather than being added again
+     * with the same SSID
+     */
+    @Test
+    public void testRefusedUpdateNotDuplicated() {
+
+        service.addNetwork(network("secret")); //$NON-NLS-1$
+        WifiSettingsProvisioner.Result result = provision(
+                new RefusingWifiService(service), network("other")); //$NON-NLS-1$
+        assertEquals(ConnectionOutcome.FAILED, result.getOutcome());
+        assertEquals(1, service.size());
+
+    }
+
+    /**
+     * However many updates are refused, the configured networks are read
+     * again only once
+     */
+    @Test
+    public void testRefusedUpdatesReloadOnce() {
+
+        List<WifiNetwork> networks = new ArrayList<WifiNetwork>();
+
+        for (int n = 0; n < 3; ++n) {
+
+            String ssid = SSID + n;
+            service.addNetwork(new WifiNetwork(-1, ssid, "secret", //$NON-NLS-1$
+                    Security.WPA, false));
+            networks.add(new WifiNetwork(-1, ssid, "other", Security.WPA, //$NON-NLS-1$
+                    false));
+
+        }
+
+        long calls = service.getCallCount();
+        WifiSettingsProvisioner provisioner = new WifiSettingsProvisioner(
+                new RefusingWifiService(service), index);
+        assertEquals(0, provisioner.provision(networks));
+        // the initial read, one reload and saving the configuration
+        assertEquals(3, service.getCallCount() - calls);
+        assertEquals(3, provisioner.getFailedCount());
+        assertEquals(3, service.size());
+
+    }
+
+    /**
+     * A network removed since the index was built is added again
+     */
+    @Test
+    public void testStaleIdRemoved() {
+
+        int networkId = service.addNetwork(network("secret")); //$NON-NLS-1$
+        index.getNetworkId(service, SSID);
+        service.removeNetwork(networkId);
+        WifiSettingsProvisioner.Result result = provision(service,
+                network("secret")); //$NON-NLS-1$
+        assertEquals(ConnectionOutcome.ADDED, result.getOutcome());
+        assertEquals(1, service.size());
+
+    }
+
+    /**
+     * A network renumbered since the index was built is updated under its
+     * new network id
+     */
+    @Test
+    public void testStaleIdRenumbered() {
+
+        int oldId = service.addNetwork(network("secret")); //$NON-NLS-1$
+        index.getNetworkId(service, SSID);
+        service.removeNetwork(oldId);
+        int newId = service.addNetwork(network("secret")); //$NON-NLS-1$
+        WifiSettingsProvisioner.Result result = provision(service,
+                network("changed")); //$NON-NLS-1$
+        assertEquals(ConnectionOutcome.UPDATED, result.getOutcome());
+        assertEquals(newId, result.getNetworkId());
+        assertEquals(1, service.size());
+        assertEquals("changed", service.getConfiguredNetworks().get(0) //$NON-NLS-1$
+                .getPassword());
+
+    }
+
+    /**
+     * Updating a secured network with no password keeps its stored key
+     */
+    @Test
+    public void testUpdateKeepsKey() {
+
+        service.addNetwork(network("secret")); //$NON-NLS-1$
+        WifiSettingsProvisioner.Result result = provision(service,
+                network("")); //$NON-NLS-1$
+        assertEquals(ConnectionOutcome.UPDATED, result.getOutcome());
+        assertEquals(1, service.size());
+        assertEquals("secret", service.getConfiguredNetworks().get(0) //$NON-NLS-1$
+                .getPassword());
+
+    }
+
+    /**
+     * Provision a single network
+     * 
+     * @param wifiService
+     *            the {@link WifiService} to use
+     * 
+     * @param network
+     *            the network
+     * 
+     * @return its {@link WifiSettingsProvisioner.Result}
+     */
+    private WifiSettingsProvisioner.Result provision(WifiService wifiService,
+            WifiNetwork network) {
+
+        WifiSettingsProvisioner provisioner = new WifiSettingsProvisioner(
+                wifiService, index);
+        provisioner.provision(Collections.singletonList(network));
+        return provisioner.getResults().get(0);
+
+    }
+
+}
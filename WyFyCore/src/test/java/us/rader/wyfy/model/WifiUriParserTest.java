@@ -0,0 +1,205 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests for {@link WifiUriParser} and {@link WifiUriFormatter}
+ * 
+ * @author Kirk
+ */
+public class WifiUriParserTest {
+
+    /**
+     * The parser under test
+     */
+    private WifiUriParser parser;
+
+    /**
+     * Create a new parser for each test
+     */
+    @Before
+    public void setUp() {
+
+        parser = new WifiUriParser();
+
+    }
+
+    /**
+     * Backslash-escaped special characters are unescaped
+     */
+    @Test
+    public void testEscapedCharacters() {
+
+        assertEquals(WifiUriParser.Status.OK,
+                parser.parse("WIFI:S:a\\;b\\,c\\:d\\\\e\\\"f;T:WPA;P:x\\;y;;")); //$NON-NLS-1$
+        assertEquals("a;b,c:d\\e\"f", parser.getSsid()); //$NON-NLS-1$
+        assertEquals("x;y", parser.getPassword()); //$NON-NLS-1$
+        assertEquals(Security.WPA, parser.getSecurity());
+
+    }
+
+    /**
+     * ':' missing after a parameter name is reported at the character found
+     * instead
+     */
+    @Test
+    public void testExpectedColon() {
+
+        assertEquals(WifiUriParser.Status.EXPECTED_COLON,
+                parser.parse("WIFI:S a;;")); //$NON-NLS-1$
+        assertEquals(7, parser.getErrorPosition());
+
+    }
+
+    /**
+     * A failed parse restores the default values
+     */
+    @Test
+    public void testFailureResetsValues() {
+
+        parser.parse("WIFI:S:home;T:WEP;P:secret;H:true;;"); //$NON-NLS-1$
+        parser.parse("WIFI:S:other;"); //$NON-NLS-1$
+        assertEquals("", parser.getSsid()); //$NON-NLS-1$
+        assertEquals("", parser.getPassword()); //$NON-NLS-1$
+        assertEquals(Security.NONE, parser.getSecurity());
+        assertFalse(parser.isHidden());
+
+    }
+
+    /**
+     * Input that doesn't start with the scheme is rejected at its first
+     * non-white-space character
+     */
+    @Test
+    public void testMissingScheme() {
+
+        assertEquals(WifiUriParser.Status.MISSING_SCHEME,
+                parser.parse("  http://example.com")); //$NON-NLS-1$
+        assertEquals(2, parser.getErrorPosition());
+        assertEquals(WifiUriParser.Status.MISSING_SCHEME, parser.parse("WIF")); //$NON-NLS-1$
+        assertEquals(0, parser.getErrorPosition());
+
+    }
+
+    /**
+     * Input without the final ';' is reported at its end
+     */
+    @Test
+    public void testMissingTerminator() {
+
+        assertEquals(WifiUriParser.Status.MISSING_TERMINATOR,
+                parser.parse("WIFI:S:home;")); //$NON-NLS-1$
+        assertEquals(12, parser.getErrorPosition());
+
+    }
+
+    /**
+     * Formatting and then parsing yields the original values, however many
+     * special characters and white space they contain
+     */
+    @Test
+    public void testRoundTrip() {
+
+        String[] values = { "home", " padded ", "a;b,c:d\\e\"f", "\\", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                "trailing\\", "", " ", "\t two  spaces \t" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+
+        for (Security security : Security.values()) {
+
+            for (String value : values) {
+
+                String uri = WifiUriFormatter.format(value, value, security,
+                        true);
+                assertEquals(uri, WifiUriParser.Status.OK, parser.parse(uri));
+                assertEquals(uri, uri.length(), parser.getErrorPosition());
+                assertEquals(uri, value, parser.getSsid());
+                assertEquals(uri, security, parser.getSecurity());
+                assertTrue(uri, parser.isHidden());
+
+                if (security != Security.NONE) {
+
+                    assertEquals(uri, value, parser.getPassword());
+
+                }
+            }
+        }
+    }
+
+    /**
+     * Well-formed input is parsed, ignoring the case of the scheme,
+     * parameter names and values
+     */
+    @Test
+    public void testSimple() {
+
+        assertEquals(WifiUriParser.Status.OK,
+                parser.parse("wifi:s:home;t:wep;p:secret;h:TRUE;;")); //$NON-NLS-1$
+        assertEquals("home", parser.getSsid()); //$NON-NLS-1$
+        assertEquals("secret", parser.getPassword()); //$NON-NLS-1$
+        assertEquals(Security.WEP, parser.getSecurity());
+        assertTrue(parser.isHidden());
+
+    }
+
+    /**
+     * An unrecognized parameter name is reported at the name
+     */
+    @Test
+    public void testUnrecognizedParameter() {
+
+        assertEquals(WifiUriParser.Status.UNRECOGNIZED_PARAMETER,
+                parser.parse("WIFI:S:home;X:1;;")); //$NON-NLS-1$
+        assertEquals(12, parser.getErrorPosition());
+
+    }
+
+    /**
+     * A value without its terminating ';', including one ending in a dangling
+     * escape, is reported at the end of the input
+     */
+    @Test
+    public void testUnterminatedValue() {
+
+        assertEquals(WifiUriParser.Status.UNTERMINATED_VALUE,
+                parser.parse("WIFI:S:home")); //$NON-NLS-1$
+        assertEquals(11, parser.getErrorPosition());
+        assertEquals(WifiUriParser.Status.UNTERMINATED_VALUE,
+                parser.parse("WIFI:S:home\\")); //$NON-NLS-1$
+        assertEquals(12, parser.getErrorPosition());
+
+    }
+
+    /**
+     * Unescaped white space around names and values is ignored, escaped white
+     * space is kept
+     */
+    @Test
+    public void testWhitespace() {
+
+        assertEquals(WifiUriParser.Status.OK,
+                parser.parse(" WIFI: S :  my net  ; P : \\ pw\\  ; ; ")); //$NON-NLS-1$
+        assertEquals("my net", parser.getSsid()); //$NON-NLS-1$
+        assertEquals(" pw ", parser.getPassword()); //$NON-NLS-1$
+
+    }
+
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.nfc;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link NdefTextPayload}
+ * 
+ * @author Kirk
+ */
+public class NdefTextPayloadTest {
+
+    /**
+     * Text with characters outside US-ASCII
+     */
+    private static final String TEXT = "WIFI:S:café 日本;;"; //$NON-NLS-1$
+
+    /**
+     * Build a UTF-16 payload by hand
+     * 
+     * @param language
+     *            the language code
+     * 
+     * @param text
+     *            the text
+     * 
+     * @param charset
+     *            UTF-16 character set with which to encode <code>text</code>
+     * 
+     * @return the payload
+     * 
+     * @throws UnsupportedEncodingException
+     *             if the character set isn't supported
+     */
+    private static byte[] utf16Payload(String language, String text,
+            String charset) throws UnsupportedEncodingException {
+
+        byte[] languageBytes = language.getBytes("US-ASCII"); //$NON-NLS-1$
+        byte[] textBytes = text.getBytes(charset);
+        byte[] payload = new byte[languageBytes.length + textBytes.length + 1];
+        payload[0] = (byte) (0x80 | languageBytes.length);
+        System.arraycopy(languageBytes, 0, payload, 1, languageBytes.length);
+        System.arraycopy(textBytes, 0, payload, languageBytes.length + 1,
+                textBytes.length);
+        return payload;
+
+    }
+
+    /**
+     * UTF-16 text is decoded, in either byte order if it starts with a byte
+     * order mark and as big-endian if it doesn't
+     * 
+     * @throws UnsupportedEncodingException
+     *             if UTF-16 isn't supported
+     */
+    @Test
+    public void testDecodeUtf16() throws UnsupportedEncodingException {
+
+        assertEquals(TEXT,
+                NdefTextPayload.decode(utf16Payload("en", TEXT, "UTF-16"))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(TEXT, NdefTextPayload.decode(utf16Payload("en", //$NON-NLS-1$
+                "\uFEFF" + TEXT, "UTF-16LE"))); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(TEXT, NdefTextPayload.decode(utf16Payload("en-US", TEXT, //$NON-NLS-1$
+                "UTF-16BE"))); //$NON-NLS-1$
+
+    }
+
+    /**
+     * The status byte holds the length of the language code and the UTF-8
+     * flag, followed by the language code and the text
+     * 
+     * @throws UnsupportedEncodingException
+     *             if UTF-8 isn't supported
+     */
+    @Test
+    public void testEncodeLayout() throws UnsupportedEncodingException {
+
+        byte[] payload = NdefTextPayload.encode("en-US", "hi"); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals(8, payload.length);
+        assertEquals(5, payload[0]);
+        assertEquals("en-US", new String(payload, 1, 5, "US-ASCII")); //$NON-NLS-1$ //$NON-NLS-2$
+        assertEquals('h', payload[6]);
+        assertEquals('i', payload[7]);
+
+    }
+
+    /**
+     * UTF-8 text survives encoding and decoding, whatever the length of the
+     * language code
+     * 
+     * @throws UnsupportedEncodingException
+     *             if UTF-8 isn't supported
+     */
+    @Test
+    public void testRoundTrip() throws UnsupportedEncodingException {
+
+        for (String language : new String[] { "", "en", "zh-Hant-TW" }) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+
+            assertEquals(language, TEXT,
+                    NdefTextPayload.decode(NdefTextPayload.encode(language,
+                            TEXT)));
+
+        }
+    }
+
+}
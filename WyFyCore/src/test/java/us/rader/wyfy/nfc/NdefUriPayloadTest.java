@@ -0,0 +1,117 @@
+/*
+ * Copyright 2013 Kirk Rader
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package us.rader.wyfy.nfc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.UnsupportedEncodingException;
+
+import org.junit.Test;
+
+/**
+ * Tests for {@link NdefUriPayload}
+ * 
+ * @author Kirk
+ */
+public class NdefUriPayloadTest {
+
+    /**
+     * Encode the given URI and check the code byte and the length of the
+     * encoded suffix, then check that it decodes to the same URI
+     * 
+     * @param uri
+     *            the URI
+     * 
+     * @param code
+     *            the expected code byte
+     * 
+     * @param suffix
+     *            the expected remainder of the URI after the prefix
+     * 
+     * @throws UnsupportedEncodingException
+     *             if US-ASCII isn't supported
+     */
+    private static void assertRoundTrip(String uri, int code, String suffix)
+            throws UnsupportedEncodingException {
+
+        byte[] payload = NdefUriPayload.encode(uri);
+        assertEquals(uri, code, payload[0]);
+        assertEquals(uri, suffix, new String(payload, 1, payload.length - 1,
+                "US-ASCII")); //$NON-NLS-1$
+        assertEquals(uri, uri, NdefUriPayload.decode(payload));
+
+    }
+
+    /**
+     * A code byte outside the table of prefixes is treated as having no
+     * prefix
+     * 
+     * @throws UnsupportedEncodingException
+     *             if US-ASCII isn't supported
+     */
+    @Test
+    public void testDecodeUnknownCode() throws UnsupportedEncodingException {
+
+        assertEquals("abc", NdefUriPayload.decode(new byte[] { (byte) 0xFF, //$NON-NLS-1$
+                'a', 'b', 'c' }));
+
+    }
+
+    /**
+     * Passing the US-ASCII bytes gives the same payload as encoding the string
+     */
+    @Test
+    public void testEncodeWithBytes() {
+
+        String uri = "https://www.example.com/"; //$NON-NLS-1$
+        assertArrayEquals(NdefUriPayload.encode(uri),
+                NdefUriPayload.encode(uri, NdefUriPayload.toAscii(uri)));
+
+    }
+
+    /**
+     * Well-known prefixes are replaced by their code, the longest matching
+     * prefix winning
+     * 
+     * @throws UnsupportedEncodingException
+     *             if US-ASCII isn't supported
+     */
+    @Test
+    public void testPrefixCodes() throws UnsupportedEncodingException {
+
+        assertRoundTrip("http://www.example.com", 1, "example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+        assertRoundTrip("https://www.example.com", 2, "example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+        assertRoundTrip("http://example.com", 3, "example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+        assertRoundTrip("https://example.com", 4, "example.com"); //$NON-NLS-1$ //$NON-NLS-2$
+
+    }
+
+    /**
+     * WIFI: URI's have no well-known prefix, so are encoded whole
+     * 
+     * @throws UnsupportedEncodingException
+     *             if US-ASCII isn't supported
+     */
+    @Test
+    public void testWifiUri() throws UnsupportedEncodingException {
+
+        String uri = "WIFI:S:home;T:WPA;P:secret;;"; //$NON-NLS-1$
+        assertRoundTrip(uri, 0, uri);
+
+    }
+
+}